@@ -0,0 +1,162 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  B e n c h m a r k I m a g e s                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Class {@code BenchmarkImages} provides the input images shared by benchmarks.
+ * <p>
+ * The gray image is read from the file specified by the {@code benchmark.image} system property,
+ * which defaults to {@code data/examples/chula.png}.
+ * If this file cannot be read, a synthetic score-like image is generated instead.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class BenchmarkImages
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkImages.class);
+
+    /** Default image, relative to project folder. */
+    private static final String DEFAULT_IMAGE = "data/examples/chula.png";
+
+    /** Threshold used to binarize gray image. */
+    public static final int BINARY_THRESHOLD = 140;
+
+    /** Not meant to be instantiated. */
+    private BenchmarkImages ()
+    {
+    }
+
+    //----------------//
+    // getBinaryImage //
+    //----------------//
+    /**
+     * Report the binarized version of the gray image.
+     *
+     * @return a new binary image
+     */
+    public static ByteProcessor getBinaryImage ()
+    {
+        return new GlobalFilter(getGrayImage(), BINARY_THRESHOLD).filteredImage();
+    }
+
+    //--------------//
+    // getGrayImage //
+    //--------------//
+    /**
+     * Report the gray image to process.
+     *
+     * @return a new gray image
+     */
+    public static ByteProcessor getGrayImage ()
+    {
+        final Path path = Paths.get(System.getProperty("benchmark.image", DEFAULT_IMAGE));
+
+        if (Files.exists(path)) {
+            try {
+                final BufferedImage img = ImageIO.read(path.toFile());
+
+                if (img != null) {
+                    if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                        return new ByteProcessor(img);
+                    } else {
+                        return new ColorProcessor(img).convertToByteProcessor();
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Could not read {} {}", path, ex.toString());
+            }
+        }
+
+        logger.info("Using synthetic image instead of {}", path);
+
+        return createSyntheticImage(2500, 3500);
+    }
+
+    //----------------------//
+    // createSyntheticImage //
+    //----------------------//
+    /**
+     * Create a gray image with staves, stems and note heads on a noisy background.
+     *
+     * @param width  image width
+     * @param height image height
+     * @return the synthetic image
+     */
+    public static ByteProcessor createSyntheticImage (int width,
+                                                      int height)
+    {
+        final int interline = 20;
+        final Random random = new Random(2018);
+        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+
+        for (int top = 200; (top + (8 * interline)) < height; top += (12 * interline)) {
+            // Staff lines
+            for (int i = 0; i < 5; i++) {
+                g.fillRect(100, top + (i * interline), width - 200, 3);
+            }
+
+            // Heads with stems
+            for (int x = 200; x < (width - 200); x += (2 * interline)) {
+                final int y = top + (random.nextInt(9) * (interline / 2)) - (interline / 2);
+                g.fillOval(x, y, (interline * 4) / 3, interline);
+                g.fillRect(x + ((interline * 4) / 3) - 3, y - (3 * interline), 3, 3 * interline);
+            }
+        }
+
+        g.dispose();
+
+        final ByteProcessor bp = new ByteProcessor(img);
+
+        // Some noise
+        for (int i = (width * height) / 50; i > 0; i--) {
+            final int x = random.nextInt(width);
+            final int y = random.nextInt(height);
+            bp.set(x, y, Math.max(0, Math.min(255, bp.get(x, y) + random.nextInt(121) - 60)));
+        }
+
+        return bp;
+    }
+}
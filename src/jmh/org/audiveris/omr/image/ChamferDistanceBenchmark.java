@@ -0,0 +1,85 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                         C h a m f e r D i s t a n c e B e n c h m a r k                        //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code ChamferDistanceBenchmark} measures the distance transform of a whole
+ * binary image, as performed for note heads matching.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChamferDistanceBenchmark
+{
+
+    private ByteProcessor binary;
+
+    private boolean[][] fore;
+
+    @Setup
+    public void setup ()
+    {
+        binary = BenchmarkImages.getBinaryImage();
+
+        final int width = binary.getWidth();
+        final int height = binary.getHeight();
+        fore = new boolean[width][height];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                fore[x][y] = binary.get(x, y) == 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public DistanceTable compute ()
+    {
+        return new ChamferDistance.Short().compute(fore);
+    }
+
+    @Benchmark
+    public DistanceTable computeToFore ()
+    {
+        return new ChamferDistance.Short().computeToFore(binary);
+    }
+}
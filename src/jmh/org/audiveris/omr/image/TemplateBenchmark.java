@@ -0,0 +1,101 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                T e m p l a t e B e n c h m a r k                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code TemplateBenchmark} measures the matching of a note head template along
+ * one scan line of a distance table, as performed by HEADS step.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateBenchmark
+{
+
+    @Param({"NOTEHEAD_BLACK", "NOTEHEAD_VOID", "WHOLE_NOTE"})
+    public Shape shape;
+
+    @Param({"27"})
+    public int pointSize;
+
+    private DistanceTable distances;
+
+    private Template template;
+
+    private CompiledTemplate compiled;
+
+    private int y;
+
+    private double[] row;
+
+    @Setup
+    public void setup ()
+    {
+        distances = new ChamferDistance.Short().computeToFore(BenchmarkImages.getBinaryImage());
+        template = TemplateFactory.getInstance().getCatalog(pointSize).getTemplate(shape);
+        compiled = template.compile(Anchor.MIDDLE_LEFT, distances);
+        y = distances.getHeight() / 2;
+        row = new double[distances.getWidth()];
+    }
+
+    @Benchmark
+    public double evaluate ()
+    {
+        double sum = 0;
+
+        for (int x = 0, w = distances.getWidth(); x < w; x++) {
+            sum += template.evaluate(x, y, Anchor.MIDDLE_LEFT, distances);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double[] evaluateRow ()
+    {
+        compiled.evaluateRow(y, 0, distances.getWidth() - 1, row);
+
+        return row;
+    }
+}
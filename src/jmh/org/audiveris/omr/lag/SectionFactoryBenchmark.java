@@ -0,0 +1,78 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                          S e c t i o n F a c t o r y B e n c h m a r k                         //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.lag;
+
+import org.audiveris.omr.image.BenchmarkImages;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code SectionFactoryBenchmark} measures the building of lag sections out of
+ * a whole run table, as performed by {@link LagManager}.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SectionFactoryBenchmark
+{
+
+    @Param({"HORIZONTAL", "VERTICAL"})
+    public Orientation orientation;
+
+    private RunTable table;
+
+    @Setup
+    public void setup ()
+    {
+        table = new RunTableFactory(orientation).createTable(BenchmarkImages.getBinaryImage());
+    }
+
+    @Benchmark
+    public List<Section> createSections ()
+    {
+        final Lag lag = new BasicLag("benchmark", orientation);
+        final SectionFactory factory = new SectionFactory(lag, JunctionRatioPolicy.DEFAULT);
+
+        return factory.createSections(table, null, true);
+    }
+}
@@ -0,0 +1,135 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                           N e u r a l N e t w o r k B e n c h m a r k                          //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code NeuralNetworkBenchmark} measures forward runs of a neural network
+ * with random weights, either one glyph at a time or by batches of glyphs.
+ * <p>
+ * A {@code runBatch} figure covers a whole batch, hence must be divided by {@code batchSize}
+ * to be compared with a {@code run} figure.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NeuralNetworkBenchmark
+{
+
+    @Param({"110"})
+    public int inputSize;
+
+    @Param({"50"})
+    public int hiddenSize;
+
+    @Param({"120"})
+    public int outputSize;
+
+    /** Number of glyphs per run. */
+    @Param({"256"})
+    public int batchSize;
+
+    private NeuralNetwork network;
+
+    private double[] inputs;
+
+    private double[] hiddens;
+
+    private double[] outputs;
+
+    private double[] batchInputs;
+
+    private double[] batchOutputs;
+
+    @Setup
+    public void setup ()
+    {
+        network = new NeuralNetwork(
+                inputSize,
+                hiddenSize,
+                outputSize,
+                1.0,
+                labels("in", inputSize),
+                labels("out", outputSize));
+
+        final Random random = new Random(2018);
+        inputs = new double[inputSize];
+
+        for (int i = 0; i < inputSize; i++) {
+            inputs[i] = random.nextDouble();
+        }
+
+        hiddens = new double[hiddenSize];
+        outputs = new double[outputSize];
+
+        batchInputs = new double[batchSize * inputSize];
+
+        for (int i = 0; i < batchInputs.length; i++) {
+            batchInputs[i] = random.nextDouble();
+        }
+
+        batchOutputs = new double[batchSize * outputSize];
+    }
+
+    @Benchmark
+    public double[] run ()
+    {
+        return network.run(inputs, hiddens, outputs);
+    }
+
+    @Benchmark
+    public double[] runBatch ()
+    {
+        return network.run(batchInputs, batchSize, batchOutputs);
+    }
+
+    private static String[] labels (String prefix,
+                                    int size)
+    {
+        final String[] labels = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            labels[i] = prefix + i;
+        }
+
+        return labels;
+    }
+}
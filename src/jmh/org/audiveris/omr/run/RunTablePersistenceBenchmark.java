@@ -0,0 +1,128 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                     R u n T a b l e P e r s i s t e n c e B e n c h m a r k                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.image.BenchmarkImages;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Class {@code RunTablePersistenceBenchmark} measures the storing and loading of the
+ * sheet binary run table, which is the largest part of a sheet on disk, using either the
+ * JAXB-based XML format or the binary format.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RunTablePersistenceBenchmark
+{
+
+    private RunTable table;
+
+    private Path folder;
+
+    private Path xmlPath;
+
+    private Path binPath;
+
+    private Path outPath;
+
+    @Setup
+    public void setup ()
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        table = new RunTableFactory(Orientation.VERTICAL).createTable(
+                BenchmarkImages.getBinaryImage());
+        folder = Files.createTempDirectory("benchmark-");
+        xmlPath = folder.resolve("table.xml");
+        binPath = folder.resolve("table" + RunTableCodec.BINARY_EXTENSION);
+        outPath = folder.resolve("out");
+        table.marshal(xmlPath);
+        RunTableCodec.write(table, binPath, false);
+    }
+
+    @TearDown
+    public void tearDown ()
+            throws IOException
+    {
+        Files.deleteIfExists(xmlPath);
+        Files.deleteIfExists(binPath);
+        Files.deleteIfExists(outPath);
+        Files.deleteIfExists(folder);
+    }
+
+    @Benchmark
+    public void marshalXml ()
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        Files.deleteIfExists(outPath);
+        table.marshal(outPath);
+    }
+
+    @Benchmark
+    public RunTable unmarshalXml ()
+    {
+        return RunTable.unmarshal(xmlPath);
+    }
+
+    @Benchmark
+    public void writeBinary ()
+            throws IOException
+    {
+        Files.deleteIfExists(outPath);
+        RunTableCodec.write(table, outPath, false);
+    }
+
+    @Benchmark
+    public RunTable readBinary ()
+            throws IOException
+    {
+        return RunTableCodec.read(binPath);
+    }
+}
@@ -28,6 +28,7 @@ import org.audiveris.omr.sheet.BookManager;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.step.RunClass;
 import org.audiveris.omr.step.Step;
+import org.audiveris.omr.step.StepMetrics;
 import org.audiveris.omr.util.Dumping;
 import org.audiveris.omr.util.FileUtil;
 
@@ -478,6 +479,7 @@ public class CLI
                         book.store(BookManager.getDefaultSavePath(book), false);
                     }
 
+                    StepMetrics.export(book, folder);
                     book.close();
                 }
 
@@ -149,6 +149,27 @@ public abstract class AbstractClassifier<M extends Object>
         return evaluate(glyph, null, count, minGrade, conditions, interline);
     }
 
+    //----------//
+    // evaluate //
+    //----------//
+    @Override
+    public Evaluation[][] evaluate (List<Glyph> glyphs,
+                                    SystemInfo system,
+                                    int interline,
+                                    int count,
+                                    double minGrade,
+                                    EnumSet<Condition> conditions)
+    {
+        final Evaluation[][] sorted = getSortedEvaluations(glyphs, interline);
+        final Evaluation[][] results = new Evaluation[sorted.length][];
+
+        for (int i = 0; i < sorted.length; i++) {
+            results[i] = select(glyphs.get(i), sorted[i], system, count, minGrade, conditions);
+        }
+
+        return results;
+    }
+
     //---------------//
     // getDescriptor //
     //---------------//
@@ -205,6 +226,27 @@ public abstract class AbstractClassifier<M extends Object>
         return new DataSet(features, labels, null, null);
     }
 
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This default implementation simply evaluates one glyph after the other.
+     */
+    @Override
+    public Evaluation[][] getNaturalEvaluations (List<Glyph> glyphs,
+                                                 int interline)
+    {
+        final Evaluation[][] evals = new Evaluation[glyphs.size()][];
+
+        for (int i = 0; i < evals.length; i++) {
+            evals[i] = getNaturalEvaluations(glyphs.get(i), interline);
+        }
+
+        return evals;
+    }
+
     //-------------//
     // isBigEnough //
     //-------------//
@@ -249,6 +291,50 @@ public abstract class AbstractClassifier<M extends Object>
         }
     }
 
+    //----------------------//
+    // getSortedEvaluations //
+    //----------------------//
+    /**
+     * Run the classifier on a batch of glyphs, and return for each glyph a sequence of all
+     * interpretations (ordered from best to worst) with no additional check.
+     *
+     * @param glyphs    the glyphs to be examined
+     * @param interline the global sheet interline
+     * @return the ordered best evaluations, one array per glyph
+     */
+    protected Evaluation[][] getSortedEvaluations (List<Glyph> glyphs,
+                                                   int interline)
+    {
+        final Evaluation[][] results = new Evaluation[glyphs.size()][];
+        final List<Glyph> bigGlyphs = new ArrayList<>();
+
+        // If too small, it's just NOISE
+        for (int i = 0; i < results.length; i++) {
+            final Glyph glyph = glyphs.get(i);
+
+            if (!isBigEnough(glyph, interline)) {
+                results[i] = noiseEvaluations;
+            } else {
+                bigGlyphs.add(glyph);
+            }
+        }
+
+        if (!bigGlyphs.isEmpty()) {
+            final Evaluation[][] naturals = getNaturalEvaluations(bigGlyphs, interline);
+            int k = 0;
+
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    Evaluation[] evals = naturals[k++];
+                    Arrays.sort(evals, Evaluation.byReverseGrade); // Order from best to worst
+                    results[i] = evals;
+                }
+            }
+        }
+
+        return results;
+    }
+
     //--------------//
     // isCompatible //
     //--------------//
@@ -495,9 +581,38 @@ public abstract class AbstractClassifier<M extends Object>
                                    double minGrade,
                                    EnumSet<Classifier.Condition> conditions,
                                    int interline)
+    {
+        return select(
+                glyph,
+                getSortedEvaluations(glyph, interline),
+                system,
+                count,
+                minGrade,
+                conditions);
+    }
+
+    //--------//
+    // select //
+    //--------//
+    /**
+     * Select the acceptable evaluations among the sorted evaluations of a glyph.
+     *
+     * @param glyph      the evaluated glyph
+     * @param evals      glyph evaluations, ordered from best to worst
+     * @param system     the containing system, if any
+     * @param count      the desired maximum sequence length
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequence of acceptable evaluations, perhaps empty but not null
+     */
+    private Evaluation[] select (Glyph glyph,
+                                 Evaluation[] evals,
+                                 SystemInfo system,
+                                 int count,
+                                 double minGrade,
+                                 EnumSet<Classifier.Condition> conditions)
     {
         List<Evaluation> bests = new ArrayList<>();
-        Evaluation[] evals = getSortedEvaluations(glyph, interline);
 
         EvalsLoop:
         for (Evaluation eval : evals) {
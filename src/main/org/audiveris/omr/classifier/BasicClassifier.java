@@ -154,22 +154,41 @@ public class BasicClassifier
     public Evaluation[] getNaturalEvaluations (Glyph glyph,
                                                int interline)
     {
-        double[] ins = descriptor.getFeatures(glyph, interline);
-        final INDArray features = Nd4j.create(ins);
-        normalize(features);
+        return getNaturalEvaluations(Collections.singletonList(glyph), interline)[0];
+    }
 
-        Shape[] values = Shape.values();
-        Evaluation[] evals = new Evaluation[SHAPE_COUNT];
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All glyphs features are normalized into one input matrix, which is run through the
+     * network in a single batch.
+     */
+    @Override
+    public Evaluation[][] getNaturalEvaluations (List<Glyph> glyphs,
+                                                 int interline)
+    {
+        final int count = glyphs.size();
+        final int inputSize = model.getInputSize();
+        final double[] ins = new double[count * inputSize];
 
-        for (int i = 0; i < ins.length; i++) {
-            ins[i] = features.getDouble(i);
+        for (int ig = 0; ig < count; ig++) {
+            final double[] features = descriptor.getFeatures(glyphs.get(ig), interline);
+            normalize(features, ins, ig * inputSize);
         }
 
-        double[] outs = new double[SHAPE_COUNT];
-        model.run(ins, null, outs);
+        final double[] outs = model.run(ins, count, null);
+        final Shape[] values = Shape.values();
+        final Evaluation[][] evals = new Evaluation[count][SHAPE_COUNT];
+
+        for (int ig = 0; ig < count; ig++) {
+            final int offset = ig * SHAPE_COUNT;
 
-        for (int s = 0; s < SHAPE_COUNT; s++) {
-            evals[s] = new Evaluation(values[s], outs[s]);
+            for (int s = 0; s < SHAPE_COUNT; s++) {
+                evals[ig][s] = new Evaluation(values[s], outs[offset + s]);
+            }
         }
 
         return evals;
@@ -264,6 +283,7 @@ public class BasicClassifier
         }
 
         // Train
+        model.setMiniBatchSize(constants.miniBatchSize.getValue());
         model.train(inputs, desiredOutputs, listener, listener.getIterationPeriod());
 
         // Store
@@ -451,6 +471,25 @@ public class BasicClassifier
         features.diviRowVector(norms.stds);
     }
 
+    //-----------//
+    // normalize //
+    //-----------//
+    /**
+     * Apply the known norms on the provided (raw) features.
+     *
+     * @param features raw features
+     * @param ins      destination array for normalized features
+     * @param offset   starting position in destination array
+     */
+    private void normalize (double[] features,
+                            double[] ins,
+                            int offset)
+    {
+        for (int i = 0; i < features.length; i++) {
+            ins[offset + i] = (features[i] - norms.means.getDouble(i)) / norms.stds.getDouble(i);
+        }
+    }
+
     //-------------//
     // getInstance //
     //-------------//
@@ -496,6 +535,11 @@ public class BasicClassifier
                 "Maximum number of epochs in training");
 
         private final Constant.Ratio momentum = new Constant.Ratio(0.2, "Training momentum");
+
+        private final Constant.Integer miniBatchSize = new Constant.Integer(
+                "Samples",
+                0,
+                "Samples per training mini-batch, processed in parallel (0 for one at a time)");
     }
 
     //----------//
@@ -28,6 +28,7 @@ import org.audiveris.omr.math.BasicLine;
 import org.audiveris.omr.math.LineUtil;
 import org.audiveris.omr.math.PointsCollector;
 import org.audiveris.omr.moments.ARTMoments;
+import org.audiveris.omr.moments.CentralMoments;
 import org.audiveris.omr.moments.GeometricMoments;
 import org.audiveris.omr.run.Orientation;
 import static org.audiveris.omr.run.Orientation.HORIZONTAL;
@@ -112,6 +113,9 @@ public class Glyph
     /** Computed geometric Moments. */
     protected GeometricMoments geoMoments;
 
+    /** Computed (or combined) central Moments. */
+    protected CentralMoments centralMoments;
+
     /** Mass center coordinates. */
     protected Point centroid;
 
@@ -282,6 +286,22 @@ public class Glyph
         return center;
     }
 
+    /**
+     * Report the glyph central moments.
+     * <p>
+     * For a compound of disjoint parts, these are combined from the parts central moments.
+     *
+     * @return the glyph central moments
+     */
+    public CentralMoments getCentralMoments ()
+    {
+        if (centralMoments == null) {
+            centralMoments = runTable.computeCentralMoments(left, top);
+        }
+
+        return centralMoments;
+    }
+
     @Override
     public Point getCentroid ()
     {
@@ -301,7 +321,7 @@ public class Glyph
     public GeometricMoments getGeometricMoments (int interline)
     {
         if (geoMoments == null) {
-            geoMoments = runTable.computeGeometricMoments(left, top, interline);
+            geoMoments = new GeometricMoments(getCentralMoments(), interline);
         }
 
         return geoMoments;
@@ -28,25 +28,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Rectangle;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Class {@code GlyphCluster} handles a cluster of connected glyphs, to retrieve all
  * acceptable compounds built on subsets of these glyphs.
  * <p>
- * The processing of any given subset consists in the following:
+ * The cluster parts are indexed, so that any subset of parts is handled as a bit set.
+ * Subsets are processed from an explicit stack, and the processing of any given subset consists
+ * in the following:
  * <ol>
  * <li>Build the compound of chosen vertices, and record acceptable evaluations.</li>
  * <li>Build the set of new reachable vertices.</li>
- * <li>For each reachable vertex, recursively process the new set composed of current set + the
- * reachable vertex.</li>
+ * <li>For each reachable vertex, push the new set composed of current set + the reachable
+ * vertex.</li>
  * </ol>
- * TODO: implement a non-recursive version for better efficiency?
+ * Subset weight, bounds and reachable vertices are accumulated incrementally as parts are added.
+ * Visited subsets are memorized, so that each distinct subset is evaluated at most once.
  *
  * @author Hervé Bitteur
  */
@@ -82,70 +91,65 @@ public class GlyphCluster
      */
     public void decompose ()
     {
-        final Set<Glyph> considered = new LinkedHashSet<>(); // Parts considered so far
-
         //TODO: we could truncate this list by discarding the smallest items
         // since a too large list would result in explosion of combinations
         final List<Glyph> seeds = adapter.getParts();
         Collections.sort(seeds, Glyphs.byReverseWeight);
 
         ///logger.debug("Decomposing {}", Glyphs.ids("cluster", seeds));
-        for (Glyph seed : seeds) {
-            considered.add(seed);
-            process(Collections.singleton(seed), considered);
-        }
-    }
+        final Index index = new Index(seeds);
+        final Set<BitSet> visited = new HashSet<>(); // Subsets already processed
+        final Deque<Subset> stack = new ArrayDeque<>();
+        final BitSet considered = new BitSet(); // Parts considered so far
 
-    /**
-     * Retrieve all parts at acceptable distance from at least one member of the
-     * provided set.
-     *
-     * @param set the provided set
-     * @return all the parts reachable from the set
-     */
-    private Set<Glyph> getOutliers (Set<Glyph> set)
-    {
-        Set<Glyph> outliers = new LinkedHashSet<>();
+        // Each seed starts the subsets that contain no previous seed
+        final List<Subset> starts = new ArrayList<>();
 
-        for (Glyph part : set) {
-            outliers.addAll(adapter.getNeighbors(part));
+        for (int i = 0; i < seeds.size(); i++) {
+            considered.set(i);
+            starts.add(index.singleton(i, considered));
         }
 
-        outliers.removeAll(set);
+        pushAll(stack, starts);
+
+        while (!stack.isEmpty()) {
+            final Subset subset = stack.pop();
 
-        return outliers;
+            if (visited.add(subset.members)) {
+                pushAll(stack, process(subset, index));
+            }
+        }
     }
 
+    //---------//
+    // process //
+    //---------//
     /**
-     * Process the provided set of parts.
+     * Process the provided subset of parts.
      *
-     * @param parts (read only) the set of current parts
-     * @param seen  (read only) all parts considered so far (current parts plus discarded ones)
+     * @param subset the subset of current parts
+     * @param index  the cluster index
+     * @return the larger subsets to process, perhaps empty
      */
-    private void process (Set<Glyph> parts,
-                          Set<Glyph> seen)
+    private List<Subset> process (Subset subset,
+                                  Index index)
     {
-        ///logger.debug(" {} {} {}", set.size(), Glyphs.ids("set", set), Glyphs.ids("seen", seen));
-
         // Check what we have got
-        final int weight = Glyphs.weightOf(parts);
+        if (adapter.isTooHeavy(subset.weight)) {
+            logger.debug("Too high weight {} for {}", subset.weight, subset.members);
 
-        if (adapter.isTooHeavy(weight)) {
-            logger.debug("Too high weight {} for {}", weight, parts);
-
-            return;
+            return Collections.emptyList();
         }
 
-        Rectangle box = Glyphs.getBounds(parts);
-
-        if (adapter.isTooLarge(box)) {
-            logger.debug("Too large  {} for {}", box, parts);
+        if (adapter.isTooLarge(subset.box)) {
+            logger.debug("Too large  {} for {}", subset.box, subset.members);
 
-            return;
+            return Collections.emptyList();
         }
 
-        if (!adapter.isTooLight(weight)) {
+        if (!adapter.isTooLight(subset.weight)) {
             // Build compound and get acceptable evaluations for the compound
+            final Set<Glyph> parts = index.partsOf(subset.members);
             Glyph compound = (parts.size() > 1) ? GlyphFactory.buildGlyph(parts)
                     : parts.iterator().next();
             compound.addGroup(group);
@@ -153,33 +157,49 @@ public class GlyphCluster
             // Create all acceptable inters, if any, for the compound
             adapter.evaluateGlyph(compound, parts);
         } else {
-            logger.debug("Too low weight {} for {}", weight, parts);
+            logger.debug("Too low weight {} for {}", subset.weight, subset.members);
         }
 
         // Then, identify all outliers immediately reachable from the compound
-        Set<Glyph> outliers = getOutliers(parts);
-        outliers.removeAll(seen);
+        final BitSet outliers = (BitSet) subset.reach.clone();
+        outliers.andNot(subset.seen);
 
         if (outliers.isEmpty()) {
-            return; // No further growth is possible
+            return Collections.emptyList(); // No further growth is possible
         }
 
-        ///logger.debug("      {}", Glyphs.ids("outliers", outliers));
-        Rectangle setBox = Glyphs.getBounds(parts);
-        Set<Glyph> newConsidered = new LinkedHashSet<>(seen);
+        final List<Subset> largers = new ArrayList<>();
+        final BitSet newSeen = (BitSet) subset.seen.clone();
 
-        for (Glyph outlier : outliers) {
-            newConsidered.add(outlier);
+        for (int k = outliers.nextSetBit(0); k >= 0; k = outliers.nextSetBit(k + 1)) {
+            newSeen.set(k);
 
             // Check appending this atom does not make the resulting symbol too wide or too high
-            Rectangle symBox = outlier.getBounds().union(setBox);
+            final Rectangle symBox = index.bounds[k].union(subset.box);
 
             if (!adapter.isTooLarge(symBox)) {
-                Set<Glyph> largerSet = new LinkedHashSet<>(parts);
-                largerSet.add(outlier);
-                process(largerSet, newConsidered);
+                largers.add(index.larger(subset, k, symBox, (BitSet) newSeen.clone()));
             }
         }
+
+        return largers;
+    }
+
+    //---------//
+    // pushAll //
+    //---------//
+    /**
+     * Push the provided subsets, so that they get popped in list order.
+     *
+     * @param stack   the stack of subsets to process
+     * @param subsets the subsets to push
+     */
+    private static void pushAll (Deque<Subset> stack,
+                                 List<Subset> subsets)
+    {
+        for (int i = subsets.size() - 1; i >= 0; i--) {
+            stack.push(subsets.get(i));
+        }
     }
 
     //-------------//
@@ -287,6 +307,145 @@ public class GlyphCluster
         boolean isTooSmall (Rectangle bounds);
     }
 
+    //-------//
+    // Index //
+    //-------//
+    /**
+     * Cluster parts, indexed by their position in list, with their cached data.
+     */
+    private class Index
+    {
+
+        /** Cluster parts. */
+        final List<Glyph> parts;
+
+        /** Part weights. */
+        final int[] weights;
+
+        /** Part bounds. */
+        final Rectangle[] bounds;
+
+        /** Neighbors of each part. */
+        final BitSet[] neighbors;
+
+        Index (List<Glyph> parts)
+        {
+            this.parts = parts;
+
+            final int count = parts.size();
+            final Map<Glyph, Integer> indices = new HashMap<>();
+
+            for (int i = 0; i < count; i++) {
+                indices.put(parts.get(i), i);
+            }
+
+            weights = new int[count];
+            bounds = new Rectangle[count];
+            neighbors = new BitSet[count];
+
+            for (int i = 0; i < count; i++) {
+                final Glyph part = parts.get(i);
+                weights[i] = part.getWeight();
+                bounds[i] = part.getBounds();
+                neighbors[i] = new BitSet(count);
+
+                for (Glyph neighbor : adapter.getNeighbors(part)) {
+                    final Integer j = indices.get(neighbor);
+
+                    if (j != null) {
+                        neighbors[i].set(j);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Build the subset made of provided subset plus part k.
+         */
+        Subset larger (Subset subset,
+                       int k,
+                       Rectangle box,
+                       BitSet seen)
+        {
+            final BitSet members = (BitSet) subset.members.clone();
+            members.set(k);
+
+            final BitSet reach = (BitSet) subset.reach.clone();
+            reach.or(neighbors[k]);
+
+            return new Subset(members, seen, reach, subset.weight + weights[k], box);
+        }
+
+        /**
+         * Report the parts of a subset.
+         */
+        Set<Glyph> partsOf (BitSet members)
+        {
+            final Set<Glyph> set = new LinkedHashSet<>();
+
+            for (int i = members.nextSetBit(0); i >= 0; i = members.nextSetBit(i + 1)) {
+                set.add(parts.get(i));
+            }
+
+            return set;
+        }
+
+        /**
+         * Build the subset made of part i only.
+         */
+        Subset singleton (int i,
+                          BitSet considered)
+        {
+            final BitSet members = new BitSet();
+            members.set(i);
+
+            return new Subset(
+                    members,
+                    (BitSet) considered.clone(),
+                    (BitSet) neighbors[i].clone(),
+                    weights[i],
+                    new Rectangle(bounds[i]));
+        }
+    }
+
+    //--------//
+    // Subset //
+    //--------//
+    /**
+     * A subset of cluster parts, with its accumulated data.
+     */
+    private static class Subset
+    {
+
+        /** Indices of member parts. */
+        final BitSet members;
+
+        /** Indices of all parts considered so far (members plus discarded ones). */
+        final BitSet seen;
+
+        /** Indices of parts adjacent to at least one member. */
+        final BitSet reach;
+
+        /** Total weight. */
+        final int weight;
+
+        /** Union of member bounds. */
+        final Rectangle box;
+
+        Subset (BitSet members,
+                BitSet seen,
+                BitSet reach,
+                int weight,
+                Rectangle box)
+        {
+            this.members = members;
+            this.seen = seen;
+            this.reach = reach;
+            this.weight = weight;
+            this.box = box;
+        }
+    }
+
     public abstract static class AbstractAdapter
             implements Adapter
     {
@@ -21,14 +21,12 @@
 // </editor-fold>
 package org.audiveris.omr.glyph;
 
-import ij.process.ByteProcessor;
-
+import org.audiveris.omr.moments.CentralMoments;
 import org.audiveris.omr.run.MarkedRun;
 import static org.audiveris.omr.run.Orientation.VERTICAL;
 import org.audiveris.omr.run.Run;
 import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.run.RunTableFactory;
-import org.audiveris.omr.util.ByteUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -330,6 +328,11 @@ public class GlyphFactory
     //------------//
     /**
      * Build one glyph from a collection of glyph parts.
+     * <p>
+     * The compound run table is merged directly from the parts run tables.
+     * <p>
+     * If the parts are disjoint, the compound central moments are combined from the parts central
+     * moments (which get cached in each part).
      *
      * @param parts the provided glyph parts
      * @return the glyph compound
@@ -337,16 +340,39 @@ public class GlyphFactory
     public static Glyph buildGlyph (Collection<? extends Glyph> parts)
     {
         final Rectangle box = Glyphs.getBounds(parts);
-        final ByteProcessor buffer = new ByteProcessor(box.width, box.height);
-        ByteUtil.raz(buffer); // buffer.invert();
+        final List<RunTable> tables = new ArrayList<>(parts.size());
+        final List<Point> offsets = new ArrayList<>(parts.size());
+
+        for (Glyph part : parts) {
+            tables.add(part.getRunTable());
+            offsets.add(new Point(part.getLeft() - box.x, part.getTop() - box.y));
+        }
+
+        final RunTable runTable = new RunTableFactory(VERTICAL).createUnion(
+                box.width,
+                box.height,
+                tables,
+                offsets);
+        final Glyph compound = new Glyph(box.x, box.y, runTable);
+
+        // Parts are disjoint if no pixel is shared, hence if weights simply add up
+        int partsWeight = 0;
 
         for (Glyph part : parts) {
-            part.getRunTable().write(buffer, part.getLeft() - box.x, part.getTop() - box.y);
+            partsWeight += part.getWeight();
         }
 
-        final RunTable runTable = new RunTableFactory(VERTICAL).createTable(buffer);
+        if ((parts.size() > 1) && (partsWeight == compound.getWeight())) {
+            final List<CentralMoments> moments = new ArrayList<>(parts.size());
+
+            for (Glyph part : parts) {
+                moments.add(part.getCentralMoments());
+            }
+
+            compound.centralMoments = CentralMoments.union(moments);
+        }
 
-        return new Glyph(box.x, box.y, runTable);
+        return compound;
     }
 
     //-------------//
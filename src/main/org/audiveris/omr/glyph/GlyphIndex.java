@@ -32,7 +32,6 @@ import org.audiveris.omr.ui.selection.MouseMovement;
 import org.audiveris.omr.ui.selection.SelectionHint;
 import org.audiveris.omr.ui.selection.SelectionService;
 import org.audiveris.omr.util.BasicIndex;
-import org.audiveris.omr.util.Entities;
 import org.audiveris.omr.util.EntityIndex;
 import org.audiveris.omr.util.IntUtil;
 
@@ -104,7 +103,7 @@ public class GlyphIndex
     @Override
     public List<Glyph> getContainedEntities (Rectangle rectangle)
     {
-        return Entities.containedEntities(iterator(), rectangle);
+        return glyphsOf(weakIndex.getContainedEntities(rectangle));
     }
 
     //-----------------------//
@@ -113,7 +112,7 @@ public class GlyphIndex
     @Override
     public List<Glyph> getContainingEntities (Point point)
     {
-        return Entities.containingEntities(iterator(), point);
+        return glyphsOf(weakIndex.getContainingEntities(point));
     }
 
     //-------------//
@@ -431,6 +430,34 @@ public class GlyphIndex
         return id;
     }
 
+    //----------//
+    // glyphsOf //
+    //----------//
+    /**
+     * Report the glyphs still referenced by the provided weak references.
+     *
+     * @param weaks the weak references
+     * @return the live glyphs, perhaps empty but not null
+     */
+    private static List<Glyph> glyphsOf (List<WeakGlyph> weaks)
+    {
+        if (weaks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Glyph> glyphs = new ArrayList<>(weaks.size());
+
+        for (WeakGlyph weak : weaks) {
+            final Glyph glyph = weak.get();
+
+            if (glyph != null) {
+                glyphs.add(glyph);
+            }
+        }
+
+        return glyphs;
+    }
+
     //-----------//
     // Constants //
     //-----------//
@@ -33,6 +33,7 @@ import org.audiveris.omr.ui.selection.SelectionHint;
 import org.audiveris.omr.util.BasicIndex;
 import org.audiveris.omr.util.IntUtil;
 import org.audiveris.omr.util.Navigable;
+import org.audiveris.omr.util.SpatialIndex;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -133,6 +134,22 @@ public class FilamentIndex
         return sheet;
     }
 
+    //--------------------//
+    // createSpatialIndex //
+    //--------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Filaments keep growing after their registration, hence no spatial index.
+     *
+     * @return null
+     */
+    @Override
+    protected SpatialIndex<Filament> createSpatialIndex ()
+    {
+        return null;
+    }
+
     //---------//
     // publish //
     //---------//
@@ -25,12 +25,18 @@ import ij.process.ByteProcessor;
 
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
-import org.audiveris.omr.math.Population;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class {@code AdaptiveFilter} is an abstract implementation of {@code PixelFilter}
@@ -43,6 +49,10 @@ import java.util.Arrays;
  * The mean value and the standard deviation value are provided thanks to underlying integrals
  * {@link Tile} instances.
  * The precise tile size and behavior is the responsibility of subclasses of this class.
+ * <p>
+ * Binarization of a whole image, via {@link #filteredImage()}, does not use tiles but processes
+ * horizontal bands of rows, each with its own tables of integrals, in parallel when possible.
+ * The same band processing is used by {@link #filterRows(int, int, byte[])} for a range of rows.
  * <br>
  * See work of <a href=
  * "http://www.dfki.uni-kl.de/~shafait/papers/Shafait-efficient-binarization-SPIE08.pdf">
@@ -123,24 +133,79 @@ public abstract class AdaptiveFilter
     //---------------//
     // filteredImage //
     //---------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The image is processed as a sequence of horizontal bands, each band using its own
+     * integral tables, so that bands can be processed in parallel.
+     * Result is identical to a pixel-per-pixel call to {@link #isFore(int, int)}.
+     *
+     * @return the binarized image
+     */
     @Override
     public ByteProcessor filteredImage ()
     {
-        ByteProcessor ip = new ByteProcessor(source.getWidth(), source.getHeight());
-
-        for (int x = 0, w = ip.getWidth(); x < w; x++) {
-            for (int y = 0, h = ip.getHeight(); y < h; y++) {
-                if (isFore(x, y)) {
-                    ip.set(x, y, FOREGROUND);
-                } else {
-                    ip.set(x, y, BACKGROUND);
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final ByteProcessor ip = new ByteProcessor(width, height);
+        final byte[] out = (byte[]) ip.getPixels();
+
+        // Define bands
+        final int bandCount = getBandCount(height);
+        final int bandHeight = (height + bandCount - 1) / bandCount;
+        final List<Callable<Void>> tasks = new ArrayList<>(bandCount);
+
+        for (int y = 0; y < height; y += bandHeight) {
+            final int yStart = y;
+            final int yStop = Math.min(height, y + bandHeight);
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    new Band(yStart, yStop).binarize(out, 0);
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            if ((tasks.size() > 1) && OmrExecutors.defaultParallelism.getValue()) {
+                // In parallel
+                for (Future<Void> future : OmrExecutors.getHighExecutor().invokeAll(tasks)) {
+                    future.get();
+                }
+            } else {
+                // In sequence
+                for (Callable<Void> task : tasks) {
+                    task.call();
                 }
             }
+        } catch (InterruptedException ex) {
+            logger.warn("Binarization got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
         }
 
         return ip;
     }
 
+    //------------//
+    // filterRows //
+    //------------//
+    @Override
+    public void filterRows (int yStart,
+                            int yStop,
+                            byte[] out)
+    {
+        new Band(yStart, yStop).binarize(out, yStart);
+    }
+
     //------------//
     // getContext //
     //------------//
@@ -148,33 +213,24 @@ public abstract class AdaptiveFilter
     public Context getContext (int x,
                                int y)
     {
-        final int imageWidth = source.getWidth();
-        final int imageHeight = source.getHeight();
-
-        int xMin = Math.max(0, x - HALF_WINDOW_SIZE);
-        int xMax = Math.min(imageWidth - 1, x + HALF_WINDOW_SIZE);
-
-        int yMin = Math.max(0, y - HALF_WINDOW_SIZE);
-        int yMax = Math.min(imageHeight - 1, y + HALF_WINDOW_SIZE);
-
-        // Brute force retrieval
-        Population pop = new Population();
-
-        for (int ix = xMin; ix <= xMax; ix++) {
-            for (int iy = yMin; iy <= yMax; iy++) {
-                pop.includeValue(source.get(ix, iy));
-            }
+        if ((x < 0) || (x >= source.getWidth()) || (y < 0) || (y >= source.getHeight())) {
+            return null;
         }
 
-        if (pop.getCardinality() > 0) {
-            double mean = pop.getMeanValue();
-            double stdDev = pop.getStandardDeviation();
-            double threshold = getThreshold(mean, stdDev);
+        // Integrals limited to the single row of interest
+        final Band band = new Band(y, y + 1);
+        final double[] sums = band.getWindowSums(x, y);
+        final double n = sums[0];
+        final double s = sums[1];
+        final double s2 = sums[2];
 
-            return new AdaptiveContext(mean, stdDev, threshold);
-        } else {
-            return null;
-        }
+        // Mean value and unbiased standard deviation, as computed by a Population
+        final double mean = s / n;
+        final double biasedVariance = Math.max(0, (s2 - ((s * s) / n)) / n);
+        final double stdDev = (n > 1) ? Math.sqrt((n * biasedVariance) / (n - 1)) : 0;
+        final double threshold = getThreshold(mean, stdDev);
+
+        return new AdaptiveContext(mean, stdDev, threshold);
     }
 
     // -------//
@@ -207,6 +263,174 @@ public abstract class AdaptiveFilter
         return (MEAN_COEFF * mean) + (STD_DEV_COEFF * stdDev);
     }
 
+    //--------------//
+    // getBandCount //
+    //--------------//
+    /**
+     * Report the number of horizontal bands to use for the provided image height.
+     * <p>
+     * We use one band per CPU, but also limit band height to save memory.
+     *
+     * @param height image height
+     * @return the number of bands, at least 1
+     */
+    private int getBandCount (int height)
+    {
+        final int cpus = OmrExecutors.defaultParallelism.getValue() ? OmrExecutors.getNumberOfCpus()
+                : 1;
+        final int maxBandHeight = Math.max(1, constants.maxBandHeight.getValue());
+        final int byHeight = (height + maxBandHeight - 1) / maxBandHeight;
+
+        return Math.max(1, Math.min(height, Math.max(cpus, byHeight)));
+    }
+
+    //------//
+    // Band //
+    //------//
+    /**
+     * Handles a horizontal band of image rows, with its tables of integrals.
+     * <p>
+     * To process rows [yStart..yStop[, the tables cover rows from yStart - HALF_WINDOW_SIZE - 1
+     * (exclusive) to yStop + HALF_WINDOW_SIZE (inclusive), clipped by image bounds.
+     * Each table has an additional first column and first row set to zero.
+     */
+    private class Band
+    {
+
+        /** First row to process. */
+        private final int yStart;
+
+        /** Row past last row to process. */
+        private final int yStop;
+
+        /** Image row corresponding to first (zero) table row. */
+        private final int yLo;
+
+        /** Table width = image width + 1. */
+        private final int stride;
+
+        /** Integrals of plain values. */
+        private final long[] sums;
+
+        /** Integrals of squared values. */
+        private final long[] sqrSums;
+
+        /**
+         * Create a band and populate its tables of integrals.
+         *
+         * @param yStart first row to process
+         * @param yStop  row past last row to process
+         */
+        Band (int yStart,
+              int yStop)
+        {
+            this.yStart = yStart;
+            this.yStop = yStop;
+
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final byte[] pixels = (byte[]) source.getPixels();
+
+            yLo = Math.max(-1, yStart - HALF_WINDOW_SIZE - 1);
+
+            final int yHi = Math.min(height - 1, (yStop - 1) + HALF_WINDOW_SIZE);
+            final int rows = yHi - yLo + 1;
+            stride = width + 1;
+            sums = new long[rows * stride];
+            sqrSums = new long[rows * stride];
+
+            for (int r = 1; r < rows; r++) {
+                final int rowOffset = (yLo + r) * width;
+                final int cell = r * stride;
+                final int above = cell - stride;
+                long rowSum = 0;
+                long rowSqrSum = 0;
+
+                for (int x = 0; x < width; x++) {
+                    final long pix = pixels[rowOffset + x] & 0xFF;
+                    rowSum += pix;
+                    rowSqrSum += (pix * pix);
+                    sums[cell + x + 1] = sums[above + x + 1] + rowSum;
+                    sqrSums[cell + x + 1] = sqrSums[above + x + 1] + rowSqrSum;
+                }
+            }
+        }
+
+        /**
+         * Binarize the band rows into the output pixels.
+         *
+         * @param out   the output pixels
+         * @param yBase image row corresponding to first output row
+         */
+        void binarize (byte[] out,
+                       int yBase)
+        {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final byte[] pixels = (byte[]) source.getPixels();
+
+            for (int y = yStart; y < yStop; y++) {
+                final int y1 = Math.max(-1, y - HALF_WINDOW_SIZE - 1);
+                final int y2 = Math.min(height - 1, y + HALF_WINDOW_SIZE);
+                final int top = (y1 - yLo) * stride;
+                final int bottom = (y2 - yLo) * stride;
+                final int rowOffset = y * width;
+                final int outOffset = (y - yBase) * width;
+
+                for (int x = 0; x < width; x++) {
+                    final int x1 = Math.max(-1, x - HALF_WINDOW_SIZE - 1);
+                    final int x2 = Math.min(width - 1, x + HALF_WINDOW_SIZE);
+                    final int left = x1 + 1;
+                    final int right = x2 + 1;
+
+                    // Area = number of values
+                    final int area = (y2 - y1) * (x2 - x1);
+
+                    final double sum = (sums[top + left] + sums[bottom + right])
+                                       - sums[top + right] - sums[bottom + left];
+                    final double sqrSum = (sqrSums[top + left] + sqrSums[bottom + right])
+                                          - sqrSums[top + right] - sqrSums[bottom + left];
+                    final double mean = sum / area;
+                    final double sqrMean = sqrSum / area;
+                    final double var = Math.abs(sqrMean - (mean * mean));
+                    final double threshold = getThreshold(mean, Math.sqrt(var));
+
+                    final int pixValue = pixels[rowOffset + x] & 0xFF;
+                    out[outOffset + x] = (byte) ((pixValue <= threshold) ? FOREGROUND : BACKGROUND);
+                }
+            }
+        }
+
+        /**
+         * Report the count, sum and sum of squares of pixel values in window around
+         * provided location.
+         *
+         * @param x abscissa of window center
+         * @param y ordinate of window center, within band rows
+         * @return count, sum and sum of squares
+         */
+        double[] getWindowSums (int x,
+                                int y)
+        {
+            final int y1 = Math.max(-1, y - HALF_WINDOW_SIZE - 1);
+            final int y2 = Math.min(source.getHeight() - 1, y + HALF_WINDOW_SIZE);
+            final int x1 = Math.max(-1, x - HALF_WINDOW_SIZE - 1);
+            final int x2 = Math.min(source.getWidth() - 1, x + HALF_WINDOW_SIZE);
+            final int top = (y1 - yLo) * stride;
+            final int bottom = (y2 - yLo) * stride;
+            final int left = x1 + 1;
+            final int right = x2 + 1;
+
+            return new double[]{
+                (y2 - y1) * (x2 - x1),
+                (sums[top + left] + sums[bottom + right]) - sums[top + right]
+                - sums[bottom + left],
+                (sqrSums[top + left] + sqrSums[bottom + right]) - sqrSums[top + right]
+                - sqrSums[bottom + left]
+            };
+        }
+    }
+
     //------//
     // Tile //
     //------//
@@ -390,5 +614,10 @@ public abstract class AdaptiveFilter
                 "Pixels",
                 18,
                 "Half size of window around a given pixel");
+
+        private final Constant.Integer maxBandHeight = new Constant.Integer(
+                "Pixels",
+                512,
+                "Maximum height of a band of rows processed at once by binarization");
     }
 }
@@ -7,6 +7,22 @@ package org.audiveris.omr.image;
 
 import ij.process.ByteProcessor;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 /**
  * Class {@code ChamferDistance} implements a Distance Transform operation using
  * chamfer masks.
@@ -100,17 +116,45 @@ public interface ChamferDistance
 
     /**
      * Abstract implementation.
+     * <p>
+     * On large tables, each pass is run in parallel as a wavefront of rows: a row is processed
+     * by chunks of columns, each chunk waiting for the needed pixels of the preceding rows to be
+     * final.
+     * Since each pixel is computed from exactly the same neighbor values as in the sequential
+     * pass, the resulting table is identical.
      */
     public abstract class Abstract
             implements ChamferDistance
     {
 
+        private static final Constants constants = new Constants();
+
+        private static final Logger logger = LoggerFactory.getLogger(ChamferDistance.class);
+
+        /** Number of columns processed between two progress publications. */
+        private static final int CHUNK_WIDTH = 64;
+
         /** The local distance mask to apply. */
         private final int[][] chamfer;
 
         /** Mask normalizer. */
         private final int normalizer;
 
+        /** Abscissa offsets, in forward direction, to the neighbors a pixel depends on. */
+        private final int[] dxs;
+
+        /** Ordinate offsets, in forward direction, to the neighbors a pixel depends on. */
+        private final int[] dys;
+
+        /** Distance increments, parallel to offsets. */
+        private final int[] dts;
+
+        /** Maximum row offset. */
+        private final int rowReach;
+
+        /** Maximum column offset. */
+        private final int colReach;
+
         /**
          * Creates a new Abstract object, with chamfer3 as default mask.
          */
@@ -128,6 +172,47 @@ public interface ChamferDistance
         {
             this.chamfer = chamfer;
             normalizer = chamfer[0][2];
+
+            // Neighbors that a pixel depends on, in forward pass
+            final List<int[]> offsets = new ArrayList<>();
+
+            for (int[] cf : chamfer) {
+                int dx = cf[0];
+                int dy = cf[1];
+                int dt = cf[2];
+                offsets.add(new int[]{dx, dy, dt});
+
+                if (dy != 0) {
+                    offsets.add(new int[]{-dx, dy, dt});
+                }
+
+                if (dx != dy) {
+                    offsets.add(new int[]{dy, dx, dt});
+
+                    if (dy != 0) {
+                        offsets.add(new int[]{-dy, dx, dt});
+                    }
+                }
+            }
+
+            dxs = new int[offsets.size()];
+            dys = new int[offsets.size()];
+            dts = new int[offsets.size()];
+
+            int rows = 0;
+            int cols = 0;
+
+            for (int i = 0; i < offsets.size(); i++) {
+                final int[] offset = offsets.get(i);
+                dxs[i] = offset[0];
+                dys[i] = offset[1];
+                dts[i] = offset[2];
+                rows = Math.max(rows, Math.abs(offset[1]));
+                cols = Math.max(cols, Math.abs(offset[0]));
+            }
+
+            rowReach = rows;
+            colReach = cols;
         }
 
         //---------//
@@ -191,6 +276,65 @@ public interface ChamferDistance
          * @param output the output data to process
          */
         public void process (DistanceTable output)
+        {
+            final int taskCount = getTaskCount(output);
+
+            if (taskCount > 1) {
+                processParallel(output, taskCount);
+            } else {
+                processSequential(output);
+            }
+        }
+
+        /**
+         * Get Table instance of the proper type and size.
+         *
+         * @param width      desired width
+         * @param height     desired height
+         * @param normalizer the normalizing value
+         * @return the table of proper type and dimension
+         */
+        protected abstract DistanceTable allocateOutput (int width,
+                                                         int height,
+                                                         int normalizer);
+
+        //-----------------//
+        // processParallel //
+        //-----------------//
+        /**
+         * Run the forward and backward passes, each as a wavefront of rows.
+         *
+         * @param output    the output data to process
+         * @param taskCount number of parallel tasks
+         */
+        void processParallel (DistanceTable output,
+                              int taskCount)
+        {
+            runPass(new Pass(output, true), taskCount);
+            runPass(new Pass(output, false), taskCount);
+        }
+
+        //--------------//
+        // getTaskCount //
+        //--------------//
+        private int getTaskCount (DistanceTable output)
+        {
+            if (!OmrExecutors.defaultParallelism.getValue()) {
+                return 1;
+            }
+
+            if (((long) output.getWidth() * output.getHeight()) < constants.minParallelSize
+                    .getValue()) {
+                return 1;
+            }
+
+            return Math.min(OmrExecutors.getNumberOfCpus(), output.getHeight());
+        }
+
+        //-------------------//
+        // processSequential //
+        //-------------------//
+        private void processSequential (DistanceTable output)
         {
             final int width = output.getWidth();
             final int height = output.getHeight();
@@ -252,18 +396,6 @@ public interface ChamferDistance
             }
         }
 
-        /**
-         * Get Table instance of the proper type and size.
-         *
-         * @param width      desired width
-         * @param height     desired height
-         * @param normalizer the normalizing value
-         * @return the table of proper type and dimension
-         */
-        protected abstract DistanceTable allocateOutput (int width,
-                                                         int height,
-                                                         int normalizer);
-
         //------------------//
         // initializeToBack //
         //------------------//
@@ -296,6 +428,47 @@ public interface ChamferDistance
             }
         }
 
+        //---------//
+        // runPass //
+        //---------//
+        private void runPass (final Pass pass,
+                              int taskCount)
+        {
+            final List<Callable<Void>> tasks = new ArrayList<>(taskCount);
+
+            for (int i = 0; i < taskCount; i++) {
+                tasks.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call ()
+                            throws Exception
+                    {
+                        pass.run();
+
+                        return null;
+                    }
+                });
+            }
+
+            try {
+                for (Future<Void> future : OmrExecutors.getHighExecutor().invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                logger.warn("ChamferDistance got interrupted");
+                throw new ProcessingCancellationException(ex);
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+
+                if (cause instanceof ProcessingCancellationException) {
+                    throw (ProcessingCancellationException) cause;
+                }
+
+                logger.warn("Exception raised in ChamferDistance", cause);
+                throw new RuntimeException(cause);
+            }
+        }
+
         //------------//
         // testAndSet //
         //------------//
@@ -320,6 +493,153 @@ public interface ChamferDistance
 
             output.setValue(x, y, newvalue);
         }
+
+        //------//
+        // Pass //
+        //------//
+        /**
+         * One pass (forward or backward) on the table, shared by parallel tasks.
+         * <p>
+         * Rows are claimed in pass order, so that a task never waits for a row not yet claimed.
+         */
+        private class Pass
+        {
+
+            final DistanceTable output;
+
+            final boolean forward;
+
+            final int width;
+
+            final int height;
+
+            /** Count of columns (in pass order) already final, per row. */
+            final AtomicIntegerArray progress;
+
+            /** Index (in pass order) of next row to claim. */
+            final AtomicInteger nextRow = new AtomicInteger();
+
+            /** Set when a task has failed. */
+            volatile boolean aborted;
+
+            Pass (DistanceTable output,
+                  boolean forward)
+            {
+                this.output = output;
+                this.forward = forward;
+                width = output.getWidth();
+                height = output.getHeight();
+                progress = new AtomicIntegerArray(height);
+            }
+
+            void run ()
+            {
+                try {
+                    int k;
+
+                    while ((k = nextRow.getAndIncrement()) < height) {
+                        if (!processRow(forward ? k : (height - 1 - k))) {
+                            return;
+                        }
+                    }
+                } catch (RuntimeException | Error ex) {
+                    aborted = true;
+                    throw ex;
+                }
+            }
+
+            /**
+             * Compute the final pass value of a pixel, from the values of the neighbors
+             * already processed in this pass.
+             */
+            private void processPixel (int x,
+                                       int y)
+            {
+                final int v = output.getValue(x, y);
+                int best = v;
+
+                for (int i = 0; i < dts.length; i++) {
+                    final int nx = forward ? (x - dxs[i]) : (x + dxs[i]);
+                    final int ny = forward ? (y - dys[i]) : (y + dys[i]);
+
+                    if ((nx < 0) || (nx >= width) || (ny < 0) || (ny >= height)) {
+                        continue;
+                    }
+
+                    final int nv = output.getValue(nx, ny);
+
+                    if (nv == VALUE_UNKNOWN) {
+                        continue;
+                    }
+
+                    final int newvalue = nv + dts[i];
+
+                    if ((best < 0) || (best >= newvalue)) {
+                        best = newvalue;
+                    }
+                }
+
+                if (best != v) {
+                    output.setValue(x, y, best);
+                }
+            }
+
+            /**
+             * Process a row, chunk by chunk.
+             *
+             * @return false if pass has been aborted
+             */
+            private boolean processRow (int y)
+            {
+                for (int start = 0; start < width;) {
+                    final int stop = Math.min(width, start + CHUNK_WIDTH);
+                    final int needed = Math.min(width, stop + colReach);
+
+                    // Wait for the needed pixels of preceding rows
+                    for (int r = 1; r <= rowReach; r++) {
+                        final int yy = forward ? (y - r) : (y + r);
+
+                        if ((yy < 0) || (yy >= height)) {
+                            break;
+                        }
+
+                        while (progress.get(yy) < needed) {
+                            if (aborted) {
+                                return false;
+                            }
+
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new ProcessingCancellationException();
+                            }
+
+                            Thread.yield();
+                        }
+                    }
+
+                    for (int i = start; i < stop; i++) {
+                        processPixel(forward ? i : (width - 1 - i), y);
+                    }
+
+                    progress.set(y, stop);
+                    start = stop;
+                }
+
+                return true;
+            }
+        }
+
+        //-----------//
+        // Constants //
+        //-----------//
+        private static class Constants
+                extends ConstantSet
+        {
+
+            private final Constant.Integer minParallelSize = new Constant.Integer(
+                    "pixels",
+                    250000,
+                    "Minimum table size to compute distances in parallel");
+        }
     }
 
     //---------//
@@ -0,0 +1,264 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 C o m p i l e d T e m p l a t e                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import static org.audiveris.omr.image.ChamferDistance.VALUE_UNKNOWN;
+import org.audiveris.omr.image.Anchored.Anchor;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class {@code CompiledTemplate} is a {@link Template} prepared for intensive matching
+ * on a given distance table, with a given anchor.
+ * <p>
+ * Key points are stored as parallel primitive arrays (dx, dy, weight, expected value), together
+ * with their precomputed offset in the backing array of the distance table, so that a whole scan
+ * line can be evaluated at once by {@link #evaluateRow(int, int, int, double[])}.
+ * <p>
+ * Results are identical to those of {@link Template#evaluate(int, int, Anchor, DistanceTable)}.
+ * <p>
+ * An instance uses an internal buffer and is thus usable by only one thread at a time.
+ *
+ * @author Hervé Bitteur
+ */
+@NotThreadSafe
+public class CompiledTemplate
+{
+
+    /** Underlying template. */
+    private final Template template;
+
+    /** Distance table to search. */
+    private final DistanceTable distances;
+
+    /** Backing array of distance table, if directly accessible. */
+    private final short[] values;
+
+    /** Width of distance table. */
+    private final int tableWidth;
+
+    /** Height of distance table. */
+    private final int tableHeight;
+
+    /** Key point abscissae, relative to anchor location. */
+    private final int[] dxs;
+
+    /** Key point ordinates, relative to anchor location. */
+    private final int[] dys;
+
+    /** Key point offsets in table backing array, relative to anchor location. */
+    private final int[] keyOffsets;
+
+    /** Key point weights. */
+    private final double[] weights;
+
+    /** Key point expected values: 0 for foreground, 1 for background. */
+    private final int[] expecteds;
+
+    /** Buffer for sums of weights. */
+    private double[] weightSums = new double[0];
+
+    /**
+     * Creates a new {@code CompiledTemplate} object.
+     *
+     * @param template   the underlying template
+     * @param anchor     the anchor to use for locations, null for upper left
+     * @param distances  the distance table to search
+     * @param foreWeight weight for foreground key points
+     * @param backWeight weight for exterior background key points
+     * @param holeWeight weight for interior background key points
+     */
+    CompiledTemplate (Template template,
+                      Anchor anchor,
+                      DistanceTable distances,
+                      double foreWeight,
+                      double backWeight,
+                      double holeWeight)
+    {
+        this.template = template;
+        this.distances = distances;
+
+        values = getValues(distances);
+        tableWidth = distances.getWidth();
+        tableHeight = distances.getHeight();
+
+        final Point anchorOffset = (anchor != null) ? template.getOffset(anchor) : null;
+        final Point offset = (anchorOffset != null) ? anchorOffset : new Point(0, 0);
+        final List<PixelDistance> keyPoints = template.getKeyPoints();
+        final int size = keyPoints.size();
+        dxs = new int[size];
+        dys = new int[size];
+        keyOffsets = new int[size];
+        weights = new double[size];
+        expecteds = new int[size];
+
+        for (int k = 0; k < size; k++) {
+            final PixelDistance pix = keyPoints.get(k);
+            dxs[k] = pix.x - offset.x;
+            dys[k] = pix.y - offset.y;
+            keyOffsets[k] = (dys[k] * tableWidth) + dxs[k];
+
+            // pix.d < 0 for expected hole, expected negative distance to nearest foreground
+            // pix.d == 0 for expected foreground, 0 distance
+            // pix.d > 0 for expected background, expected distance to nearest foreground
+            weights[k] = (pix.d == 0) ? foreWeight : ((pix.d > 0) ? backWeight : holeWeight);
+            expecteds[k] = (pix.d == 0) ? 0 : 1;
+        }
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    /**
+     * Evaluate the template at the provided anchor location.
+     *
+     * @param x location abscissa
+     * @param y location ordinate
+     * @return the weighted average distance computed on all key positions
+     */
+    public double evaluate (int x,
+                            int y)
+    {
+        final double[] out = new double[1];
+        evaluateRow(y, x, x, out);
+
+        return out[0];
+    }
+
+    //-------------//
+    // evaluateRow //
+    //-------------//
+    /**
+     * Evaluate the template at every anchor location (x,y) for x in [xFrom..xTo].
+     * <p>
+     * Key points are browsed in the outer loop, so that the inner loop reads consecutive
+     * cells of the distance table.
+     *
+     * @param y     locations ordinate
+     * @param xFrom first abscissa
+     * @param xTo   last abscissa (inclusive)
+     * @param out   output array, out[x - xFrom] being populated with distance at (x,y)
+     */
+    public void evaluateRow (int y,
+                             int xFrom,
+                             int xTo,
+                             double[] out)
+    {
+        final int count = xTo - xFrom + 1;
+
+        if (weightSums.length < count) {
+            weightSums = new double[count];
+        }
+
+        final double[] sums = weightSums;
+        Arrays.fill(out, 0, count, 0);
+        Arrays.fill(sums, 0, count, 0);
+
+        for (int k = 0; k < dxs.length; k++) {
+            // Ignore key point if located out of image
+            final int ny = y + dys[k];
+
+            if ((ny < 0) || (ny >= tableHeight)) {
+                continue;
+            }
+
+            final int xMin = Math.max(xFrom, -dxs[k]);
+            final int xMax = Math.min(xTo, tableWidth - 1 - dxs[k]);
+            final double weight = weights[k];
+            final int expected = expecteds[k];
+
+            if (values != null) {
+                int index = (y * tableWidth) + xMin + keyOffsets[k];
+
+                for (int i = xMin - xFrom, iBreak = xMax - xFrom; i <= iBreak; i++, index++) {
+                    final int actualDist = values[index];
+
+                    // Ignore neutralized locations in distance table
+                    if (actualDist != VALUE_UNKNOWN) {
+                        if (((actualDist == 0) ? 0 : 1) != expected) {
+                            out[i] += weight;
+                        }
+
+                        sums[i] += weight;
+                    }
+                }
+            } else {
+                for (int x = xMin; x <= xMax; x++) {
+                    final int actualDist = distances.getValue(x + dxs[k], ny);
+
+                    if (actualDist != VALUE_UNKNOWN) {
+                        final int i = x - xFrom;
+
+                        if (((actualDist == 0) ? 0 : 1) != expected) {
+                            out[i] += weight;
+                        }
+
+                        sums[i] += weight;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            out[i] = (sums[i] == 0) ? Double.MAX_VALUE : (out[i] / sums[i]);
+        }
+    }
+
+    //-------------//
+    // getTemplate //
+    //-------------//
+    /**
+     * Report the underlying template.
+     *
+     * @return the template
+     */
+    public Template getTemplate ()
+    {
+        return template;
+    }
+
+    //-----------//
+    // getValues //
+    //-----------//
+    /**
+     * Report the backing array of the distance table, if directly accessible.
+     *
+     * @param distances the distance table
+     * @return the backing array or null
+     */
+    private static short[] getValues (DistanceTable distances)
+    {
+        if (distances instanceof DistanceTable.Short) {
+            final Table.Short table = (Table.Short) ((DistanceTable.Short) distances).getTable();
+
+            if (table.roi == null) {
+                return table.getValues();
+            }
+        }
+
+        return null;
+    }
+}
@@ -52,6 +52,14 @@ public class DistanceFilter
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public void filterRows (int yStart,
+                            int yStop,
+                            byte[] out)
+    {
+        Rows.filter(this, yStart, yStop, out);
+    }
+
     @Override
     public int get (int x,
                     int y)
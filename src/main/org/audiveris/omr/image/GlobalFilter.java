@@ -74,6 +74,17 @@ public class GlobalFilter
         return ip;
     }
 
+    //------------//
+    // filterRows //
+    //------------//
+    @Override
+    public void filterRows (int yStart,
+                            int yStop,
+                            byte[] out)
+    {
+        Rows.filter(this, yStart, yStop, out);
+    }
+
     //------------//
     // getContext //
     //------------//
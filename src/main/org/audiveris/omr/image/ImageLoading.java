@@ -39,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
@@ -67,6 +68,7 @@ import javax.media.jai.JAI;
  * <ul>
  * <li>{@link Loader#getImageCount()} to know how many images are available in the input file,</li>
  * <li>{@link Loader#getImage(int)} to return any specific image,</li>
+ * <li>{@link Loader#getImageDimension(int)} to know the size of any image without decoding it,</li>
  * <li>{@link Loader#dispose()} to finally release any resources.</li>
  * </ul>
  * </ol>
@@ -277,6 +279,16 @@ public abstract class ImageLoading
         BufferedImage getImage (int id)
                 throws IOException;
 
+        /**
+         * Report the dimension of the specific image, without fully loading it if possible.
+         *
+         * @param id specified image id (its index counted from 1)
+         * @return the image dimension
+         * @throws IOException for any IO error
+         */
+        Dimension getImageDimension (int id)
+                throws IOException;
+
         /**
          * Report the count of images available in input file.
          *
@@ -364,6 +376,15 @@ public abstract class ImageLoading
 
             return img;
         }
+
+        @Override
+        public Dimension getImageDimension (int id)
+                throws IOException
+        {
+            checkId(id);
+
+            return new Dimension(reader.getWidth(id - 1), reader.getHeight(id - 1));
+        }
     }
 
     //------------//
@@ -399,23 +420,19 @@ public abstract class ImageLoading
             checkId(id);
 
             // desired scale = pdfResolution / default PDF resolution
-            float scale = constants.pdfResolution.getValue() / 72.0f;
+            float scale = getScale();
 
             // obtain relevant page parameters
             PDPage page = doc.getPageTree().getPageAt(id - 1);
             Rectangle2D rect = page.getCropBox().toNormalizedRectangle();
-            int rotation = page.getRotate();
-            logger.debug("Page #{} rotation: {}°", id, rotation);
+            logger.debug("Page #{} rotation: {}°", id, page.getRotate());
 
             // swap width and height according with the rotation angle
             AffineTransform pageTransform = new AffineTransform();
-            PDFGeometryTools.adjustTransform(pageTransform, rotation, rect);
-
-            Point2D newDims = new Point2D.Double(rect.getWidth(), rect.getHeight());
-            pageTransform.deltaTransform(newDims, newDims);
+            Point2D newDims = getPageDimension(page, rect, pageTransform);
 
-            double pageWidth = Math.abs(newDims.getX());
-            double pageHeight = Math.abs(newDims.getY());
+            double pageWidth = newDims.getX();
+            double pageHeight = newDims.getY();
 
             BufferedImage image = new BufferedImage(
                     (int) (pageWidth * scale),
@@ -465,6 +482,45 @@ public abstract class ImageLoading
 
             return image;
         }
+
+        @Override
+        public Dimension getImageDimension (int id)
+                throws IOException
+        {
+            checkId(id);
+
+            float scale = getScale();
+            PDPage page = doc.getPageTree().getPageAt(id - 1);
+            Rectangle2D rect = page.getCropBox().toNormalizedRectangle();
+            Point2D dims = getPageDimension(page, rect, new AffineTransform());
+
+            return new Dimension((int) (dims.getX() * scale), (int) (dims.getY() * scale));
+        }
+
+        /**
+         * Report page width and height (in PDF units) once page rotation is applied.
+         *
+         * @param page          the PDF page
+         * @param rect          the page normalized crop box
+         * @param pageTransform (output) the page transform, adjusted for rotation
+         * @return the page dimension as a (width, height) point
+         */
+        private Point2D getPageDimension (PDPage page,
+                                          Rectangle2D rect,
+                                          AffineTransform pageTransform)
+        {
+            PDFGeometryTools.adjustTransform(pageTransform, page.getRotate(), rect);
+
+            Point2D newDims = new Point2D.Double(rect.getWidth(), rect.getHeight());
+            pageTransform.deltaTransform(newDims, newDims);
+
+            return new Point2D.Double(Math.abs(newDims.getX()), Math.abs(newDims.getY()));
+        }
+
+        private float getScale ()
+        {
+            return constants.pdfResolution.getValue() / 72.0f;
+        }
     }
 
     //-----------//
@@ -493,5 +549,14 @@ public abstract class ImageLoading
 
             return image;
         }
+
+        @Override
+        public Dimension getImageDimension (int id)
+                throws IOException
+        {
+            checkId(id);
+
+            return new Dimension(image.getWidth(), image.getHeight());
+        }
     }
 }
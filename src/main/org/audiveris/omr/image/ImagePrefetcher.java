@@ -0,0 +1,305 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  I m a g e P r e f e t c h e r                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Class {@code ImagePrefetcher} decodes, on a background thread, the images of the
+ * next sheets to be processed, so that image decoding (PDF rasterization, TIFF decoding, ...)
+ * overlaps the processing of current sheet.
+ * <p>
+ * Images are decoded in the order of the provided ids, and are kept until they are taken.
+ * Back-pressure is applied: decoding of next image waits while {@code prefetchDepth} images are
+ * already waiting, or while the free heap is below {@code minHeapHeadroom} of the maximum heap.
+ * <p>
+ * When an image is requested before its decoding has started, it is simply removed from the
+ * prefetch list and the caller is left to load it directly.
+ * Hence, the caller can never be blocked by the back-pressure.
+ * <p>
+ * The prefetch depth can be modified on the command line using:
+ * <br>{@code -option org.audiveris.omr.image.ImagePrefetcher.prefetchDepth=<n>}
+ * <br>with a value of 0 to disable prefetching.
+ *
+ * @author Hervé Bitteur
+ */
+public class ImagePrefetcher
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePrefetcher.class);
+
+    /** Period, in milliseconds, to check heap headroom again. */
+    private static final long HEAP_POLL_PERIOD = 200;
+
+    /** Path to the input file. */
+    private final Path path;
+
+    /** Ids of images to decode, in processing order. */
+    private final List<Integer> ids;
+
+    /** Images not yet taken, per id. */
+    private final Map<Integer, Slot> slots = new HashMap<>();
+
+    /** Count of images, being decoded or decoded, not yet taken. */
+    private int readyCount;
+
+    /** Set when prefetching must stop. */
+    private boolean closed;
+
+    /** Background task. */
+    private Future<?> future;
+
+    /**
+     * Creates a new {@code ImagePrefetcher} object.
+     *
+     * @param path the input file
+     * @param ids  ids of images to decode, in processing order
+     */
+    public ImagePrefetcher (Path path,
+                            List<Integer> ids)
+    {
+        this.path = path;
+        this.ids = ids;
+
+        for (Integer id : ids) {
+            slots.put(id, new Slot());
+        }
+    }
+
+    //-----------//
+    // isEnabled //
+    //-----------//
+    /**
+     * Tell whether prefetching is enabled.
+     *
+     * @return true if enabled
+     */
+    public static boolean isEnabled ()
+    {
+        return constants.prefetchDepth.getValue() > 0;
+    }
+
+    //-------//
+    // close //
+    //-------//
+    /**
+     * Stop prefetching and release all images not taken.
+     */
+    public void close ()
+    {
+        synchronized (this) {
+            closed = true;
+            slots.clear();
+            readyCount = 0;
+            notifyAll();
+        }
+
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    //-------//
+    // start //
+    //-------//
+    /**
+     * Start decoding images in background.
+     */
+    public void start ()
+    {
+        future = OmrExecutors.getCachedLowExecutor().submit(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                prefetch();
+            }
+        });
+    }
+
+    //------//
+    // take //
+    //------//
+    /**
+     * Take the image for the provided id, waiting for the end of its decoding if
+     * needed.
+     *
+     * @param id the image id
+     * @return the decoded image, or null if image is not available from this prefetcher
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized BufferedImage take (int id)
+            throws InterruptedException
+    {
+        final Slot slot = slots.get(id);
+
+        if (slot == null) {
+            return null;
+        }
+
+        // Decoding not started yet? Let the caller do it.
+        if (!slot.started) {
+            slots.remove(id);
+
+            return null;
+        }
+
+        while (!slot.done && !closed) {
+            wait();
+        }
+
+        if (slots.remove(id) != null) {
+            readyCount--;
+            notifyAll();
+        }
+
+        return slot.image;
+    }
+
+    //-------------//
+    // hasHeadroom //
+    //-------------//
+    /**
+     * Check whether the free heap is large enough to decode one more image.
+     *
+     * @return true if OK
+     */
+    private boolean hasHeadroom ()
+    {
+        final Runtime rt = Runtime.getRuntime();
+        final long max = rt.maxMemory();
+        final long free = max - (rt.totalMemory() - rt.freeMemory());
+
+        return free >= (constants.minHeapHeadroom.getValue() * max);
+    }
+
+    //----------//
+    // prefetch //
+    //----------//
+    /**
+     * Decode images in sequence, as allowed by back-pressure.
+     */
+    private void prefetch ()
+    {
+        final int depth = constants.prefetchDepth.getValue();
+        final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+
+        if (loader == null) {
+            return;
+        }
+
+        try {
+            for (Integer id : ids) {
+                final Slot slot;
+
+                synchronized (this) {
+                    while (!closed && ((readyCount >= depth) || !hasHeadroom())) {
+                        wait(HEAP_POLL_PERIOD);
+                    }
+
+                    slot = slots.get(id);
+
+                    if (closed) {
+                        return;
+                    }
+
+                    if (slot == null) {
+                        continue; // Already taken, without prefetching
+                    }
+
+                    slot.started = true;
+                    readyCount++;
+                }
+
+                BufferedImage image = null;
+
+                try {
+                    image = loader.getImage(id);
+                    logger.debug("Prefetched image {} from {}", id, path);
+                } catch (Exception ex) {
+                    // Error will be reported when image is loaded directly
+                    logger.debug("Could not prefetch image {} {}", id, ex.toString());
+                }
+
+                synchronized (this) {
+                    slot.image = image;
+                    slot.done = true;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.debug("ImagePrefetcher interrupted");
+        } finally {
+            loader.dispose();
+        }
+    }
+
+    //------//
+    // Slot //
+    //------//
+    /**
+     * Status of one image.
+     */
+    private static class Slot
+    {
+
+        /** Decoding has started. */
+        boolean started;
+
+        /** Decoding is over. */
+        boolean done;
+
+        /** The decoded image, if any. */
+        BufferedImage image;
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer prefetchDepth = new Constant.Integer(
+                "images",
+                2,
+                "Maximum number of sheet images decoded in advance (0 to disable)");
+
+        private final Constant.Ratio minHeapHeadroom = new Constant.Ratio(
+                0.3,
+                "Minimum ratio of free heap to decode one more image in advance");
+    }
+}
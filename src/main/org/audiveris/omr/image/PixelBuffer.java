@@ -127,6 +127,14 @@ public class PixelBuffer
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public void filterRows (int yStart,
+                            int yStop,
+                            byte[] out)
+    {
+        Rows.filter(this, yStart, yStop, out);
+    }
+
     @Override
     public int get (int x,
                     int y)
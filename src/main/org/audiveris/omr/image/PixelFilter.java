@@ -39,6 +39,24 @@ public interface PixelFilter
      */
     ByteProcessor filteredImage ();
 
+    /**
+     * Run the filter on a range of source rows and write the filtered pixels into the
+     * provided buffer.
+     * <p>
+     * This allows to process a whole image by chunks of rows, without allocating a full-size
+     * filtered image. Calls on disjoint ranges of rows may be performed concurrently.
+     * <p>
+     * A filter with no more efficient way can simply delegate to {@link Rows#filter}.
+     *
+     * @param yStart first row to filter
+     * @param yStop  row past the last row to filter
+     * @param out    (output) buffer of at least (yStop - yStart) * width cells,
+     *               whose first cell corresponds to pixel (0, yStart)
+     */
+    void filterRows (int yStart,
+                     int yStop,
+                     byte[] out);
+
     /**
      * Report the source context at provided location.
      * This is meant for administration and display purposes, it does not need
@@ -84,4 +102,42 @@ public interface PixelFilter
             this.threshold = threshold;
         }
     }
+
+    /**
+     * Default implementation of row filtering, based on {@link PixelFilter#isFore}.
+     */
+    class Rows
+    {
+
+        private Rows ()
+        {
+        }
+
+        /**
+         * Write the filtered pixels of a range of rows into the provided buffer, pixel
+         * per pixel.
+         *
+         * @param filter the filter to use
+         * @param yStart first row to filter
+         * @param yStop  row past the last row to filter
+         * @param out    (output) buffer of at least (yStop - yStart) * width cells,
+         *               whose first cell corresponds to pixel (0, yStart)
+         * @see PixelFilter#filterRows(int, int, byte[])
+         */
+        public static void filter (PixelFilter filter,
+                                   int yStart,
+                                   int yStop,
+                                   byte[] out)
+        {
+            final int width = filter.getWidth();
+
+            for (int y = yStart; y < yStop; y++) {
+                final int rowOffset = (y - yStart) * width;
+
+                for (int x = 0; x < width; x++) {
+                    out[rowOffset + x] = (byte) (filter.isFore(x, y) ? FOREGROUND : BACKGROUND);
+                }
+            }
+        }
+    }
 }
@@ -251,6 +251,28 @@ public class Template
         return frm;
     }
 
+    //---------//
+    // compile //
+    //---------//
+    /**
+     * Prepare this template for intensive matching on the provided distance table.
+     *
+     * @param anchor    the anchor kind to use for locations, null for upper left
+     * @param distances the distance table to search
+     * @return the compiled template
+     */
+    public CompiledTemplate compile (Anchor anchor,
+                                     DistanceTable distances)
+    {
+        return new CompiledTemplate(
+                this,
+                anchor,
+                distances,
+                constants.foreWeight.getValue(),
+                constants.backWeight.getValue(),
+                constants.holeWeight.getValue());
+    }
+
     //------//
     // dump //
     //------//
@@ -138,7 +138,8 @@ public class BasicLag
     @Override
     public Set<Section> intersectedSections (Rectangle rect)
     {
-        return Sections.intersectedSections(rect, getEntities());
+        // Pre-select sections via their bounds, before checking their actual runs
+        return Sections.intersectedSections(rect, getIntersectedEntities(rect));
     }
 
     //------------//
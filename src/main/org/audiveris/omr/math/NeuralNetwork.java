@@ -23,6 +23,7 @@ package org.audiveris.omr.math;
 
 import org.audiveris.omr.classifier.TrainingMonitor;
 import org.audiveris.omr.util.Jaxb;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +31,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -49,6 +56,12 @@ import javax.xml.stream.XMLStreamException;
  * network, with one input layer, one hidden layer and one output layer.
  * The transfer function is the sigmoid.
  * <p>
+ * Weights of each layer are kept in one contiguous array, row after row, the first cell of each
+ * row being the bias.
+ * Inference is performed on a batch of input vectors at once, see {@link #run(double[], int,
+ * double[])}, as a matrix-matrix product blocked on both samples and cells.
+ * The single-vector {@link #run(double[], double[], double[])} is just a batch of size 1.
+ * <p>
  * <b>NOTA</b>: This class has been resurrected until a dl4j solution is found.
  * <p>
  * This neuralNetwork class can be stored on disk in XML form (through the {@link #marshal} and
@@ -70,6 +83,12 @@ public class NeuralNetwork
     /** Un/marshalling context for use with JAXB. */
     private static volatile JAXBContext jaxbContext;
 
+    /** Count of samples processed together by forward kernel. */
+    private static final int SAMPLE_BLOCK = 32;
+
+    /** Count of layer cells processed together by forward kernel. */
+    private static final int CELL_BLOCK = 32;
+
     /** Size of input layer. */
     @XmlAttribute(name = "input-size")
     private final int inputSize;
@@ -90,15 +109,24 @@ public class NeuralNetwork
     @XmlElement(name = "output-labels")
     private final StringArray outputLabels;
 
-    /** Weights to hidden layer. */
+    /** Weights to hidden layer, hiddenSize rows of (1 + inputSize) cells. */
+    private double[] hiddenWeights;
+
+    /** Weights to output layer, outputSize rows of (1 + hiddenSize) cells. */
+    private double[] outputWeights;
+
+    /** Rows of weights to hidden layer, meant for JAXB only. */
     @XmlElementWrapper(name = "hidden-weights")
     @XmlElement(name = "row")
-    private double[][] hiddenWeights;
+    private double[][] hiddenRows;
 
-    /** Weights to output layer. */
+    /** Rows of weights to output layer, meant for JAXB only. */
     @XmlElementWrapper(name = "output-weights")
     @XmlElement(name = "row")
-    private double[][] outputWeights;
+    private double[][] outputRows;
+
+    /** Per-thread buffer for hidden values. */
+    private final transient ThreadLocal<double[]> hiddenBuffers = new ThreadLocal<>();
 
     /** Default learning Rate parameter. */
     private transient volatile double learningRate = 0.40;
@@ -112,6 +140,9 @@ public class NeuralNetwork
     /** To trigger training stop. */
     private transient volatile boolean stopping = false;
 
+    /** Size of training mini-batches, 0 or 1 for per-pattern training. */
+    private transient volatile int miniBatchSize = 0;
+
     /**
      * Create a neural network, with specified number of cells in each
      * layer, and default values.
@@ -137,11 +168,11 @@ public class NeuralNetwork
 
         // Allocate weights (from input) to hidden layer
         // +1 for bias
-        hiddenWeights = createMatrix(hiddenSize, inputSize + 1, amplitude);
+        hiddenWeights = createMatrix(hiddenSize * (inputSize + 1), amplitude);
 
         // Allocate weights (from hidden) to output layer
         // +1 for bias
-        outputWeights = createMatrix(outputSize, hiddenSize + 1, amplitude);
+        outputWeights = createMatrix(outputSize * (hiddenSize + 1), amplitude);
 
         // Labels for input, if any
         this.inputLabels = new StringArray(inputLabels);
@@ -239,11 +270,11 @@ public class NeuralNetwork
         sb.append(String.format("%nInputs  : %d cells%n", inputSize));
 
         // Hidden
-        sb.append(dumpOfMatrix(hiddenWeights));
+        sb.append(dumpOfMatrix(hiddenWeights, inputSize + 1));
         sb.append(String.format("%nHidden  : %d cells%n", hiddenSize));
 
         // Output
-        sb.append(dumpOfMatrix(outputWeights));
+        sb.append(dumpOfMatrix(outputWeights, hiddenSize + 1));
         sb.append(String.format("%nOutputs : %d cells%n", outputSize));
 
         logger.info(sb.toString());
@@ -352,16 +383,14 @@ public class NeuralNetwork
         }
 
         // Make sure backup is compatible with this neural network
-        if ((backup.hiddenWeights.length != hiddenSize)
-                    || (backup.hiddenWeights[0].length != (inputSize + 1))
-                    || (backup.outputWeights.length != outputSize)
-                    || (backup.outputWeights[0].length != (hiddenSize + 1))) {
+        if ((backup.hiddenWeights.length != (hiddenSize * (inputSize + 1)))
+                    || (backup.outputWeights.length != (outputSize * (hiddenSize + 1)))) {
             throw new IllegalArgumentException("Incompatible backup");
         }
 
         logger.debug("Network memory restore");
-        this.hiddenWeights = cloneMatrix(backup.hiddenWeights);
-        this.outputWeights = cloneMatrix(backup.outputWeights);
+        this.hiddenWeights = backup.hiddenWeights.clone();
+        this.outputWeights = backup.outputWeights.clone();
     }
 
     //-----//
@@ -392,14 +421,11 @@ public class NeuralNetwork
                     inputSize);
         }
 
-        // Allocate the hiddens if not provided
+        // Use thread buffer for hiddens if not provided
         if (hiddens == null) {
-            hiddens = new double[hiddenSize];
+            hiddens = getHiddenBuffer(1);
         }
 
-        // Compute the hidden values
-        forward(inputs, hiddenWeights, hiddens);
-
         // Allocate the outputs if not done yet
         if (outputs == null) {
             outputs = new double[outputSize];
@@ -410,8 +436,52 @@ public class NeuralNetwork
                     outputSize);
         }
 
-        // Then, compute the output values
-        forward(hiddens, outputWeights, outputs);
+        // Just a batch of one input vector
+        forward(inputs, 1, inputSize, hiddenWeights, hiddens, hiddenSize);
+        forward(hiddens, 1, hiddenSize, outputWeights, outputs, outputSize);
+
+        return outputs;
+    }
+
+    //-----//
+    // run //
+    //-----//
+    /**
+     * Run the neural network on a batch of input vectors, and return the computed
+     * output vectors.
+     * <p>
+     * Vectors are stored one after the other in flat arrays: input vector #k is found in
+     * inputs[k * inputSize .. (k + 1) * inputSize - 1] and output vector #k is written in
+     * outputs[k * outputSize .. (k + 1) * outputSize - 1].
+     * <p>
+     * This method is thread-safe, provided that the network is not being trained.
+     *
+     * @param inputs  the input vectors, count * inputSize values
+     * @param count   the count of input vectors
+     * @param outputs preallocated array for count * outputSize output values, or null
+     * @return the computed output vectors
+     */
+    public double[] run (double[] inputs,
+                         int count,
+                         double[] outputs)
+    {
+        Objects.requireNonNull(inputs, "inputs array is null");
+
+        if (inputs.length < (count * inputSize)) {
+            throw new IllegalArgumentException(
+                    "Inputs length " + inputs.length + " too small for " + count + " vectors");
+        }
+
+        if (outputs == null) {
+            outputs = new double[count * outputSize];
+        } else if (outputs.length < (count * outputSize)) {
+            throw new IllegalArgumentException(
+                    "Outputs length " + outputs.length + " too small for " + count + " vectors");
+        }
+
+        final double[] hiddens = getHiddenBuffer(count);
+        forward(inputs, count, inputSize, hiddenWeights, hiddens, hiddenSize);
+        forward(hiddens, count, hiddenSize, outputWeights, outputs, outputSize);
 
         return outputs;
     }
@@ -443,6 +513,24 @@ public class NeuralNetwork
         this.learningRate = learningRate;
     }
 
+    //------------------//
+    // setMiniBatchSize //
+    //------------------//
+    /**
+     * Set the mini-batch size used for training.
+     * <p>
+     * With a size of 0 or 1, weights are updated after each input pattern.
+     * With a larger size, patterns are processed by mini-batches: the gradients of all patterns
+     * in a batch are computed in parallel and summed, then weights are updated once per batch
+     * using the average gradient.
+     *
+     * @param miniBatchSize the count of patterns per weight update
+     */
+    public void setMiniBatchSize (int miniBatchSize)
+    {
+        this.miniBatchSize = miniBatchSize;
+    }
+
     //-------------//
     // setMomentum //
     //-------------//
@@ -487,7 +575,10 @@ public class NeuralNetwork
 
         Objects.requireNonNull(inputs, "inputs array is null");
         Objects.requireNonNull(desiredOutputs, "desiredOutputs array is null");
-        logger.info("Network is being trained on {} epochs...", epochs);
+        logger.info(
+                "Network is being trained on {} epochs{}...",
+                epochs,
+                (miniBatchSize > 1) ? (" by mini-batches of " + miniBatchSize) : "");
 
         final int patterns = inputs.length;
         final long startTime = System.currentTimeMillis();
@@ -496,104 +587,131 @@ public class NeuralNetwork
         final double[] gottenOutputs = new double[outputSize];
         final double[] hiddenGrads = new double[hiddenSize];
         final double[] outputGrads = new double[outputSize];
-        final double[][] hiddenDeltas = createMatrix(hiddenSize, inputSize + 1, 0);
-        final double[][] outputDeltas = createMatrix(outputSize, hiddenSize + 1, 0);
+        final double[] hiddenDeltas = new double[hiddenWeights.length];
+        final double[] outputDeltas = new double[outputWeights.length];
+        final int inputStride = inputSize + 1;
+        final int hiddenStride = hiddenSize + 1;
         final double[] hiddens = new double[hiddenSize];
         int iter = 0;
 
-        for (int ie = 1; ie <= epochs; ie++) {
-            iter++; // For this old engine, iter = epoch
-
-            if (listener != null) {
-                listener.epochStarted(ie);
-            }
+        final MiniBatchTrainer trainer = (miniBatchSize > 1)
+                ? new MiniBatchTrainer(inputs, desiredOutputs, miniBatchSize) : null;
 
-            // Loop on all input patterns
-            for (int ip = 0; ip < patterns; ip++) {
-                // Run the network with input values and current weights
-                run(inputs[ip], hiddens, gottenOutputs);
+        try {
+            for (int ie = 1; ie <= epochs; ie++) {
+                iter++; // For this old engine, iter = epoch
 
-                // Compute the output layer error terms
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    double out = gottenOutputs[io];
-                    double dif = desiredOutputs[ip][io] - out;
-                    ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
-                    outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
-                    ///outputGrads[io] = dif * reluDif(out); // ReLU'
+                if (listener != null) {
+                    listener.epochStarted(ie);
                 }
 
-                // Compute the hidden layer error terms
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    double sum = 0;
-                    double hid = hiddens[ih];
+                if (trainer != null) {
+                    // Loop on all mini-batches
+                    trainer.runEpoch();
+                } else {
+                    // Loop on all input patterns
+                    for (int ip = 0; ip < patterns; ip++) {
+                        // Run the network with input values and current weights
+                        run(inputs[ip], hiddens, gottenOutputs);
 
-                    for (int o = outputSize - 1; o >= 0; o--) {
-                        sum += (outputGrads[o] * outputWeights[o][ih + 1]);
-                    }
+                        // Compute the output layer error terms
+                        for (int io = outputSize - 1; io >= 0; io--) {
+                            double out = gottenOutputs[io];
+                            double dif = desiredOutputs[ip][io] - out;
+                            ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
+                            outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
+                            ///outputGrads[io] = dif * reluDif(out); // ReLU'
+                        }
 
-                    ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
-                    hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
-                    ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
-                }
+                        // Compute the hidden layer error terms
+                        for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                            double sum = 0;
+                            double hid = hiddens[ih];
 
-                // Update the output weights
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                        double dw = (learningRate * outputGrads[io] * hiddens[ih]) + (momentum
-                                                                                              * outputDeltas[io][ih
-                                                                                                                 + 1]);
-                        outputWeights[io][ih + 1] += dw;
-                        outputDeltas[io][ih + 1] = dw;
-                    }
+                            for (int o = outputSize - 1; o >= 0; o--) {
+                                sum += (outputGrads[o] * outputWeights[(o * hiddenStride) + ih + 1]);
+                            }
 
-                    // Bias
-                    double dw = (learningRate * outputGrads[io]) + (momentum * outputDeltas[io][0]);
-                    outputWeights[io][0] += dw;
-                    outputDeltas[io][0] = dw;
-                }
+                            ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
+                            hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
+                            ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
+                        }
 
-                // Update the hidden weights
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    for (int i = inputSize - 1; i >= 0; i--) {
-                        double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i]) + (momentum
-                                                                                                * hiddenDeltas[ih][i
-                                                                                                                   + 1]);
-                        hiddenWeights[ih][i + 1] += dw;
-                        hiddenDeltas[ih][i + 1] = dw;
-                    }
+                        // Update the output weights
+                        for (int io = outputSize - 1; io >= 0; io--) {
+                            final int row = io * hiddenStride;
+
+                            for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                                final int w = row + ih + 1;
+                                double dw = (learningRate * outputGrads[io] * hiddens[ih])
+                                                    + (momentum * outputDeltas[w]);
+                                outputWeights[w] += dw;
+                                outputDeltas[w] = dw;
+                            }
+
+                            // Bias
+                            double dw = (learningRate * outputGrads[io])
+                                                + (momentum * outputDeltas[row]);
+                            outputWeights[row] += dw;
+                            outputDeltas[row] = dw;
+                        }
 
-                    // Bias
-                    double dw = (learningRate * hiddenGrads[ih]) + (momentum * hiddenDeltas[ih][0]);
-                    hiddenWeights[ih][0] += dw;
-                    hiddenDeltas[ih][0] = dw;
+                        // Update the hidden weights
+                        for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                            final int row = ih * inputStride;
+
+                            for (int i = inputSize - 1; i >= 0; i--) {
+                                final int w = row + i + 1;
+                                double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i])
+                                                    + (momentum * hiddenDeltas[w]);
+                                hiddenWeights[w] += dw;
+                                hiddenDeltas[w] = dw;
+                            }
+
+                            // Bias
+                            double dw = (learningRate * hiddenGrads[ih])
+                                                + (momentum * hiddenDeltas[row]);
+                            hiddenWeights[row] += dw;
+                            hiddenDeltas[row] = dw;
+                        }
+                    }
                 }
-            }
-
-            if (listener != null) {
-                if ((iter % iterPeriod) == 0) {
-                    double mse = 0d; // Mean Squared Error
 
-                    for (int ip = 0; ip < patterns; ip++) {
-                        final double[] patternDesiredOutputs = desiredOutputs[ip];
-                        run(inputs[ip], hiddens, gottenOutputs);
-
-                        for (int o = outputSize - 1; o >= 0; o--) {
-                            double out = gottenOutputs[o];
-                            double dif = patternDesiredOutputs[o] - out;
-                            mse += (dif * dif);
+                if (listener != null) {
+                    if ((iter % iterPeriod) == 0) {
+                        double mse = 0d; // Mean Squared Error
+
+                        if (trainer != null) {
+                            mse = trainer.computeError();
+                        } else {
+                            for (int ip = 0; ip < patterns; ip++) {
+                                final double[] patternDesiredOutputs = desiredOutputs[ip];
+                                run(inputs[ip], hiddens, gottenOutputs);
+
+                                for (int o = outputSize - 1; o >= 0; o--) {
+                                    double out = gottenOutputs[o];
+                                    double dif = patternDesiredOutputs[o] - out;
+                                    mse += (dif * dif);
+                                }
+                            }
+
+                            mse /= patterns;
                         }
-                    }
 
-                    mse /= patterns;
-                    listener.iterationPeriodDone(iter, mse);
+                        listener.iterationPeriodDone(iter, mse);
+                    }
                 }
-            }
 
-            // Stop required?
-            if (stopping) {
-                logger.info("Stopping.");
+                // Stop required?
+                if (stopping) {
+                    logger.info("Stopping.");
 
-                break;
+                    break;
+                }
+            }
+        } finally {
+            if (trainer != null) {
+                trainer.shutdown();
             }
         }
 
@@ -607,27 +725,28 @@ public class NeuralNetwork
     // dumpMatrix //
     //------------//
     /**
-     * Dump a matrix (assumed to be a true rectangular matrix,
-     * with all rows of the same length).
+     * Dump a matrix, stored row after row.
      *
      * @param matrix the matrix to dump
+     * @param colNb  the number of columns
      * @return the matrix representation
      */
-    private String dumpOfMatrix (double[][] matrix)
+    private String dumpOfMatrix (double[] matrix,
+                                 int colNb)
     {
         StringBuilder sb = new StringBuilder();
 
-        for (int col = 0; col < matrix[0].length; col++) {
+        for (int col = 0; col < colNb; col++) {
             sb.append(String.format("%14d", col));
         }
 
         sb.append(String.format("%n"));
 
-        for (int row = 0; row < matrix.length; row++) {
+        for (int row = 0; row < (matrix.length / colNb); row++) {
             sb.append(String.format("%2d:", row));
 
-            for (int col = 0; col < matrix[0].length; col++) {
-                sb.append(String.format("%14e", matrix[row][col]));
+            for (int col = 0; col < colNb; col++) {
+                sb.append(String.format("%14e", matrix[(row * colNb) + col]));
             }
 
             sb.append(String.format("%n"));
@@ -640,36 +759,146 @@ public class NeuralNetwork
     // forward //
     //---------//
     /**
+     * Compute one layer for a batch of vectors: outs = sigmoid(ins * transpose(weights)).
+     * <p>
+     * Loops are blocked, so that a block of weight rows and a block of input vectors remain in
+     * cache while being combined. Within a block, 4 input vectors are processed together, so that
+     * each weight value is loaded only once for them.
+     * <p>
      * Re-entrant method.
      *
-     * @param ins     input cells
-     * @param weights applied weights
-     * @param outs    output cells
+     * @param ins     input vectors, count * inSize values
+     * @param count   count of vectors
+     * @param inSize  size of input vector
+     * @param weights applied weights, outSize rows of (1 + inSize) cells, starting with bias
+     * @param outs    output vectors, count * outSize values
+     * @param outSize size of output vector
      */
     private void forward (double[] ins,
-                          double[][] weights,
-                          double[] outs)
+                          int count,
+                          int inSize,
+                          double[] weights,
+                          double[] outs,
+                          int outSize)
     {
-        double sum;
-        double[] ws;
+        final int stride = inSize + 1;
+
+        for (int o0 = 0; o0 < outSize; o0 += CELL_BLOCK) {
+            final int oBreak = Math.min(outSize, o0 + CELL_BLOCK);
+
+            for (int s0 = 0; s0 < count; s0 += SAMPLE_BLOCK) {
+                final int sBreak = Math.min(count, s0 + SAMPLE_BLOCK);
+                int s = s0;
+
+                // By groups of 4 vectors
+                for (; (s + 3) < sBreak; s += 4) {
+                    final int in0 = s * inSize;
+                    final int in1 = in0 + inSize;
+                    final int in2 = in1 + inSize;
+                    final int in3 = in2 + inSize;
+                    final int out0 = s * outSize;
+
+                    for (int o = o0; o < oBreak; o++) {
+                        final int row = (o * stride) + 1;
+                        double sum0 = 0;
+                        double sum1 = 0;
+                        double sum2 = 0;
+                        double sum3 = 0;
+
+                        for (int i = 0; i < inSize; i++) {
+                            final double w = weights[row + i];
+                            sum0 += (w * ins[in0 + i]);
+                            sum1 += (w * ins[in1 + i]);
+                            sum2 += (w * ins[in2 + i]);
+                            sum3 += (w * ins[in3 + i]);
+                        }
 
-        for (int o = outs.length - 1; o >= 0; o--) {
-            sum = 0;
-            ws = weights[o];
+                        // Bias
+                        final double bias = weights[row - 1];
+                        outs[out0 + o] = sigmoid(sum0 + bias);
+                        outs[out0 + outSize + o] = sigmoid(sum1 + bias);
+                        outs[out0 + (2 * outSize) + o] = sigmoid(sum2 + bias);
+                        outs[out0 + (3 * outSize) + o] = sigmoid(sum3 + bias);
+                    }
+                }
 
-            for (int i = ins.length - 1; i >= 0; i--) {
-                sum += (ws[i + 1] * ins[i]);
-            }
+                // Remaining vectors, one at a time
+                for (; s < sBreak; s++) {
+                    final int in = s * inSize;
+                    final int out = s * outSize;
 
-            // Bias
-            sum += ws[0];
+                    for (int o = o0; o < oBreak; o++) {
+                        final int row = (o * stride) + 1;
+                        double sum = 0;
 
-            outs[o] = sigmoid(sum);
+                        for (int i = 0; i < inSize; i++) {
+                            sum += (weights[row + i] * ins[in + i]);
+                        }
 
-            ///outs[o] = relu(sum);
+                        // Bias
+                        outs[out + o] = sigmoid(sum + weights[row - 1]);
+
+                        ///outs[out + o] = relu(sum + weights[row - 1]);
+                    }
+                }
+            }
         }
     }
 
+    //-----------------//
+    // getHiddenBuffer //
+    //-----------------//
+    /**
+     * Report a buffer, specific to current thread, able to host hidden values of
+     * the provided count of vectors.
+     *
+     * @param count count of vectors
+     * @return the buffer to use
+     */
+    private double[] getHiddenBuffer (int count)
+    {
+        double[] buffer = hiddenBuffers.get();
+
+        if ((buffer == null) || (buffer.length < (count * hiddenSize))) {
+            hiddenBuffers.set(buffer = new double[count * hiddenSize]);
+        }
+
+        return buffer;
+    }
+
+    //--------------//
+    // afterMarshal //
+    //--------------//
+    @SuppressWarnings("unused")
+    private void afterMarshal (Marshaller m)
+    {
+        hiddenRows = null;
+        outputRows = null;
+    }
+
+    //----------------//
+    // afterUnmarshal //
+    //----------------//
+    @SuppressWarnings("unused")
+    private void afterUnmarshal (Unmarshaller um,
+                                 Object parent)
+    {
+        hiddenWeights = flatten(hiddenRows);
+        outputWeights = flatten(outputRows);
+        hiddenRows = null;
+        outputRows = null;
+    }
+
+    //---------------//
+    // beforeMarshal //
+    //---------------//
+    @SuppressWarnings("unused")
+    private void beforeMarshal (Marshaller m)
+    {
+        hiddenRows = split(hiddenWeights, inputSize + 1);
+        outputRows = split(outputWeights, hiddenSize + 1);
+    }
+
     private double relu (double val)
     {
         return Math.max(0, val);
@@ -720,59 +949,71 @@ public class NeuralNetwork
         return nn;
     }
 
-    //-------------//
-    // cloneMatrix //
-    //-------------//
+    //--------------//
+    // createMatrix //
+    //--------------//
     /**
-     * Create a clone of the provided matrix.
+     * Create and initialize a matrix, with random values.
+     * Random values are between -amplitude and +amplitude
      *
-     * @param matrix the matrix to clone
-     * @return the clone
+     * @param size total number of cells
+     * @return the properly initialized matrix
      */
-    private static double[][] cloneMatrix (double[][] matrix)
+    private static double[] createMatrix (int size,
+                                          double amplitude)
     {
-        final int rowNb = matrix.length;
-        final int colNb = matrix[0].length;
+        double[] matrix = new double[size];
 
-        double[][] clone = new double[rowNb][];
-
-        for (int row = rowNb - 1; row >= 0; row--) {
-            clone[row] = new double[colNb];
-            System.arraycopy(matrix[row], 0, clone[row], 0, colNb);
+        for (int i = size - 1; i >= 0; i--) {
+            matrix[i] = amplitude * (1.0 - (2 * Math.random()));
         }
 
-        return clone;
+        return matrix;
     }
 
-    //--------------//
-    // createMatrix //
-    //--------------//
+    //---------//
+    // flatten //
+    //---------//
     /**
-     * Create and initialize a matrix, with random values.
-     * Random values are between -amplitude and +amplitude
+     * Concatenate the rows of a matrix.
      *
-     * @param rowNb number of rows
-     * @param colNb number of columns
-     * @return the properly initialized matrix
+     * @param rows the matrix rows
+     * @return the flat matrix
      */
-    private static double[][] createMatrix (int rowNb,
-                                            int colNb,
-                                            double amplitude)
+    private static double[] flatten (double[][] rows)
     {
-        double[][] matrix = new double[rowNb][];
+        final int colNb = rows[0].length;
+        final double[] matrix = new double[rows.length * colNb];
 
-        for (int row = rowNb - 1; row >= 0; row--) {
-            double[] vector = new double[colNb];
-            matrix[row] = vector;
-
-            for (int col = colNb - 1; col >= 0; col--) {
-                vector[col] = amplitude * (1.0 - (2 * Math.random()));
-            }
+        for (int row = 0; row < rows.length; row++) {
+            System.arraycopy(rows[row], 0, matrix, row * colNb, colNb);
         }
 
         return matrix;
     }
 
+    //-------//
+    // split //
+    //-------//
+    /**
+     * Split a flat matrix into its rows.
+     *
+     * @param matrix the flat matrix
+     * @param colNb  the number of columns
+     * @return the matrix rows
+     */
+    private static double[][] split (double[] matrix,
+                                     int colNb)
+    {
+        final double[][] rows = new double[matrix.length / colNb][];
+
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = Arrays.copyOfRange(matrix, row * colNb, (row + 1) * colNb);
+        }
+
+        return rows;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -800,16 +1041,332 @@ public class NeuralNetwork
     public static class Backup
     {
 
-        private double[][] hiddenWeights;
+        private final double[] hiddenWeights;
 
-        private double[][] outputWeights;
+        private final double[] outputWeights;
 
         // Private constructor
-        private Backup (double[][] hiddenWeights,
-                        double[][] outputWeights)
+        private Backup (double[] hiddenWeights,
+                        double[] outputWeights)
         {
-            this.hiddenWeights = cloneMatrix(hiddenWeights);
-            this.outputWeights = cloneMatrix(outputWeights);
+            this.hiddenWeights = hiddenWeights.clone();
+            this.outputWeights = outputWeights.clone();
+        }
+    }
+
+    //------------------//
+    // MiniBatchTrainer //
+    //------------------//
+    /**
+     * Class {@code MiniBatchTrainer} trains the network by mini-batches, using a
+     * fork-join pool with one thread per processor.
+     * <p>
+     * The patterns of a batch are split among pool threads.
+     * Each thread sums the gradients of its patterns into its own {@link Gradient} buffers.
+     * When the whole batch is done, all thread gradients are summed and the weights are updated
+     * once, using the average gradient together with the momentum of previous update.
+     */
+    private class MiniBatchTrainer
+    {
+
+        /** Minimum count of patterns per leaf task. */
+        private static final int MIN_LEAF = 8;
+
+        private final double[][] inputs;
+
+        private final double[][] desiredOutputs;
+
+        private final int batchSize;
+
+        private final ForkJoinPool pool;
+
+        /** Maximum count of patterns processed by a leaf task. */
+        private final int leafSize;
+
+        /** Gradient buffers of current thread. */
+        private final ThreadLocal<Gradient> threadGradients = new ThreadLocal<>();
+
+        /** All gradient buffers, one per thread. */
+        private final ConcurrentLinkedQueue<Gradient> allGradients
+                = new ConcurrentLinkedQueue<>();
+
+        /** Previous updates of hidden weights, for momentum. */
+        private final double[] hiddenDeltas = new double[hiddenWeights.length];
+
+        /** Previous updates of output weights, for momentum. */
+        private final double[] outputDeltas = new double[outputWeights.length];
+
+        /** Batch sum of hidden gradients. */
+        private final double[] hiddenSums = new double[hiddenWeights.length];
+
+        /** Batch sum of output gradients. */
+        private final double[] outputSums = new double[outputWeights.length];
+
+        MiniBatchTrainer (double[][] inputs,
+                          double[][] desiredOutputs,
+                          int batchSize)
+        {
+            this.inputs = inputs;
+            this.desiredOutputs = desiredOutputs;
+            this.batchSize = batchSize;
+
+            final int parallelism = OmrExecutors.getNumberOfCpus();
+            pool = new ForkJoinPool(parallelism);
+            leafSize = Math.max(MIN_LEAF, (batchSize + parallelism - 1) / parallelism);
+        }
+
+        /**
+         * Compute the mean squared error on all patterns, using current weights.
+         *
+         * @return the mean squared error
+         */
+        double computeError ()
+        {
+            return pool.invoke(new ErrorTask(0, inputs.length)) / inputs.length;
+        }
+
+        /**
+         * Process all patterns once, batch after batch.
+         */
+        void runEpoch ()
+        {
+            for (int start = 0; start < inputs.length; start += batchSize) {
+                final int stop = Math.min(inputs.length, start + batchSize);
+                pool.invoke(new GradientTask(start, stop));
+                update(stop - start);
+            }
+        }
+
+        /**
+         * Release the pool threads.
+         */
+        void shutdown ()
+        {
+            pool.shutdown();
+        }
+
+        /**
+         * Accumulate gradients of patterns [from..to[ into gradient of current thread.
+         */
+        private void accumulate (int from,
+                                 int to)
+        {
+            final Gradient g = getGradient();
+            final int inputStride = inputSize + 1;
+            final int hiddenStride = hiddenSize + 1;
+
+            for (int ip = from; ip < to; ip++) {
+                final double[] ins = inputs[ip];
+                run(ins, g.hiddens, g.outputs);
+
+                // Output layer error terms
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    double out = g.outputs[io];
+                    double dif = desiredOutputs[ip][io] - out;
+                    g.outputGrads[io] = dif * sigmoidDif(out);
+                }
+
+                // Hidden layer error terms
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    double sum = 0;
+
+                    for (int o = outputSize - 1; o >= 0; o--) {
+                        sum += (g.outputGrads[o] * outputWeights[(o * hiddenStride) + ih + 1]);
+                    }
+
+                    g.hiddenGrads[ih] = sum * sigmoidDif(g.hiddens[ih]);
+                }
+
+                // Output weights gradient
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    final int row = io * hiddenStride;
+                    final double grad = g.outputGrads[io];
+
+                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                        g.outputSums[row + ih + 1] += (grad * g.hiddens[ih]);
+                    }
+
+                    g.outputSums[row] += grad; // Bias
+                }
+
+                // Hidden weights gradient
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    final int row = ih * inputStride;
+                    final double grad = g.hiddenGrads[ih];
+
+                    for (int i = inputSize - 1; i >= 0; i--) {
+                        g.hiddenSums[row + i + 1] += (grad * ins[i]);
+                    }
+
+                    g.hiddenSums[row] += grad; // Bias
+                }
+            }
+        }
+
+        /**
+         * Report the gradient buffers of current thread, allocating them if needed.
+         */
+        private Gradient getGradient ()
+        {
+            Gradient g = threadGradients.get();
+
+            if (g == null) {
+                threadGradients.set(g = new Gradient());
+                allGradients.add(g);
+            }
+
+            return g;
+        }
+
+        /**
+         * Sum the squared errors of patterns [from..to[.
+         */
+        private double sumErrors (int from,
+                                  int to)
+        {
+            final Gradient g = getGradient();
+            double sum = 0;
+
+            for (int ip = from; ip < to; ip++) {
+                run(inputs[ip], g.hiddens, g.outputs);
+
+                for (int o = outputSize - 1; o >= 0; o--) {
+                    double dif = desiredOutputs[ip][o] - g.outputs[o];
+                    sum += (dif * dif);
+                }
+            }
+
+            return sum;
+        }
+
+        /**
+         * Update weights with the average gradient of the batch just processed.
+         *
+         * @param count the count of patterns in batch
+         */
+        private void update (int count)
+        {
+            // Sum all thread gradients
+            Arrays.fill(hiddenSums, 0);
+            Arrays.fill(outputSums, 0);
+
+            for (Gradient g : allGradients) {
+                for (int w = hiddenSums.length - 1; w >= 0; w--) {
+                    hiddenSums[w] += g.hiddenSums[w];
+                }
+
+                for (int w = outputSums.length - 1; w >= 0; w--) {
+                    outputSums[w] += g.outputSums[w];
+                }
+
+                g.clear();
+            }
+
+            // Update weights
+            final double rate = learningRate / count;
+            final double mom = momentum;
+
+            for (int w = outputWeights.length - 1; w >= 0; w--) {
+                double dw = (rate * outputSums[w]) + (mom * outputDeltas[w]);
+                outputWeights[w] += dw;
+                outputDeltas[w] = dw;
+            }
+
+            for (int w = hiddenWeights.length - 1; w >= 0; w--) {
+                double dw = (rate * hiddenSums[w]) + (mom * hiddenDeltas[w]);
+                hiddenWeights[w] += dw;
+                hiddenDeltas[w] = dw;
+            }
+        }
+
+        /**
+         * Sums of squared errors on a range of patterns.
+         */
+        private class ErrorTask
+                extends RecursiveTask<Double>
+        {
+
+            private final int from;
+
+            private final int to;
+
+            ErrorTask (int from,
+                       int to)
+            {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Double compute ()
+            {
+                if ((to - from) <= leafSize) {
+                    return sumErrors(from, to);
+                }
+
+                final int mid = (from + to) >>> 1;
+                final ErrorTask left = new ErrorTask(from, mid);
+                left.fork();
+
+                final double right = new ErrorTask(mid, to).compute();
+
+                return left.join() + right;
+            }
+        }
+
+        /**
+         * Per-thread buffers.
+         */
+        private class Gradient
+        {
+
+            final double[] hiddenSums = new double[hiddenWeights.length];
+
+            final double[] outputSums = new double[outputWeights.length];
+
+            final double[] hiddens = new double[hiddenSize];
+
+            final double[] outputs = new double[outputSize];
+
+            final double[] hiddenGrads = new double[hiddenSize];
+
+            final double[] outputGrads = new double[outputSize];
+
+            void clear ()
+            {
+                Arrays.fill(hiddenSums, 0);
+                Arrays.fill(outputSums, 0);
+            }
+        }
+
+        /**
+         * Gradient accumulation on a range of patterns.
+         */
+        private class GradientTask
+                extends RecursiveAction
+        {
+
+            private final int from;
+
+            private final int to;
+
+            GradientTask (int from,
+                          int to)
+            {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute ()
+            {
+                if ((to - from) <= leafSize) {
+                    accumulate(from, to);
+                } else {
+                    final int mid = (from + to) >>> 1;
+                    invokeAll(new GradientTask(from, mid), new GradientTask(mid, to));
+                }
+            }
         }
     }
 
@@ -0,0 +1,251 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   C e n t r a l M o m e n t s                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moments;
+
+import java.util.Collection;
+
+/**
+ * Class {@code CentralMoments} gathers the mass, extrema, mass center and raw central
+ * moments (up to order 3) of a set of points.
+ * <p>
+ * These data are additive: the central moments of the union of <b>disjoint</b> sets of points
+ * can be derived from the central moments of each set (see {@link #union}), without going back to
+ * the points.
+ * <p>
+ * {@link GeometricMoments} are then derived from these data.
+ *
+ * @author Hervé Bitteur
+ */
+public class CentralMoments
+{
+
+    /** Number of points. */
+    final int weight;
+
+    /** Minimum abscissa. */
+    final int xMin;
+
+    /** Maximum abscissa. */
+    final int xMax;
+
+    /** Minimum ordinate. */
+    final int yMin;
+
+    /** Maximum ordinate. */
+    final int yMax;
+
+    /** Mass center abscissa. */
+    final double xBar;
+
+    /** Mass center ordinate. */
+    final double yBar;
+
+    /** Central moments, not normalized. */
+    final double mu20;
+
+    final double mu11;
+
+    final double mu02;
+
+    final double mu30;
+
+    final double mu21;
+
+    final double mu12;
+
+    final double mu03;
+
+    /**
+     * Compute the central moments for a set of points whose x and y coordinates are
+     * provided.
+     *
+     * @param xx  the array of abscissa values
+     * @param yy  the array of ordinate values
+     * @param dim the number of points
+     */
+    public CentralMoments (int[] xx,
+                           int[] yy,
+                           int dim)
+    {
+        int xMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int yMin = Integer.MAX_VALUE;
+        int yMax = Integer.MIN_VALUE;
+        double n10 = 0d;
+        double n01 = 0d;
+
+        // Mean x & y, width & height
+        for (int i = dim - 1; i >= 0; i--) {
+            int x = xx[i];
+            n10 += x;
+
+            if (x < xMin) {
+                xMin = x;
+            }
+
+            if (x > xMax) {
+                xMax = x;
+            }
+
+            int y = yy[i];
+            n01 += y;
+
+            if (y < yMin) {
+                yMin = y;
+            }
+
+            if (y > yMax) {
+                yMax = y;
+            }
+        }
+
+        n10 /= dim;
+        n01 /= dim;
+
+        double n02 = 0d;
+        double n03 = 0d;
+        double n11 = 0d;
+        double n12 = 0d;
+        double n20 = 0d;
+        double n21 = 0d;
+        double n30 = 0d;
+
+        for (int i = dim - 1; i >= 0; i--) {
+            // Coordinates centered around center of mass
+            double x = xx[i] - n10;
+            double y = yy[i] - n01;
+            n11 += (x * y);
+            n12 += (x * y * y);
+            n21 += (x * x * y);
+            n20 += (x * x);
+            n02 += (y * y);
+            n30 += (x * x * x);
+            n03 += (y * y * y);
+        }
+
+        this.weight = dim;
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        this.xBar = n10;
+        this.yBar = n01;
+        this.mu20 = n20;
+        this.mu11 = n11;
+        this.mu02 = n02;
+        this.mu30 = n30;
+        this.mu21 = n21;
+        this.mu12 = n12;
+        this.mu03 = n03;
+    }
+
+    private CentralMoments (int weight,
+                            int xMin,
+                            int xMax,
+                            int yMin,
+                            int yMax,
+                            double xBar,
+                            double yBar,
+                            double[] mu)
+    {
+        this.weight = weight;
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        this.xBar = xBar;
+        this.yBar = yBar;
+        this.mu20 = mu[0];
+        this.mu11 = mu[1];
+        this.mu02 = mu[2];
+        this.mu30 = mu[3];
+        this.mu21 = mu[4];
+        this.mu12 = mu[5];
+        this.mu03 = mu[6];
+    }
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the number of points.
+     *
+     * @return the weight
+     */
+    public int getWeight ()
+    {
+        return weight;
+    }
+
+    //-------//
+    // union //
+    //-------//
+    /**
+     * Combine the central moments of disjoint sets of points into the central moments
+     * of their union.
+     * <p>
+     * Each part contribution is moved to the union mass center, using the parallel axis theorem.
+     * The caller is responsible for checking that no point belongs to several parts.
+     *
+     * @param parts the central moments of the disjoint sets
+     * @return the central moments of the union
+     */
+    public static CentralMoments union (Collection<CentralMoments> parts)
+    {
+        int weight = 0;
+        int xMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int yMin = Integer.MAX_VALUE;
+        int yMax = Integer.MIN_VALUE;
+        double sx = 0d;
+        double sy = 0d;
+
+        for (CentralMoments part : parts) {
+            weight += part.weight;
+            xMin = Math.min(xMin, part.xMin);
+            xMax = Math.max(xMax, part.xMax);
+            yMin = Math.min(yMin, part.yMin);
+            yMax = Math.max(yMax, part.yMax);
+            sx += (part.weight * part.xBar);
+            sy += (part.weight * part.yBar);
+        }
+
+        final double xBar = sx / weight;
+        final double yBar = sy / weight;
+        final double[] mu = new double[7];
+
+        for (CentralMoments part : parts) {
+            final double n = part.weight;
+            final double dx = part.xBar - xBar;
+            final double dy = part.yBar - yBar;
+            mu[0] += (part.mu20 + (n * dx * dx));
+            mu[1] += (part.mu11 + (n * dx * dy));
+            mu[2] += (part.mu02 + (n * dy * dy));
+            mu[3] += (part.mu30 + (3 * dx * part.mu20) + (n * dx * dx * dx));
+            mu[4] += (part.mu21 + (2 * dx * part.mu11) + (dy * part.mu20) + (n * dx * dx * dy));
+            mu[5] += (part.mu12 + (2 * dy * part.mu11) + (dx * part.mu02) + (n * dx * dy * dy));
+            mu[6] += (part.mu03 + (3 * dy * part.mu02) + (n * dy * dy * dy));
+        }
+
+        return new CentralMoments(weight, xMin, xMax, yMin, yMax, xBar, yBar, mu);
+    }
+}
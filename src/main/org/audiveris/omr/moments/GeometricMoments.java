@@ -111,75 +111,51 @@ public class GeometricMoments
                              int[] yy,
                              int dim,
                              int unit)
+    {
+        this(new CentralMoments(xx, yy, dim), unit);
+    }
+
+    //------------------//
+    // GeometricMoments //
+    //------------------//
+    /**
+     * Compute the moments out of the provided central moments, all values being
+     * normalized by the provided unit value.
+     *
+     * @param central the central moments of a set of points
+     * @param unit    the length (number of pixels) of normalizing unit
+     */
+    public GeometricMoments (CentralMoments central,
+                             int unit)
     {
         // Safety check
         if (unit == 0) {
             throw new IllegalArgumentException("Zero-valued unit");
         }
 
-        int xMin = Integer.MAX_VALUE;
-        int xMax = Integer.MIN_VALUE;
-        int yMin = Integer.MAX_VALUE;
-        int yMax = Integer.MIN_VALUE;
+        final int dim = central.weight;
+        final int xMin = central.xMin;
+        final int xMax = central.xMax;
+        final int yMin = central.yMin;
+        final int yMax = central.yMax;
 
         // Normalized GeometricMoments
         double n00 = dim / (double) (unit * unit);
-        double n01 = 0d;
-        double n02 = 0d;
-        double n03 = 0d;
-        double n10 = 0d;
-        double n11 = 0d;
-        double n12 = 0d;
-        double n20 = 0d;
-        double n21 = 0d;
-        double n30 = 0d;
+        double n01 = central.yBar;
+        double n10 = central.xBar;
+        double n02 = central.mu02;
+        double n03 = central.mu03;
+        double n11 = central.mu11;
+        double n12 = central.mu12;
+        double n20 = central.mu20;
+        double n21 = central.mu21;
+        double n30 = central.mu30;
 
         // Total weight
         double w = dim; // For p+q == 0
         double w2 = w * w; // For p+q == 2
         double w3 = Math.sqrt(w * w * w * w * w); // For p+q == 3
 
-        // Mean x & y, width & height
-        for (int i = dim - 1; i >= 0; i--) {
-            int x = xx[i];
-            n10 += x;
-
-            if (x < xMin) {
-                xMin = x;
-            }
-
-            if (x > xMax) {
-                xMax = x;
-            }
-
-            int y = yy[i];
-            n01 += y;
-
-            if (y < yMin) {
-                yMin = y;
-            }
-
-            if (y > yMax) {
-                yMax = y;
-            }
-        }
-
-        n10 /= dim;
-        n01 /= dim;
-
-        for (int i = dim - 1; i >= 0; i--) {
-            // Coordinates centered around center of mass
-            double x = xx[i] - n10;
-            double y = yy[i] - n01;
-            n11 += (x * y);
-            n12 += (x * y * y);
-            n21 += (x * x * y);
-            n20 += (x * x);
-            n02 += (y * y);
-            n30 += (x * x * x);
-            n03 += (y * y * y);
-        }
-
         // Normalize
         //
         // p + q = 2
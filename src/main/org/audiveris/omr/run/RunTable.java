@@ -30,6 +30,7 @@ import org.audiveris.omr.math.PointsCollector;
 import org.audiveris.omr.moments.ARTMoments;
 import org.audiveris.omr.moments.BasicARTExtractor;
 import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.CentralMoments;
 import org.audiveris.omr.moments.GeometricMoments;
 import static org.audiveris.omr.run.Orientation.HORIZONTAL;
 import org.audiveris.omr.util.ByteUtil;
@@ -44,8 +45,10 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -133,6 +136,9 @@ public class RunTable
     /** Cached total weight. */
     private Integer weight;
 
+    /** Lazy access to sequences not yet materialized, if any. */
+    private volatile RunTableMapping mapping;
+
     /**
      * Creates a new RunTable object.
      *
@@ -209,6 +215,8 @@ public class RunTable
         // Look for background where foreground run is to take place
         // ...F(B)F... -> ...F(B1FB2)F...
         // .......^
+        materialize();
+
         RunSequence sequence = sequences[index];
 
         if (sequence == null) {
@@ -366,6 +374,29 @@ public class RunTable
         return new Point((int) Math.rint(x / weight), (int) Math.rint(y / weight));
     }
 
+    //-----------------------//
+    // computeCentralMoments //
+    //-----------------------//
+    /**
+     * Compute the central moments for this runTable
+     *
+     * @param left abscissa of topLeft corner
+     * @param top  ordinate of topLeft corner
+     * @return the central moments
+     */
+    public CentralMoments computeCentralMoments (int left,
+                                                 int top)
+    {
+        // Retrieve glyph foreground points
+        final PointsCollector collector = new PointsCollector(null, getWeight());
+        cumulate(collector, new Point(left, top));
+
+        return new CentralMoments(
+                collector.getXValues(),
+                collector.getYValues(),
+                collector.getSize());
+    }
+
     //-------------------------//
     // computeGeometricMoments //
     //-------------------------//
@@ -381,16 +412,7 @@ public class RunTable
                                                      int top,
                                                      int interline)
     {
-        // Retrieve glyph foreground points
-        final PointsCollector collector = new PointsCollector(null, getWeight());
-        cumulate(collector, new Point(left, top));
-
-        // Then compute the geometric moments with this collector
-        return new GeometricMoments(
-                collector.getXValues(),
-                collector.getYValues(),
-                collector.getSize(),
-                interline);
+        return new GeometricMoments(computeCentralMoments(left, top), interline);
     }
 
     //----------//
@@ -420,7 +442,7 @@ public class RunTable
         RunTable clone = new RunTable(orientation, width, height);
 
         for (int i = 0; i < sequences.length; i++) {
-            RunSequence seq = sequences[i];
+            RunSequence seq = getSequence(i);
 
             if (seq != null) {
                 int[] rle = new int[seq.rle.length];
@@ -554,7 +576,7 @@ public class RunTable
         System.out.println(toString());
 
         for (int i = 0; i < sequences.length; i++) {
-            final RunSequence seq = sequences[i];
+            final RunSequence seq = getSequence(i);
             System.out.printf("%4d:%s%n", i, (seq != null) ? seq.toString() : "null");
         }
     }
@@ -591,7 +613,13 @@ public class RunTable
             return false;
         }
 
-        return Arrays.deepEquals(this.sequences, other.sequences);
+        for (int i = 0; i < sequences.length; i++) {
+            if (!Objects.equals(getSequence(i), other.getSequence(i))) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     //-----------//
@@ -927,7 +955,9 @@ public class RunTable
     {
         int total = 0;
 
-        for (RunSequence seq : sequences) {
+        for (int i = 0; i < sequences.length; i++) {
+            final RunSequence seq = getSequence(i);
+
             if (seq != null) {
                 total += seq.size();
             }
@@ -985,11 +1015,30 @@ public class RunTable
         Jaxb.marshal(this, path, getJaxbContext());
     }
 
+    //---------//
+    // marshal //
+    //---------//
+    /**
+     * Marshal this RunTable to the provided output stream.
+     *
+     * @param os target stream, not closed by this method
+     * @throws JAXBException      on JAXB error
+     * @throws XMLStreamException on XML error
+     */
+    public void marshal (OutputStream os)
+            throws JAXBException,
+                   XMLStreamException
+    {
+        Jaxb.marshal(this, os, getJaxbContext());
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
     /**
      * Unmarshal a RunTable from a file.
+     * <p>
+     * The file content may be in binary format (see {@link RunTableCodec}) or in XML format.
      *
      * @param path path to file
      * @return unmarshalled run table
@@ -998,7 +1047,12 @@ public class RunTable
     {
         logger.debug("RunTable unmarshalling {}", path);
 
-        try (InputStream is = Files.newInputStream(path, StandardOpenOption.READ)) {
+        try (InputStream is = new BufferedInputStream(
+                Files.newInputStream(path, StandardOpenOption.READ))) {
+            if (RunTableCodec.isBinary(is)) {
+                return RunTableCodec.read(is);
+            }
+
             Unmarshaller um = getJaxbContext().createUnmarshaller();
             RunTable runTable = (RunTable) um.unmarshal(is);
             logger.debug("Unmarshalled {}", runTable);
@@ -1167,7 +1221,7 @@ public class RunTable
      */
     public boolean isSequenceEmpty (int index)
     {
-        return sequences[index] == null;
+        return getSequence(index) == null;
     }
 
     //----------//
@@ -1412,6 +1466,7 @@ public class RunTable
     public void setSequence (int index,
                              List<? extends Run> list)
     {
+        materialize();
         sequences[index] = encode(list);
     }
 
@@ -1635,6 +1690,12 @@ public class RunTable
      */
     final RunSequence getSequence (int index)
     {
+        final RunTableMapping map = mapping;
+
+        if (map != null) {
+            return map.getSequence(index);
+        }
+
         return sequences[index];
     }
 
@@ -1650,9 +1711,51 @@ public class RunTable
     final void setSequence (int index,
                             RunSequence seq)
     {
+        materialize();
         sequences[index] = seq;
     }
 
+    //------------//
+    // setMapping //
+    //------------//
+    /**
+     * (package private) Make this table read its sequences lazily from the provided
+     * mapping, until the table gets modified.
+     *
+     * @param mapping the mapping to read from
+     */
+    final void setMapping (RunTableMapping mapping)
+    {
+        if (mapping.getSize() != sequences.length) {
+            throw new IllegalArgumentException("Mapping size mismatch");
+        }
+
+        this.mapping = mapping;
+    }
+
+    //-------------//
+    // materialize //
+    //-------------//
+    /**
+     * Decode all sequences still pending in mapping, if any, before a modification.
+     */
+    private void materialize ()
+    {
+        if (mapping != null) {
+            synchronized (this) {
+                final RunTableMapping map = mapping;
+
+                if (map != null) {
+                    for (int i = 0; i < sequences.length; i++) {
+                        sequences[i] = map.getSequence(i);
+                    }
+
+                    mapping = null;
+                }
+            }
+        }
+    }
+
     //--------------//
     // afterMarshal //
     //--------------//
@@ -1696,6 +1799,8 @@ public class RunTable
     @SuppressWarnings("unused")
     private void beforeMarshal (Marshaller m)
     {
+        materialize();
+
         for (int i = 0, iBreak = sequences.length; i < iBreak; i++) {
             RunSequence seq = sequences[i];
 
@@ -1728,6 +1833,16 @@ public class RunTable
         {
         }
 
+        /**
+         * Report the underlying RLE array.
+         *
+         * @return the rle cells, perhaps null
+         */
+        int[] getRle ()
+        {
+            return rle;
+        }
+
         @Override
         public boolean equals (Object obj)
         {
@@ -1814,7 +1929,7 @@ public class RunTable
             this.index = index;
 
             // Check the case of an initial background run
-            final RunSequence seq = sequences[index];
+            final RunSequence seq = getSequence(index);
 
             if (seq != null) {
                 final int[] rle = seq.rle;
@@ -1839,7 +1954,7 @@ public class RunTable
         @Override
         public final boolean hasNext ()
         {
-            final RunSequence seq = sequences[index];
+            final RunSequence seq = getSequence(index);
 
             if (seq == null) {
                 return false;
@@ -1867,7 +1982,7 @@ public class RunTable
                 throw new NoSuchElementException();
             }
 
-            final int[] rle = sequences[index].rle;
+            final int[] rle = getSequence(index).rle;
 
             // ...v.. cursor before next()
             // ...FBF
@@ -1894,6 +2009,8 @@ public class RunTable
         @Override
         public void remove ()
         {
+            materialize();
+
             final int[] rle = sequences[index].rle;
             int c = cursor - 2;
 
@@ -0,0 +1,527 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    R u n T a b l e C o d e c                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.run.RunTable.RunSequence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Class {@code RunTableCodec} handles the compact binary storage format for a
+ * {@link RunTable}, as an alternative to the JAXB-based XML format.
+ * <p>
+ * Layout of a binary run table, all multi-byte integers being big-endian:
+ * <pre>
+ * magic       : 4 bytes ("RLET")
+ * version     : 1 byte
+ * flags       : 1 byte (bit 0: payload is deflated)
+ * orientation : 1 byte (Orientation ordinal)
+ * width       : int
+ * height      : int
+ * size        : int (count of sequences)
+ * offsets     : (size + 1) ints, byte offset of each sequence within (inflated) payload
+ * payload     : for each sequence, its RLE cells, each encoded as a varint
+ * </pre>
+ * An empty sequence is encoded with no payload byte (its two offsets are equal).
+ * The offsets table allows any sequence to be decoded on its own, hence the ability to
+ * {@link #map(Path) map} a non-deflated file and decode its sequences lazily.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class RunTableCodec
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(RunTableCodec.class);
+
+    /** File extension for a binary run table: {@value}. */
+    public static final String BINARY_EXTENSION = ".bin";
+
+    /** Magic number at beginning of a binary run table. */
+    static final int MAGIC = 0x524C4554; // "RLET"
+
+    /** Current format version. */
+    static final int VERSION = 1;
+
+    /** Flag for a deflated payload. */
+    static final int DEFLATED = 0x01;
+
+    /** Size in bytes of fixed header (magic, version, flags, orientation, width, height, size). */
+    static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 4 + 4 + 4;
+
+    /** Not meant to be instantiated. */
+    private RunTableCodec ()
+    {
+    }
+
+    //----------//
+    // isBinary //
+    //----------//
+    /**
+     * Report whether the provided stream starts with the binary magic number.
+     * <p>
+     * The stream must support mark/reset, its position is left unchanged.
+     *
+     * @param is the input stream to check
+     * @return true if binary format is detected
+     * @throws IOException on IO error
+     */
+    public static boolean isBinary (InputStream is)
+            throws IOException
+    {
+        is.mark(4);
+
+        try {
+            int magic = 0;
+
+            for (int i = 0; i < 4; i++) {
+                final int b = is.read();
+
+                if (b == -1) {
+                    return false;
+                }
+
+                magic = (magic << 8) | b;
+            }
+
+            return magic == MAGIC;
+        } finally {
+            is.reset();
+        }
+    }
+
+    //------//
+    // read //
+    //------//
+    /**
+     * Read a binary run table from the provided file.
+     *
+     * @param path path to binary file
+     * @return the run table read
+     * @throws IOException on IO error or invalid format
+     */
+    public static RunTable read (Path path)
+            throws IOException
+    {
+        try (InputStream is = new BufferedInputStream(
+                Files.newInputStream(path, StandardOpenOption.READ))) {
+            return read(is);
+        }
+    }
+
+    //------//
+    // read //
+    //------//
+    /**
+     * Read a binary run table from the provided input stream.
+     *
+     * @param is the input stream, positioned at magic number
+     * @return the run table read
+     * @throws IOException on IO error or invalid format
+     */
+    public static RunTable read (InputStream is)
+            throws IOException
+    {
+        final DataInputStream dis = new DataInputStream(is);
+        final Header header = readHeader(dis);
+        final RunTable table = new RunTable(header.orientation, header.width, header.height);
+        final int[] offsets = readOffsets(dis, header.size);
+        final byte[] payload = new byte[offsets[header.size]];
+
+        if (header.isDeflated()) {
+            new DataInputStream(new InflaterInputStream(is)).readFully(payload);
+        } else {
+            dis.readFully(payload);
+        }
+
+        for (int i = 0; i < header.size; i++) {
+            table.setSequence(i, decodeSequence(payload, offsets[i], offsets[i + 1]));
+        }
+
+        logger.debug("Read {}", table);
+
+        return table;
+    }
+
+    //-----//
+    // map //
+    //-----//
+    /**
+     * Map the provided binary file into memory, so that its sequences get decoded
+     * lazily, only when first accessed.
+     * <p>
+     * A file with deflated payload cannot be accessed randomly, it is thus fully read instead.
+     *
+     * @param path path to binary file, on default file system
+     * @return the run table, backed by the mapped file
+     * @throws IOException on IO error or invalid format
+     */
+    public static RunTable map (Path path)
+            throws IOException
+    {
+        final ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final Header header = readHeader(buffer);
+
+        if (header.isDeflated()) {
+            return read(path);
+        }
+
+        final RunTable table = new RunTable(header.orientation, header.width, header.height);
+        final RunTableMapping mapping = new RunTableMapping(buffer, header.size);
+        final int payloadLength = buffer.getInt(HEADER_SIZE + (4 * header.size));
+
+        if (buffer.capacity() < (mapping.getPayloadStart() + payloadLength)) {
+            throw new IOException("Truncated binary run table " + path);
+        }
+
+        table.setMapping(mapping);
+        logger.debug("Mapped {}", table);
+
+        return table;
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the provided run table to a binary file.
+     * <p>
+     * An existing file is overwritten, and truncated to the new content.
+     *
+     * @param table    the table to write
+     * @param path     path to target file
+     * @param deflated true for a deflated payload
+     * @throws IOException on IO error
+     */
+    public static void write (RunTable table,
+                              Path path,
+                              boolean deflated)
+            throws IOException
+    {
+        try (OutputStream os = new BufferedOutputStream(
+                Files.newOutputStream(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE))) {
+            write(table, os, deflated);
+        }
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the provided run table to an output stream, in binary format.
+     *
+     * @param table    the table to write
+     * @param os       the output stream
+     * @param deflated true for a deflated payload
+     * @throws IOException on IO error
+     */
+    public static void write (RunTable table,
+                              OutputStream os,
+                              boolean deflated)
+            throws IOException
+    {
+        final int size = table.getSize();
+        final int[] offsets = new int[size + 1];
+        final VarIntBuffer payload = new VarIntBuffer(4 * size);
+
+        for (int i = 0; i < size; i++) {
+            offsets[i] = payload.size();
+
+            final RunSequence seq = table.getSequence(i);
+
+            if (seq != null) {
+                final int[] rle = seq.getRle();
+
+                if (rle != null) {
+                    for (int cell : rle) {
+                        payload.writeVarInt(cell);
+                    }
+                }
+            }
+        }
+
+        offsets[size] = payload.size();
+
+        final DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeByte(VERSION);
+        dos.writeByte(deflated ? DEFLATED : 0);
+        dos.writeByte(table.getOrientation().ordinal());
+        dos.writeInt(table.getWidth());
+        dos.writeInt(table.getHeight());
+        dos.writeInt(size);
+
+        for (int offset : offsets) {
+            dos.writeInt(offset);
+        }
+
+        if (deflated) {
+            DeflaterOutputStream dfos = new DeflaterOutputStream(dos);
+            payload.writeTo(dfos);
+            dfos.finish();
+        } else {
+            payload.writeTo(dos);
+        }
+
+        dos.flush();
+    }
+
+    //----------------//
+    // decodeSequence //
+    //----------------//
+    /**
+     * Decode the RLE sequence found in payload between start and stop offsets.
+     *
+     * @param payload the payload bytes
+     * @param start   offset of first sequence byte
+     * @param stop    offset past last sequence byte
+     * @return the decoded sequence, or null if empty
+     * @throws IOException if sequence is corrupted
+     */
+    static RunSequence decodeSequence (byte[] payload,
+                                       int start,
+                                       int stop)
+            throws IOException
+    {
+        return decodeSequence(ByteBuffer.wrap(payload), start, stop);
+    }
+
+    //----------------//
+    // decodeSequence //
+    //----------------//
+    /**
+     * Decode the RLE sequence found in buffer between start and stop absolute positions.
+     * <p>
+     * Buffer position is not modified.
+     *
+     * @param buffer the buffer to read
+     * @param start  position of first sequence byte
+     * @param stop   position past last sequence byte
+     * @return the decoded sequence, or null if empty
+     * @throws IOException if sequence is corrupted
+     */
+    static RunSequence decodeSequence (ByteBuffer buffer,
+                                       int start,
+                                       int stop)
+            throws IOException
+    {
+        if (start == stop) {
+            return null;
+        }
+
+        // Count varints (one per byte with high bit cleared)
+        int count = 0;
+
+        for (int i = start; i < stop; i++) {
+            if ((buffer.get(i) & 0x80) == 0) {
+                count++;
+            }
+        }
+
+        final int[] rle = new int[count];
+        int pos = start;
+
+        for (int c = 0; c < count; c++) {
+            int value = 0;
+            int shift = 0;
+            int b;
+
+            do {
+                if (pos >= stop) {
+                    throw new IOException("Corrupted run sequence at " + start);
+                }
+
+                b = buffer.get(pos++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            rle[c] = value;
+        }
+
+        return new RunSequence(rle);
+    }
+
+    //------------//
+    // readHeader //
+    //------------//
+    /**
+     * Read and check the fixed header.
+     *
+     * @param dis input positioned at magic number
+     * @return the header read
+     * @throws IOException if not a supported binary run table
+     */
+    static Header readHeader (DataInputStream dis)
+            throws IOException
+    {
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a binary run table");
+        }
+
+        final int version = dis.readUnsignedByte();
+
+        if (version > VERSION) {
+            throw new IOException("Unsupported binary run table version " + version);
+        }
+
+        final Header header = new Header();
+        header.flags = dis.readUnsignedByte();
+        header.orientation = Orientation.values()[dis.readUnsignedByte()];
+        header.width = dis.readInt();
+        header.height = dis.readInt();
+        header.size = dis.readInt();
+
+        return header;
+    }
+
+    //------------//
+    // readHeader //
+    //------------//
+    /**
+     * Read and check the fixed header, using absolute positions.
+     *
+     * @param buffer buffer with binary table at position 0
+     * @return the header read
+     * @throws IOException if not a supported binary run table
+     */
+    static Header readHeader (ByteBuffer buffer)
+            throws IOException
+    {
+        try (DataInputStream dis = new DataInputStream(
+                new ByteArrayInputStream(headerBytes(buffer)))) {
+            return readHeader(dis);
+        }
+    }
+
+    //-------------//
+    // headerBytes //
+    //-------------//
+    private static byte[] headerBytes (ByteBuffer buffer)
+            throws IOException
+    {
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IOException("Not a binary run table");
+        }
+
+        final byte[] bytes = new byte[HEADER_SIZE];
+
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            bytes[i] = buffer.get(i);
+        }
+
+        return bytes;
+    }
+
+    //-------------//
+    // readOffsets //
+    //-------------//
+    static int[] readOffsets (DataInputStream dis,
+                              int size)
+            throws IOException
+    {
+        final int[] offsets = new int[size + 1];
+
+        for (int i = 0; i <= size; i++) {
+            offsets[i] = dis.readInt();
+        }
+
+        return offsets;
+    }
+
+    //--------//
+    // Header //
+    //--------//
+    /**
+     * Fixed header of a binary run table.
+     */
+    static class Header
+    {
+
+        int flags;
+
+        Orientation orientation;
+
+        int width;
+
+        int height;
+
+        int size;
+
+        boolean isDeflated ()
+        {
+            return (flags & DEFLATED) != 0;
+        }
+    }
+
+    //--------------//
+    // VarIntBuffer //
+    //--------------//
+    /**
+     * Growable byte buffer, with varint encoding.
+     */
+    private static class VarIntBuffer
+            extends ByteArrayOutputStream
+    {
+
+        VarIntBuffer (int initialSize)
+        {
+            super(Math.max(32, initialSize));
+        }
+
+        void writeVarInt (int value)
+        {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            write(value);
+        }
+    }
+}
@@ -26,16 +26,33 @@ import ij.process.ByteProcessor;
 import net.jcip.annotations.NotThreadSafe;
 import net.jcip.annotations.ThreadSafe;
 
+import org.audiveris.omr.image.PixelFilter;
+import org.audiveris.omr.run.RunTable.RunSequence;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Class {@code RunTableFactory} retrieves the runs structure out of a given pixel
  * source and builds the related {@link RunTable} structure.
+ * <p>
+ * When the source is a plain {@link ByteProcessor}, its backing byte array is scanned directly,
+ * by contiguous bands of positions, and each run sequence is encoded straight into its RLE array.
+ * Otherwise, pixels are read one by one through the source accessor.
+ * <p>
+ * When the source is a {@link PixelFilter}, rows are filtered by chunks, band by band, and
+ * encoded on the fly, so that the full-size filtered image is never allocated.
+ * <p>
+ * A union of tables can also be built directly from the run sequences of the tables, see
+ * {@link #createUnion}.
  *
  * @author Hervé Bitteur
  */
@@ -44,6 +61,9 @@ public class RunTableFactory
 
     private static final Logger logger = LoggerFactory.getLogger(RunTableFactory.class);
 
+    /** Maximum number of rows filtered at a time, when reading from a PixelFilter. */
+    private static final int CHUNK_HEIGHT = 128;
+
     /** The desired orientation. */
     private final Orientation orientation;
 
@@ -107,6 +127,26 @@ public class RunTableFactory
                                  Rectangle roi)
     {
         RunTable table = new RunTable(orientation, roi.width, roi.height);
+
+        if (isRawSource(source, roi)) {
+            // Calls to filter, if any, are kept sequential
+            if (orientation.isVertical()) {
+                RunsRetriever.processBands(
+                        roi.x,
+                        (roi.x + roi.width) - 1,
+                        filter == null,
+                        new VerticalBand(source, table, roi));
+            } else {
+                RunsRetriever.processBands(
+                        roi.y,
+                        (roi.y + roi.height) - 1,
+                        filter == null,
+                        new HorizontalBand(source, table, roi));
+            }
+
+            return table;
+        }
+
         RunsRetriever retriever = new RunsRetriever(
                 orientation,
                 orientation.isVertical() ? new VerticalAdapter(source, table, roi.getLocation())
@@ -116,6 +156,414 @@ public class RunTableFactory
         return table;
     }
 
+    //-------------//
+    // createTable //
+    //-------------//
+    /**
+     * Report the RunTable created with the foreground runs of the provided filter.
+     * <p>
+     * The filter is run on chunks of rows, by bands of rows processed in parallel when possible,
+     * and each chunk is encoded into runs before the next one is filtered.
+     * Vertical runs that cross band limits are stitched together at the end.
+     *
+     * @param source the pixel filter to read runs from
+     * @return a populated RunTable
+     */
+    public RunTable createTable (PixelFilter source)
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final RunTable table = new RunTable(orientation, width, height);
+
+        if (orientation.isVertical()) {
+            // Calls to filter, if any, are made when stitching
+            final FilteredVerticalBand band = new FilteredVerticalBand(source);
+            RunsRetriever.processBands(0, height - 1, true, band);
+            band.stitch(table);
+        } else {
+            // Calls to filter, if any, are kept sequential
+            RunsRetriever.processBands(
+                    0,
+                    height - 1,
+                    filter == null,
+                    new FilteredHorizontalBand(source, table));
+        }
+
+        return table;
+    }
+
+    //-------------//
+    // createUnion //
+    //-------------//
+    /**
+     * Report the RunTable, union of the provided tables, built directly from their run
+     * sequences, with no pixel buffer.
+     * <p>
+     * A sequence to which only one part of same orientation contributes is a mere shifted copy of
+     * the part sequence, which is the general case for disjoint parts.
+     * Otherwise, the runs contributed by all parts are sorted and merged, overlapping or touching
+     * runs being joined.
+     * A part of the other orientation contributes its runs transposed, pixel by pixel.
+     *
+     * @param width   width of union table
+     * @param height  height of union table
+     * @param parts   the tables to merge, of any orientation
+     * @param offsets for each part, location of its top-left corner within union table
+     * @return the union table
+     */
+    public RunTable createUnion (int width,
+                                 int height,
+                                 List<RunTable> parts,
+                                 List<Point> offsets)
+    {
+        final RunTable table = new RunTable(orientation, width, height);
+        final int size = table.getSize();
+        final boolean vertical = orientation.isVertical();
+        final ColumnRuns runs = new ColumnRuns(size);
+
+        // Sole contributing sequence, if any, per sequence index
+        final int[][] singles = new int[size][];
+        final int[] singleShifts = new int[size];
+        final boolean[] touched = new boolean[size];
+
+        for (int p = 0; p < parts.size(); p++) {
+            final RunTable part = parts.get(p);
+            final Point offset = offsets.get(p);
+            final int seqShift = vertical ? offset.x : offset.y;
+            final int posShift = vertical ? offset.y : offset.x;
+
+            if (part.getOrientation() == orientation) {
+                for (int i = 0, iBreak = part.getSize(); i < iBreak; i++) {
+                    final RunSequence seq = part.getSequence(i);
+
+                    if ((seq == null) || (seq.size() == 0)) {
+                        continue;
+                    }
+
+                    final int index = i + seqShift;
+
+                    if (!touched[index] && (filter == null)) {
+                        singles[index] = seq.getRle();
+                        singleShifts[index] = posShift;
+                    } else {
+                        flushSingle(runs, index, singles, singleShifts);
+                        addRuns(runs, index, seq.getRle(), posShift);
+                    }
+
+                    touched[index] = true;
+                }
+            } else {
+                // Transposition: run pixels of part sequence i go to several table sequences
+                for (int i = 0, iBreak = part.getSize(); i < iBreak; i++) {
+                    for (Iterator<Run> it = part.iterator(i); it.hasNext();) {
+                        final Run run = it.next();
+
+                        for (int c = run.getStart(), stop = run.getStop(); c <= stop; c++) {
+                            final int index = c + seqShift;
+                            flushSingle(runs, index, singles, singleShifts);
+                            runs.add(index, i + posShift, 1);
+                            touched[index] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Encode each sequence
+        final int[] rle = new int[(vertical ? height : width) + 2];
+
+        for (int index = 0; index < size; index++) {
+            if (singles[index] != null) {
+                final int[] rle0 = shift(singles[index], singleShifts[index]);
+                table.setSequence(index, new RunSequence(rle0));
+            } else if (runs.sizes[index] > 0) {
+                final RunSequence seq = mergeRuns(runs, index, rle);
+
+                if (seq != null) {
+                    table.setSequence(index, seq);
+                }
+            }
+        }
+
+        return table;
+    }
+
+    //---------//
+    // addRuns //
+    //---------//
+    /**
+     * Add the foreground runs of a RLE sequence, as (start, length) pairs.
+     *
+     * @param runs  the runs being collected
+     * @param index target sequence index
+     * @param rle   the RLE cells
+     * @param shift shift to apply on run starts
+     */
+    private static void addRuns (ColumnRuns runs,
+                                 int index,
+                                 int[] rle,
+                                 int shift)
+    {
+        int pos = shift;
+
+        for (int c = 0; c < rle.length; c += 2) {
+            if (rle[c] > 0) {
+                runs.add(index, pos, rle[c]);
+            }
+
+            pos += rle[c];
+
+            if ((c + 1) < rle.length) {
+                pos += rle[c + 1];
+            }
+        }
+    }
+
+    //-------------//
+    // flushSingle //
+    //-------------//
+    /**
+     * Since another contribution arrives for provided sequence index, move the sole
+     * sequence recorded so far, if any, into the collected runs.
+     */
+    private static void flushSingle (ColumnRuns runs,
+                                     int index,
+                                     int[][] singles,
+                                     int[] singleShifts)
+    {
+        if (singles[index] != null) {
+            addRuns(runs, index, singles[index], singleShifts[index]);
+            singles[index] = null;
+        }
+    }
+
+    //-----------//
+    // mergeRuns //
+    //-----------//
+    /**
+     * Sort and merge the runs collected for a sequence, then encode them.
+     *
+     * @param runs  the collected runs
+     * @param index sequence index
+     * @param rle   buffer of at least sequence length + 2 cells
+     * @return the run sequence, or null if empty
+     */
+    private RunSequence mergeRuns (ColumnRuns runs,
+                                   int index,
+                                   int[] rle)
+    {
+        final int[] pairs = runs.pairs[index];
+        final int count = runs.sizes[index] / 2;
+
+        // Sort (start, length) pairs by start
+        final long[] keys = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) pairs[2 * i] << 32) | pairs[(2 * i) + 1];
+        }
+
+        Arrays.sort(keys);
+
+        int size = 0;
+        int lastEnd = 0;
+        int start = -1; // Start of pending run, if any
+        int end = -1; // End of pending run, if any
+
+        for (long key : keys) {
+            final int s = (int) (key >>> 32);
+            final int e = s + (int) key;
+
+            if (s <= end) {
+                end = Math.max(end, e); // Overlapping or touching run
+            } else {
+                if (start != -1) {
+                    final int newSize = appendChecked(rle, size, index, start, end, lastEnd);
+
+                    if (newSize > size) {
+                        lastEnd = end;
+                        size = newSize;
+                    }
+                }
+
+                start = s;
+                end = e;
+            }
+        }
+
+        if (start != -1) {
+            size = appendChecked(rle, size, index, start, end, lastEnd);
+        }
+
+        return (size > 0) ? new RunSequence(Arrays.copyOf(rle, size)) : null;
+    }
+
+    //---------------//
+    // appendChecked //
+    //---------------//
+    /**
+     * Append a merged run, if accepted by filter.
+     *
+     * @return the new count of cells
+     */
+    private int appendChecked (int[] rle,
+                               int size,
+                               int index,
+                               int start,
+                               int end,
+                               int lastEnd)
+    {
+        if (filter != null) {
+            final boolean ok = orientation.isVertical() ? filter.check(index, start, end - start)
+                    : filter.check(start, index, end - start);
+
+            if (!ok) {
+                return size;
+            }
+        }
+
+        return appendRun(rle, size, start, end - start, lastEnd);
+    }
+
+    //-------//
+    // shift //
+    //-------//
+    /**
+     * Report a copy of RLE cells, with runs shifted by provided amount.
+     *
+     * @param rle   the RLE cells
+     * @param shift the shift (non negative)
+     * @return the shifted copy
+     */
+    private static int[] shift (int[] rle,
+                                int shift)
+    {
+        if ((shift == 0) || (rle[0] == 0)) {
+            final int[] copy = Arrays.copyOf(rle, rle.length);
+
+            if (rle[0] == 0) {
+                copy[1] += shift; // Longer initial background
+            }
+
+            return copy;
+        }
+
+        // Insert an initial background
+        final int[] copy = new int[rle.length + 2];
+        copy[1] = shift;
+        System.arraycopy(rle, 0, copy, 2, rle.length);
+
+        return copy;
+    }
+
+    //-----------//
+    // appendRun //
+    //-----------//
+    /**
+     * Append a foreground run to the RLE cells of a sequence.
+     * <p>
+     * This is the incremental equivalent of {@link RunTable#encode(java.util.List)}:
+     * the first cell is always a foreground length (perhaps 0), then background and foreground
+     * lengths alternate.
+     *
+     * @param rle     the RLE cells, with room for 3 more cells
+     * @param size    current count of cells
+     * @param start   run start, relative to sequence origin
+     * @param length  run length
+     * @param lastEnd end of previous run, relative to sequence origin
+     * @return the new count of cells
+     */
+    private static int appendRun (int[] rle,
+                                  int size,
+                                  int start,
+                                  int length,
+                                  int lastEnd)
+    {
+        if (size == 0) {
+            if (start != 0) {
+                rle[size++] = 0;
+                rle[size++] = start;
+            }
+        } else {
+            rle[size++] = start - lastEnd;
+        }
+
+        rle[size++] = length;
+
+        return size;
+    }
+
+    //-----------//
+    // encodeRow //
+    //-----------//
+    /**
+     * Encode the foreground runs of one row of pixels.
+     *
+     * @param pixels the pixels array
+     * @param offset index in array of the first pixel to read
+     * @param width  count of pixels to read
+     * @param x0     source abscissa of the first pixel read
+     * @param y      source ordinate of the row
+     * @param rle    buffer of at least width + 2 cells
+     * @return the run sequence, or null if empty
+     */
+    private RunSequence encodeRow (byte[] pixels,
+                                   int offset,
+                                   int width,
+                                   int x0,
+                                   int y,
+                                   int[] rle)
+    {
+        int size = 0;
+        int lastEnd = 0;
+        int c = 0;
+
+        while (c < width) {
+            // Skip background
+            while ((c < width) && (pixels[offset + c] != 0)) {
+                c++;
+            }
+
+            if (c == width) {
+                break;
+            }
+
+            // Read foreground
+            final int start = c;
+
+            while ((c < width) && (pixels[offset + c] == 0)) {
+                c++;
+            }
+
+            final int length = c - start;
+
+            if ((filter == null) || filter.check(x0 + start, y, length)) {
+                size = appendRun(rle, size, start, length, lastEnd);
+                lastEnd = c;
+            }
+        }
+
+        return (size > 0) ? new RunSequence(Arrays.copyOf(rle, size)) : null;
+    }
+
+    //-------------//
+    // isRawSource //
+    //-------------//
+    /**
+     * Check whether the source pixels can be read directly from the backing array.
+     *
+     * @param source the source to read runs from
+     * @param roi    region of interest
+     * @return true if direct access is possible
+     */
+    private static boolean isRawSource (ByteProcessor source,
+                                        Rectangle roi)
+    {
+        // A subclass may override pixel access
+        return (source.getClass() == ByteProcessor.class)
+               && (source.getPixels() instanceof byte[])
+               && new Rectangle(0, 0, source.getWidth(), source.getHeight()).contains(roi);
+    }
+
     // ----------//
     // MyAdapter //
     // ----------//
@@ -272,6 +720,347 @@ public class RunTableFactory
         }
     }
 
+    //----------------//
+    // HorizontalBand //
+    //----------------//
+    /**
+     * Band of rows, to retrieve horizontal runs directly from the source array.
+     */
+    private class HorizontalBand
+            implements RunsRetriever.Band
+    {
+
+        /** The source pixels. */
+        private final byte[] pixels;
+
+        /** Length of a source row. */
+        private final int stride;
+
+        /** The table to populate. */
+        private final RunTable table;
+
+        /** Region of interest. */
+        private final Rectangle roi;
+
+        HorizontalBand (ByteProcessor source,
+                        RunTable table,
+                        Rectangle roi)
+        {
+            this.pixels = (byte[]) source.getPixels();
+            this.stride = source.getWidth();
+            this.table = table;
+            this.roi = roi;
+        }
+
+        @Override
+        public void process (int yStart,
+                             int yStop)
+        {
+            final int[] rle = new int[roi.width + 2];
+
+            for (int y = yStart; y < yStop; y++) {
+                final RunSequence seq = encodeRow(
+                        pixels,
+                        (y * stride) + roi.x,
+                        roi.width,
+                        roi.x,
+                        y,
+                        rle);
+
+                if (seq != null) {
+                    table.setSequence(y - roi.y, seq);
+                }
+            }
+        }
+    }
+
+    //--------------//
+    // VerticalBand //
+    //--------------//
+    /**
+     * Band of columns, to retrieve vertical runs directly from the source array.
+     * <p>
+     * To keep memory access sequential, the band is scanned row by row, while the sequences of
+     * all its columns are encoded side by side.
+     */
+    private class VerticalBand
+            implements RunsRetriever.Band
+    {
+
+        /** The source pixels. */
+        private final byte[] pixels;
+
+        /** Length of a source row. */
+        private final int stride;
+
+        /** The table to populate. */
+        private final RunTable table;
+
+        /** Region of interest. */
+        private final Rectangle roi;
+
+        VerticalBand (ByteProcessor source,
+                      RunTable table,
+                      Rectangle roi)
+        {
+            this.pixels = (byte[]) source.getPixels();
+            this.stride = source.getWidth();
+            this.table = table;
+            this.roi = roi;
+        }
+
+        @Override
+        public void process (int xStart,
+                             int xStop)
+        {
+            final int count = xStop - xStart;
+            final int height = roi.height;
+            final int[][] rles = new int[count][];
+            final int[] sizes = new int[count];
+            final int[] lastEnds = new int[count];
+            final int[] starts = new int[count]; // Start of run in progress, or -1
+            Arrays.fill(starts, -1);
+
+            // One more virtual background row, to end the last runs
+            for (int c = 0; c <= height; c++) {
+                final int offset = ((roi.y + c) * stride) + xStart;
+
+                for (int i = 0; i < count; i++) {
+                    if ((c < height) && (pixels[offset + i] == 0)) {
+                        if (starts[i] == -1) {
+                            starts[i] = c;
+                        }
+                    } else if (starts[i] != -1) {
+                        final int start = starts[i];
+                        final int length = c - start;
+                        starts[i] = -1;
+
+                        if ((filter == null) || filter.check(xStart + i, roi.y + start, length)) {
+                            int[] rle = rles[i];
+
+                            if (rle == null) {
+                                rle = rles[i] = new int[16];
+                            } else if ((sizes[i] + 3) > rle.length) {
+                                rle = rles[i] = Arrays.copyOf(rle, 2 * rle.length);
+                            }
+
+                            sizes[i] = appendRun(rle, sizes[i], start, length, lastEnds[i]);
+                            lastEnds[i] = c;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (sizes[i] > 0) {
+                    table.setSequence(
+                            (xStart + i) - roi.x,
+                            new RunSequence(Arrays.copyOf(rles[i], sizes[i])));
+                }
+            }
+        }
+    }
+
+    //------------------------//
+    // FilteredHorizontalBand //
+    //------------------------//
+    /**
+     * Band of rows, to retrieve horizontal runs from a pixel filter.
+     */
+    private class FilteredHorizontalBand
+            implements RunsRetriever.Band
+    {
+
+        /** The pixel filter. */
+        private final PixelFilter source;
+
+        /** The table to populate. */
+        private final RunTable table;
+
+        FilteredHorizontalBand (PixelFilter source,
+                                RunTable table)
+        {
+            this.source = source;
+            this.table = table;
+        }
+
+        @Override
+        public void process (int yStart,
+                             int yStop)
+        {
+            final int width = source.getWidth();
+            final byte[] chunk = new byte[Math.min(CHUNK_HEIGHT, yStop - yStart) * width];
+            final int[] rle = new int[width + 2];
+
+            for (int y0 = yStart; y0 < yStop; y0 += CHUNK_HEIGHT) {
+                final int y1 = Math.min(yStop, y0 + CHUNK_HEIGHT);
+                source.filterRows(y0, y1, chunk);
+
+                for (int y = y0; y < y1; y++) {
+                    final RunSequence seq = encodeRow(chunk, (y - y0) * width, width, 0, y, rle);
+
+                    if (seq != null) {
+                        table.setSequence(y, seq);
+                    }
+                }
+            }
+        }
+    }
+
+    //----------------------//
+    // FilteredVerticalBand //
+    //----------------------//
+    /**
+     * Bands of rows, to retrieve vertical runs from a pixel filter.
+     * <p>
+     * Each band of rows records, for each column, its runs as (start, length) pairs.
+     * A run still open at the end of a band is ended there, and later stitched with the run
+     * that starts the same column in the next band.
+     */
+    private class FilteredVerticalBand
+            implements RunsRetriever.Band
+    {
+
+        /** The pixel filter. */
+        private final PixelFilter source;
+
+        /** Runs of each processed band, per band first row. */
+        private final Map<Integer, ColumnRuns> bandRuns = new TreeMap<>();
+
+        FilteredVerticalBand (PixelFilter source)
+        {
+            this.source = source;
+        }
+
+        @Override
+        public void process (int yStart,
+                             int yStop)
+        {
+            final int width = source.getWidth();
+            final byte[] chunk = new byte[Math.min(CHUNK_HEIGHT, yStop - yStart) * width];
+            final ColumnRuns runs = new ColumnRuns(width);
+            final int[] starts = new int[width]; // Start of run in progress, or -1
+            Arrays.fill(starts, -1);
+
+            for (int y0 = yStart; y0 < yStop; y0 += CHUNK_HEIGHT) {
+                final int y1 = Math.min(yStop, y0 + CHUNK_HEIGHT);
+                source.filterRows(y0, y1, chunk);
+
+                for (int y = y0; y < y1; y++) {
+                    final int offset = (y - y0) * width;
+
+                    for (int x = 0; x < width; x++) {
+                        if (chunk[offset + x] == 0) {
+                            if (starts[x] == -1) {
+                                starts[x] = y;
+                            }
+                        } else if (starts[x] != -1) {
+                            runs.add(x, starts[x], y - starts[x]);
+                            starts[x] = -1;
+                        }
+                    }
+                }
+            }
+
+            // End runs still open
+            for (int x = 0; x < width; x++) {
+                if (starts[x] != -1) {
+                    runs.add(x, starts[x], yStop - starts[x]);
+                }
+            }
+
+            synchronized (bandRuns) {
+                bandRuns.put(yStart, runs);
+            }
+        }
+
+        /**
+         * Stitch the runs of all bands, column by column, and populate the table.
+         *
+         * @param table the table to populate
+         */
+        void stitch (RunTable table)
+        {
+            final int width = source.getWidth();
+            final int[] rle = new int[source.getHeight() + 2];
+
+            for (int x = 0; x < width; x++) {
+                int size = 0;
+                int lastEnd = 0;
+                int start = -1; // Start of pending run, if any
+                int end = -1; // End of pending run, if any
+
+                for (ColumnRuns runs : bandRuns.values()) {
+                    final int[] pairs = runs.pairs[x];
+
+                    for (int i = 0, iBreak = runs.sizes[x]; i < iBreak; i += 2) {
+                        if (pairs[i] == end) {
+                            end += pairs[i + 1]; // Continuation of pending run
+                        } else {
+                            if (start != -1) {
+                                if ((filter == null) || filter.check(x, start, end - start)) {
+                                    size = appendRun(rle, size, start, end - start, lastEnd);
+                                    lastEnd = end;
+                                }
+                            }
+
+                            start = pairs[i];
+                            end = start + pairs[i + 1];
+                        }
+                    }
+                }
+
+                if (start != -1) {
+                    if ((filter == null) || filter.check(x, start, end - start)) {
+                        size = appendRun(rle, size, start, end - start, lastEnd);
+                    }
+                }
+
+                if (size > 0) {
+                    table.setSequence(x, new RunSequence(Arrays.copyOf(rle, size)));
+                }
+            }
+        }
+    }
+
+    //------------//
+    // ColumnRuns //
+    //------------//
+    /**
+     * Runs of each column, within a band of rows.
+     */
+    private static class ColumnRuns
+    {
+
+        /** Per column, sequence of (start, length) pairs. */
+        final int[][] pairs;
+
+        /** Per column, count of cells used. */
+        final int[] sizes;
+
+        ColumnRuns (int width)
+        {
+            pairs = new int[width][];
+            sizes = new int[width];
+        }
+
+        void add (int x,
+                  int start,
+                  int length)
+        {
+            int[] cells = pairs[x];
+
+            if (cells == null) {
+                cells = pairs[x] = new int[8];
+            } else if (sizes[x] == cells.length) {
+                cells = pairs[x] = Arrays.copyOf(cells, 2 * cells.length);
+            }
+
+            cells[sizes[x]++] = start;
+            cells[sizes[x]++] = length;
+        }
+    }
+
     //--------//
     // Filter //
     //--------//
@@ -0,0 +1,130 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  R u n T a b l e M a p p i n g                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.run.RunTable.RunSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class {@code RunTableMapping} provides lazy, random access to the sequences of a
+ * binary run table held in a (typically memory-mapped) byte buffer.
+ * <p>
+ * A sequence is decoded only on its first access, and then cached.
+ * Buffer is only accessed through absolute methods, so that concurrent accesses are safe.
+ *
+ * @see RunTableCodec
+ * @author Hervé Bitteur
+ */
+class RunTableMapping
+{
+
+    /** Marker for a decoded empty sequence. */
+    private static final RunSequence EMPTY = new RunSequence(null);
+
+    /** Buffer with whole binary table. */
+    private final ByteBuffer buffer;
+
+    /** Count of sequences. */
+    private final int size;
+
+    /** Position of payload within buffer. */
+    private final int payloadStart;
+
+    /** Sequences decoded so far. */
+    private final AtomicReferenceArray<RunSequence> decoded;
+
+    /**
+     * Creates a new {@code RunTableMapping} object.
+     *
+     * @param buffer the buffer on whole binary table, not deflated
+     * @param size   the count of sequences
+     */
+    RunTableMapping (ByteBuffer buffer,
+                     int size)
+    {
+        this.buffer = buffer;
+        this.size = size;
+
+        payloadStart = RunTableCodec.HEADER_SIZE + (4 * (size + 1));
+        decoded = new AtomicReferenceArray<>(size);
+    }
+
+    //-------------//
+    // getSequence //
+    //-------------//
+    /**
+     * Report the sequence at provided index, decoding it if not yet done.
+     *
+     * @param index sequence index
+     * @return the sequence, or null if empty
+     */
+    RunSequence getSequence (int index)
+    {
+        RunSequence seq = decoded.get(index);
+
+        if (seq == null) {
+            final int offset = RunTableCodec.HEADER_SIZE + (4 * index);
+            final int start = payloadStart + buffer.getInt(offset);
+            final int stop = payloadStart + buffer.getInt(offset + 4);
+
+            try {
+                seq = RunTableCodec.decodeSequence(buffer, start, stop);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Error decoding sequence " + index, ex);
+            }
+
+            decoded.compareAndSet(index, null, (seq != null) ? seq : EMPTY);
+            seq = decoded.get(index);
+        }
+
+        return (seq != EMPTY) ? seq : null;
+    }
+
+    //-----------------//
+    // getPayloadStart //
+    //-----------------//
+    /**
+     * Report the position of payload within buffer.
+     *
+     * @return payload start position
+     */
+    int getPayloadStart ()
+    {
+        return payloadStart;
+    }
+
+    //---------//
+    // getSize //
+    //---------//
+    /**
+     * Report the count of sequences.
+     *
+     * @return the count of sequences
+     */
+    int getSize ()
+    {
+        return size;
+    }
+}
@@ -21,6 +21,8 @@
 // </editor-fold>
 package org.audiveris.omr.run;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.util.Concurrency;
 import org.audiveris.omr.util.OmrExecutors;
@@ -32,18 +34,25 @@ import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class {@code RunsRetriever} is in charge of reading a source of pixels and
  * retrieving foreground runs and background runs from it.
  * <p>
  * What is done with the retrieved runs is essentially the purpose of the provided adapter.
+ * <p>
+ * Positions are processed by contiguous bands, a few bands per CPU, which can be processed in
+ * parallel when the adapter is thread-safe.
  *
  * @author Hervé Bitteur
  */
 public class RunsRetriever
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(RunsRetriever.class);
 
     /** The orientation of desired runs */
@@ -91,16 +100,17 @@ public class RunsRetriever
     /**
      * Process the pixels in position 'p' between coordinates 'cMin' and 'cMax'
      *
-     * @param pos  the position in the pixels array (x for vertical)
-     * @param cMin the starting coordinate (y for vertical)
-     * @param cMax the ending coordinate
+     * @param pos     the position in the pixels array (x for vertical)
+     * @param cMin    the starting coordinate (y for vertical)
+     * @param cMax    the ending coordinate
+     * @param posRuns (output) buffer of runs, reused from one position to the next
      */
     private void processPosition (int pos,
                                   int cMin,
-                                  int cMax)
+                                  int cMax,
+                                  List<Run> posRuns)
     {
-        /** Buffer of runs for current position. */
-        final List<Run> posRuns = new ArrayList<>();
+        posRuns.clear();
 
         // Current run is FOREGROUND or BACKGROUND
         boolean isFore = false;
@@ -156,53 +166,121 @@ public class RunsRetriever
     // rowBasedRetrieval //
     //-------------------//
     /**
-     * Retrieve runs row by row.
-     * This method handles the pixels run either in a parallel or a serial way,
-     * according to the possibilities of the high OMR executor.
+     * Retrieve runs row by row, using bands of contiguous rows.
+     * Bands are processed either in a parallel or a serial way, according to the adapter
+     * and to the possibilities of the high OMR executor.
      */
     private void rowBasedRetrieval (int pMin,
                                     int pMax,
                                     final int cMin,
                                     final int cMax)
     {
-        if ((OmrExecutors.defaultParallelism.getValue() == false) || !adapter.isThreadSafe()) {
-            // Sequential
-            for (int p = pMin; p <= pMax; p++) {
-                processPosition(p, cMin, cMax);
+        processBands(pMin, pMax, adapter.isThreadSafe(), new Band()
+        {
+            @Override
+            public void process (int pStart,
+                                 int pStop)
+            {
+                final List<Run> posRuns = new ArrayList<>();
+
+                for (int p = pStart; p < pStop; p++) {
+                    processPosition(p, cMin, cMax, posRuns);
+                }
             }
-        } else {
-            // Parallel (TODO: should use Java 7 fork/join someday...)
-            try {
-                // Browse one dimension
-                List<Callable<Void>> tasks = new ArrayList<>(pMax - pMin + 1);
-
-                for (int p = pMin; p <= pMax; p++) {
-                    final int pp = p;
-                    tasks.add(
-                            new Callable<Void>()
-                    {
-                        @Override
-                        public Void call ()
-                                throws Exception
-                        {
-                            processPosition(pp, cMin, cMax);
-
-                            return null;
-                        }
-                    });
+        });
+    }
+
+    //--------------//
+    // getBandCount //
+    //--------------//
+    /**
+     * Report the number of bands to use for the provided count of positions.
+     *
+     * @param positions count of positions to process
+     * @param parallel  true if bands can be processed in parallel
+     * @return the number of bands, at least 1
+     */
+    static int getBandCount (int positions,
+                             boolean parallel)
+    {
+        if (!parallel || !OmrExecutors.defaultParallelism.getValue()) {
+            return 1;
+        }
+
+        final int cpus = OmrExecutors.getNumberOfCpus();
+        final int byCpu = cpus * Math.max(1, constants.bandsPerCpu.getValue());
+        final int bySize = positions / Math.max(1, constants.minBandSize.getValue());
+
+        return Math.max(1, Math.min(byCpu, bySize));
+    }
+
+    //--------------//
+    // processBands //
+    //--------------//
+    /**
+     * Split the range of positions [pMin..pMax] into contiguous bands and process them.
+     *
+     * @param pMin     first position
+     * @param pMax     last position (inclusive)
+     * @param parallel true if bands can be processed in parallel
+     * @param band     the processing of one band
+     */
+    static void processBands (int pMin,
+                              int pMax,
+                              boolean parallel,
+                              final Band band)
+    {
+        final int positions = pMax - pMin + 1;
+
+        if (positions <= 0) {
+            return;
+        }
+
+        final int bandCount = getBandCount(positions, parallel);
+
+        if (bandCount == 1) {
+            // Sequential
+            band.process(pMin, pMax + 1);
+
+            return;
+        }
+
+        // Parallel
+        final int bandSize = (positions + bandCount - 1) / bandCount;
+        final List<Callable<Void>> tasks = new ArrayList<>(bandCount);
+
+        for (int p = pMin; p <= pMax; p += bandSize) {
+            final int pStart = p;
+            final int pStop = Math.min(pMax + 1, p + bandSize);
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    band.process(pStart, pStop);
+
+                    return null;
                 }
+            });
+        }
 
-                // Launch the tasks and wait for their completion
-                OmrExecutors.getHighExecutor().invokeAll(tasks);
-            } catch (InterruptedException ex) {
-                logger.warn("ParallelRuns got interrupted");
-                throw new ProcessingCancellationException(ex);
-            } catch (ProcessingCancellationException pce) {
-                throw pce;
-            } catch (Throwable ex) {
-                logger.warn("Exception raised in ParallelRuns", ex);
-                throw new RuntimeException(ex);
+        try {
+            for (Future<Void> future : OmrExecutors.getHighExecutor().invokeAll(tasks)) {
+                future.get();
             }
+        } catch (InterruptedException ex) {
+            logger.warn("ParallelRuns got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+
+            if (cause instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) cause;
+            }
+
+            logger.warn("Exception raised in ParallelRuns", cause);
+            throw new RuntimeException(cause);
         }
     }
 
@@ -218,6 +296,9 @@ public class RunsRetriever
 
         /**
          * Called at end of position.
+         * <p>
+         * The provided list is reused for the next position, so its content must be consumed
+         * before returning.
          *
          * @param pos  position value
          * @param runs sequence of runs for this position
@@ -247,4 +328,41 @@ public class RunsRetriever
         boolean isFore (int coord,
                         int pos);
     }
+
+    //------//
+    // Band //
+    //------//
+    /**
+     * Processing of a band of contiguous positions.
+     */
+    static interface Band
+    {
+
+        /**
+         * Process the positions of this band.
+         *
+         * @param pStart first position
+         * @param pStop  position past the last one
+         */
+        void process (int pStart,
+                      int pStop);
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer bandsPerCpu = new Constant.Integer(
+                "bands",
+                2,
+                "Number of bands of positions per CPU, when retrieving runs in parallel");
+
+        private final Constant.Integer minBandSize = new Constant.Integer(
+                "positions",
+                32,
+                "Minimum number of positions per band, when retrieving runs in parallel");
+    }
 }
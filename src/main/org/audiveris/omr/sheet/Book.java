@@ -31,6 +31,7 @@ import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.image.FilterDescriptor;
 import org.audiveris.omr.image.FilterParam;
 import org.audiveris.omr.image.ImageLoading;
+import org.audiveris.omr.image.ImagePrefetcher;
 import org.audiveris.omr.log.LogUtil;
 import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.score.OpusExporter;
@@ -46,7 +47,7 @@ import org.audiveris.omr.sheet.ui.BookBrowser;
 import org.audiveris.omr.sheet.ui.StubsController;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.step.Step;
-import org.audiveris.omr.step.StepException;
+import org.audiveris.omr.step.StepMetrics;
 import org.audiveris.omr.step.ui.StepMonitoring;
 import org.audiveris.omr.text.Language;
 import org.audiveris.omr.util.FileUtil;
@@ -55,6 +56,7 @@ import org.audiveris.omr.util.Memory;
 import org.audiveris.omr.util.OmrExecutors;
 import org.audiveris.omr.util.StopWatch;
 import org.audiveris.omr.util.ZipFileSystem;
+import org.audiveris.omr.util.ZipUpdater;
 import org.audiveris.omr.util.param.Param;
 import org.audiveris.omr.util.param.StringParam;
 
@@ -62,6 +64,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -79,9 +82,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipOutputStream;
@@ -311,6 +311,9 @@ public class Book
     /** Flag to indicate this book is being closed. */
     private volatile boolean closing;
 
+    /** Background decoder of next sheet images, if any. */
+    private volatile ImagePrefetcher prefetcher;
+
     /** Set if the book itself has been modified. */
     private boolean modified = false;
 
@@ -445,9 +448,18 @@ public class Book
             bookBrowser.close();
         }
 
+        // Complete background writes
+        SheetSaver.getInstance().flush(this);
+
         // Remove from OMR instances
         OMR.engine.removeBook(this);
 
+        // Forget resident sheets
+        SheetCache.getInstance().removeBook(this);
+
+        // Forget step metrics not exported
+        StepMetrics.removeBook(this);
+
         // Time for some cleanup...
         Memory.gc();
 
@@ -1216,6 +1228,23 @@ public class Book
     public BufferedImage loadSheetImage (int id)
     {
         try {
+            final ImagePrefetcher pf = prefetcher;
+
+            if (pf != null) {
+                final BufferedImage img = pf.take(id);
+
+                if (img != null) {
+                    logger.info(
+                            "Loaded image {} {}x{} from {} (prefetched)",
+                            id,
+                            img.getWidth(),
+                            img.getHeight(),
+                            path);
+
+                    return img;
+                }
+            }
+
             final ImageLoading.Loader loader = ImageLoading.getLoader(path);
 
             if (loader == null) {
@@ -1231,6 +1260,11 @@ public class Book
         } catch (IOException ex) {
             logger.warn("Error in book.loadSheetImage", ex);
 
+            return null;
+        } catch (InterruptedException ex) {
+            logger.warn("Interrupted in book.loadSheetImage");
+            Thread.currentThread().interrupt();
+
             return null;
         }
     }
@@ -1336,75 +1370,44 @@ public class Book
 
                 if (isMultiSheet() && constants.processAllStubsInParallel.isSet()
                             && (OmrExecutors.defaultParallelism.getValue() == true)) {
-                    // Process all stubs in parallel
-                    List<Callable<Boolean>> tasks = new ArrayList<>();
-
-                    for (final SheetStub stub : concernedStubs) {
-                        tasks.add(new Callable<Boolean>()
-                        {
-                            @Override
-                            public Boolean call ()
-                                    throws StepException
-                            {
-                                LogUtil.start(stub);
-
-                                try {
-                                    boolean ok = stub.reachStep(target, force);
-
-                                    if (ok && (OMR.gui == null)) {
-                                        stub.swapSheet(); // Save sheet & global book info to disk
-                                    }
-
-                                    return ok;
-                                } finally {
-                                    LogUtil.stopStub();
-                                }
-                            }
-                        });
-                    }
-
+                    // Process stubs in parallel, with a bounded number of sheets at a time
                     try {
-                        List<Future<Boolean>> futures = OmrExecutors.getCachedLowExecutor()
-                                .invokeAll(tasks);
-
-                        for (Future<Boolean> future : futures) {
-                            try {
-                                if (!future.get()) {
-                                    someFailure = true;
-                                }
-                            } catch (InterruptedException |
-                                     ExecutionException ex) {
-                                logger.warn("Future exception", ex);
-                                someFailure = true;
-                            }
+                        if (!new SheetScheduler(this, target, force).process(concernedStubs)) {
+                            someFailure = true;
                         }
-
-                        return !someFailure;
                     } catch (InterruptedException ex) {
                         logger.warn("Error in parallel reachBookStep", ex);
                         someFailure = true;
                     }
                 } else {
                     // Process one stub after the other
-                    for (SheetStub stub : concernedStubs) {
-                        LogUtil.start(stub);
+                    // While decoding the images of next stubs in background
+                    startPrefetching(concernedStubs);
+
+                    try {
+                        for (SheetStub stub : concernedStubs) {
+                            LogUtil.start(stub);
 
-                        try {
-                            if (stub.reachStep(target, force)) {
-                                if (OMR.gui == null) {
-                                    stub.swapSheet(); // Save sheet & global book info to disk
+                            try {
+                                if (stub.reachStep(target, force)) {
+                                    if (OMR.gui == null) {
+                                        // Save sheet & global book info to disk
+                                        stub.releaseSheet();
+                                    }
+                                } else {
+                                    someFailure = true;
                                 }
-                            } else {
+                            } catch (Exception ex) {
+                                // Exception (such as timeout) raised on stub
+                                // Let processing continue for the other stubs
+                                logger.warn("Error processing stub");
                                 someFailure = true;
+                            } finally {
+                                LogUtil.stopStub();
                             }
-                        } catch (Exception ex) {
-                            // Exception (such as timeout) raised on stub
-                            // Let processing continue for the other stubs
-                            logger.warn("Error processing stub");
-                            someFailure = true;
-                        } finally {
-                            LogUtil.stopStub();
                         }
+                    } finally {
+                        stopPrefetching();
                     }
                 }
 
@@ -1438,12 +1441,19 @@ public class Book
         int modifs = 0;
 
         if (scores != null) {
-            for (Score score : scores) {
-                // (re) build the score logical parts
-                modifs += new ScoreReduction(score).reduce();
+            // Any sheet may get modified, hence keep sheets resident meanwhile
+            SheetCache.getInstance().pinBook(this);
+
+            try {
+                for (Score score : scores) {
+                    // (re) build the score logical parts
+                    modifs += new ScoreReduction(score).reduce();
 
-                // Slurs and voices connection across pages in score
-                modifs += Voices.refineScore(score);
+                    // Slurs and voices connection across pages in score
+                    modifs += Voices.refineScore(score);
+                }
+            } finally {
+                SheetCache.getInstance().unpinBook(this);
             }
 
             if (modifs > 0) {
@@ -1530,6 +1540,8 @@ public class Book
     public void store (Path bookPath,
                        boolean withBackup)
     {
+        SheetSaver.getInstance().flush(this); // Complete background writes
+
         Memory.gc(); // Launch garbage collection, to save on weak glyph references ...
 
         boolean diskWritten = false; // Has disk actually been written?
@@ -1552,25 +1564,33 @@ public class Book
 
             if ((this.bookPath == null) || this.bookPath.toAbsolutePath().equals(
                     bookPath.toAbsolutePath())) {
-                if (this.bookPath == null) {
-                    root = ZipFileSystem.create(bookPath);
-                    diskWritten = true;
-                } else {
-                    root = ZipFileSystem.open(bookPath);
-                }
+                final ZipUpdater updater = (this.bookPath != null) ? openUpdater(bookPath) : null;
 
-                if (modified) {
-                    storeBookInfo(root); // Book info (book.xml)
-                    diskWritten = true;
-                }
+                if (updater != null) {
+                    // Rewrite just the modified entries
+                    diskWritten = storeIncrementally(updater);
+                } else {
+                    if (this.bookPath == null) {
+                        root = ZipFileSystem.create(bookPath);
+                        diskWritten = true;
+                    } else {
+                        root = ZipFileSystem.open(bookPath);
+                    }
 
-                // Contained sheets
-                for (SheetStub stub : stubs) {
-                    if (stub.isModified() || stub.isUpgraded()) {
-                        final Path sheetFolder = root.resolve(INTERNALS_RADIX + stub.getNumber());
-                        stub.getSheet().store(sheetFolder, null);
+                    if (modified) {
+                        storeBookInfo(root); // Book info (book.xml)
                         diskWritten = true;
                     }
+
+                    // Contained sheets
+                    for (SheetStub stub : stubs) {
+                        if (stub.isModified() || stub.isUpgraded()) {
+                            final Path sheetFolder = root.resolve(
+                                    INTERNALS_RADIX + stub.getNumber());
+                            stub.getSheet().store(sheetFolder, null);
+                            diskWritten = true;
+                        }
+                    }
                 }
 
                 // Separate repository
@@ -1641,6 +1661,133 @@ public class Book
         }
     }
 
+    //-------------//
+    // openUpdater //
+    //-------------//
+    /**
+     * Try to open an in place updater on the existing book file.
+     *
+     * @param bookPath path to existing book file
+     * @return the updater, or null if book file is to be rewritten as a whole
+     */
+    private ZipUpdater openUpdater (Path bookPath)
+    {
+        if (!constants.incrementalStore.isSet() || !Files.exists(bookPath)) {
+            return null;
+        }
+
+        final ZipUpdater updater;
+
+        try {
+            updater = new ZipUpdater(bookPath);
+        } catch (IOException ex) {
+            logger.info("No in place update of {} {}", bookPath, ex.toString());
+
+            return null;
+        }
+
+        final double waste = updater.getWasteRatio();
+
+        if (waste > constants.maxWasteRatio.getValue()) {
+            logger.info("Compacting {}, waste ratio: {}", bookPath, String.format("%.2f", waste));
+
+            try {
+                updater.close();
+            } catch (IOException ignored) {
+            }
+
+            return null;
+        }
+
+        return updater;
+    }
+
+    //--------------------//
+    // storeIncrementally //
+    //--------------------//
+    /**
+     * Store book by updating in place the book file entries, for just the modified
+     * items.
+     * <p>
+     * An entry whose content is unchanged (same CRC-32 and size) is not rewritten.
+     *
+     * @param updater the updater on book file, closed by this method
+     * @return true if book file has actually been written
+     * @throws Exception if anything goes wrong
+     */
+    private boolean storeIncrementally (ZipUpdater updater)
+            throws Exception
+    {
+        try {
+            final List<SheetStub> storedStubs = new ArrayList<>();
+            final List<RunTableHolder> storedTables = new ArrayList<>();
+            int count = 0; // Entries actually written
+
+            // Book info (book.xml)
+            if (modified) {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                Jaxb.marshal(this, os, getJaxbContext());
+
+                if (updater.put(BOOK_INTERNALS, os.toByteArray())) {
+                    count++;
+                }
+            }
+
+            // Contained sheets
+            for (SheetStub stub : stubs) {
+                if (stub.isModified() || stub.isUpgraded()) {
+                    final Sheet sheet = stub.getSheet();
+                    final String folder = INTERNALS_RADIX + stub.getNumber() + "/";
+
+                    // Picture tables
+                    for (RunTableHolder holder : sheet.getPicture().getModifiedTables()) {
+                        final String oldPath = holder.getPath();
+                        final byte[] data = holder.encode();
+
+                        if (!oldPath.equals(holder.getPath())) {
+                            updater.remove(folder + oldPath); // Former format
+                        }
+
+                        if (updater.put(folder + holder.getPath(), data)) {
+                            count++;
+                        }
+
+                        storedTables.add(holder);
+                    }
+
+                    // Sheet structure (sheet#n.xml)
+                    final String structure = folder + Sheet.getSheetFileName(stub.getNumber());
+
+                    if (updater.put(structure, sheet.marshalStructure())) {
+                        count++;
+                    }
+
+                    storedStubs.add(stub);
+                }
+            }
+
+            updater.commit();
+
+            // Everything is now safe on disk
+            setModified(false);
+
+            for (RunTableHolder holder : storedTables) {
+                holder.setModified(false);
+            }
+
+            for (SheetStub stub : storedStubs) {
+                stub.setModified(false);
+                stub.setUpgraded(false);
+            }
+
+            logger.debug("{} entries updated in {}", count, bookPath);
+
+            return count > 0;
+        } finally {
+            updater.close();
+        }
+    }
+
     //---------------//
     // storeBookInfo //
     //---------------//
@@ -2202,6 +2349,51 @@ public class Book
         return impacted;
     }
 
+    //------------------//
+    // startPrefetching //
+    //------------------//
+    /**
+     * Start the background decoding of the images of the provided stubs, if worthwhile.
+     *
+     * @param stubs the stubs to be processed in sequence
+     */
+    private void startPrefetching (List<SheetStub> stubs)
+    {
+        if (!ImagePrefetcher.isEnabled()) {
+            return;
+        }
+
+        final List<Integer> imageIds = new ArrayList<>();
+
+        for (SheetStub stub : stubs) {
+            if (!stub.isDone(Step.LOAD)) {
+                imageIds.add(stub.getNumber());
+            }
+        }
+
+        // Nothing to overlap with a single image
+        if (imageIds.size() > 1) {
+            prefetcher = new ImagePrefetcher(path, imageIds);
+            prefetcher.start();
+        }
+    }
+
+    //-----------------//
+    // stopPrefetching //
+    //-----------------//
+    /**
+     * Stop background decoding of images, if any.
+     */
+    private void stopPrefetching ()
+    {
+        final ImagePrefetcher pf = prefetcher;
+
+        if (pf != null) {
+            prefetcher = null;
+            pf.close();
+        }
+    }
+
     //-----------------//
     // closeFileSystem //
     //-----------------//
@@ -2424,7 +2616,7 @@ public class Book
 
         private final Constant.Boolean processAllStubsInParallel = new Constant.Boolean(
                 false,
-                "Should we process all stubs of a book in parallel? (beware of many stubs)");
+                "Should we process stubs of a book in parallel? (see SheetScheduler)");
 
         private final Constant.Boolean checkBookVersion = new Constant.Boolean(
                 true,
@@ -2433,6 +2625,14 @@ public class Book
         private final Constant.Boolean resetOldBooks = new Constant.Boolean(
                 true,
                 "Should we reset to binary the too old book files?");
+
+        private final Constant.Boolean incrementalStore = new Constant.Boolean(
+                true,
+                "Should we update book file in place, for just the modified entries?");
+
+        private final Constant.Ratio maxWasteRatio = new Constant.Ratio(
+                0.5,
+                "Maximum ratio of unused bytes in book file, before it is rewritten as a whole");
     }
 
     //------------------//
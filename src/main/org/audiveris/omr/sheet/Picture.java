@@ -59,10 +59,10 @@ import java.awt.image.ColorModel;
 import java.awt.image.SampleModel;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.Map.Entry;
+import java.util.List;
 import java.util.concurrent.ConcurrentSkipListMap;
 
 import javax.media.jai.JAI;
@@ -745,6 +745,28 @@ public class Picture
         }
     }
 
+    //-------------------//
+    // getModifiedTables //
+    //-------------------//
+    /**
+     * Report the holders of the tables to be stored, because their data has been
+     * modified.
+     *
+     * @return the modified table holders
+     */
+    public List<RunTableHolder> getModifiedTables ()
+    {
+        final List<RunTableHolder> holders = new ArrayList<>();
+
+        for (RunTableHolder holder : tables.values()) {
+            if (holder.hasData() && holder.isModified()) {
+                holders.add(holder);
+            }
+        }
+
+        return holders;
+    }
+
     //-------//
     // store //
     //-------//
@@ -758,30 +780,22 @@ public class Picture
                        Path oldSheetFolder)
     {
         // Each handled table
-        for (Entry<TableKey, RunTableHolder> entry : tables.entrySet()) {
-            final TableKey key = entry.getKey();
-            final RunTableHolder holder = entry.getValue();
-            final Path tablepath = sheetFolder.resolve(key + ".xml");
+        for (RunTableHolder holder : tables.values()) {
 
             if (!holder.hasData()) {
                 if (oldSheetFolder != null) {
                     try {
                         // Copy from old book file to new
-                        Path oldTablePath = oldSheetFolder.resolve(key + ".xml");
-                        Files.copy(oldTablePath, tablepath);
-                        logger.info("Copied {}", tablepath);
+                        Path tablePath = holder.copy(oldSheetFolder, sheetFolder);
+                        logger.info("Copied {}", tablePath);
                     } catch (IOException ex) {
                         logger.warn("Error in picture.store " + ex, ex);
                     }
                 }
             } else if (holder.isModified()) {
                 try {
-                    Files.deleteIfExists(tablepath);
-
-                    RunTable table = holder.getData(sheet.getStub());
-                    table.marshal(tablepath);
-                    holder.setModified(false);
-                    logger.info("Stored {}", tablepath);
+                    Path tablePath = holder.store(sheetFolder);
+                    logger.info("Stored {}", tablePath);
                 } catch (IOException |
                          JAXBException |
                          XMLStreamException ex) {
@@ -21,21 +21,38 @@
 // </editor-fold>
 package org.audiveris.omr.sheet;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableCodec;
 import org.audiveris.omr.sheet.Picture.TableKey;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * Class {@code RunTableHolder} holds the reference to a run table, at least the path
  * to its marshalled data on disk, and (on demand) the unmarshalled run table itself.
+ * <p>
+ * Data is stored in binary format (see {@link RunTableCodec}) unless the {@code binaryFormat}
+ * constant is unset. Data stored in former XML format can still be read.
+ * <p>
+ * When the {@code mapTables} constant is set, a binary table is memory-mapped rather than read,
+ * so that its sequences are decoded only when first accessed.
+ * A table located within a book archive is first extracted to a temporary file.
  *
  * @author Hervé Bitteur
  */
@@ -43,14 +60,19 @@ import javax.xml.bind.annotation.XmlAttribute;
 public class RunTableHolder
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(RunTableHolder.class);
 
+    /** Extension for data in XML format. */
+    private static final String XML_EXTENSION = ".xml";
+
     /** Direct access to data, if any. */
     private RunTable data;
 
-    /** Path to data on disk. */
+    /** Path to data on disk, relative to sheet folder. */
     @XmlAttribute(name = "path")
-    private final String pathString;
+    private String pathString;
 
     /** To avoid useless marshalling to disk. */
     private boolean modified = false;
@@ -62,7 +84,7 @@ public class RunTableHolder
      */
     public RunTableHolder (TableKey key)
     {
-        pathString = key + ".xml";
+        pathString = key + getExtension(constants.binaryFormat.isSet());
     }
 
     /** No-arg constructor needed for JAXB. */
@@ -71,6 +93,58 @@ public class RunTableHolder
         pathString = null;
     }
 
+    //------//
+    // copy //
+    //------//
+    /**
+     * Copy the data file, as is, from an old sheet folder to a new sheet folder.
+     *
+     * @param oldSheetFolder source sheet folder
+     * @param sheetFolder    target sheet folder
+     * @return the target path
+     * @throws IOException on IO error
+     */
+    public Path copy (Path oldSheetFolder,
+                      Path sheetFolder)
+            throws IOException
+    {
+        final Path target = sheetFolder.resolve(pathString);
+        Files.copy(oldSheetFolder.resolve(pathString), target);
+
+        return target;
+    }
+
+    //--------//
+    // encode //
+    //--------//
+    /**
+     * Encode the table data in memory, using current storage format.
+     * <p>
+     * The holder path is updated according to the storage format.
+     *
+     * @return the encoded data, to be stored at {@link #getPath()} within sheet folder
+     * @throws IOException        on IO error
+     * @throws JAXBException      on JAXB error
+     * @throws XMLStreamException on XML error
+     */
+    public byte[] encode ()
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        pathString = getRadix() + getExtension(constants.binaryFormat.isSet());
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        if (constants.binaryFormat.isSet()) {
+            RunTableCodec.write(data, os, constants.deflate.isSet());
+        } else {
+            data.marshal(os);
+        }
+
+        return os.toByteArray();
+    }
+
     //---------//
     // getData //
     //---------//
@@ -90,8 +164,21 @@ public class RunTableHolder
                     // Open book file system
                     Path dataFolder = stub.getBook().openSheetFolder(stub.getNumber());
                     Path dataFile = dataFolder.resolve(pathString);
+
+                    if (!Files.exists(dataFile)) {
+                        // Perhaps a holder created afresh on a sheet stored in another format
+                        Path altFile = dataFolder.resolve(
+                                getRadix() + getExtension(!isBinaryPath()));
+
+                        if (Files.exists(altFile)) {
+                            pathString = altFile.getFileName().toString();
+                            dataFile = altFile;
+                        }
+                    }
+
                     logger.debug("path to file: {}", dataFile);
-                    data = RunTable.unmarshal(dataFile);
+                    data = (constants.mapTables.isSet() && isBinaryPath()) ? map(dataFile)
+                            : RunTable.unmarshal(dataFile);
                     dataFile.getFileSystem().close(); // Close book file system
                     modified = false;
                     logger.debug("Loaded {}", dataFile);
@@ -106,6 +193,19 @@ public class RunTableHolder
         return data;
     }
 
+    //---------//
+    // getPath //
+    //---------//
+    /**
+     * Report the path to data file, relative to sheet folder.
+     *
+     * @return the relative path
+     */
+    public String getPath ()
+    {
+        return pathString;
+    }
+
     //---------//
     // hasData //
     //---------//
@@ -161,6 +261,42 @@ public class RunTableHolder
         setModified(modified);
     }
 
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Store the table data into the provided sheet folder, using current storage format.
+     *
+     * @param sheetFolder target sheet folder
+     * @return the path to stored data
+     * @throws IOException        on IO error
+     * @throws JAXBException      on JAXB error
+     * @throws XMLStreamException on XML error
+     */
+    public Path store (Path sheetFolder)
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        // Remove any previous data file, perhaps in a different format
+        Files.deleteIfExists(sheetFolder.resolve(pathString));
+
+        pathString = getRadix() + getExtension(constants.binaryFormat.isSet());
+
+        final Path tablePath = sheetFolder.resolve(pathString);
+        Files.deleteIfExists(tablePath);
+
+        if (constants.binaryFormat.isSet()) {
+            RunTableCodec.write(data, tablePath, constants.deflate.isSet());
+        } else {
+            data.marshal(tablePath);
+        }
+
+        setModified(false);
+
+        return tablePath;
+    }
+
     //----------//
     // toString //
     //----------//
@@ -178,4 +314,83 @@ public class RunTableHolder
         return sb.toString();
     }
 
+    //-----//
+    // map //
+    //-----//
+    /**
+     * Map the provided binary data file.
+     * <p>
+     * A file not on default file system (such as a book archive entry) cannot be mapped directly,
+     * it is thus extracted to a temporary file which is deleted as soon as possible.
+     *
+     * @param dataFile the binary data file
+     * @return the mapped run table
+     * @throws IOException on IO error
+     */
+    private RunTable map (Path dataFile)
+            throws IOException
+    {
+        if (dataFile.getFileSystem() == FileSystems.getDefault()) {
+            return RunTableCodec.map(dataFile);
+        }
+
+        final Path tempFile = Files.createTempFile(getRadix() + "-", RunTableCodec.BINARY_EXTENSION);
+
+        try {
+            Files.copy(dataFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+
+            return RunTableCodec.map(tempFile);
+        } finally {
+            try {
+                // Mapping remains valid after deletion, except on some platforms
+                Files.delete(tempFile);
+            } catch (IOException ex) {
+                tempFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    //----------//
+    // getRadix //
+    //----------//
+    private String getRadix ()
+    {
+        return pathString.substring(0, pathString.lastIndexOf('.'));
+    }
+
+    //--------------//
+    // isBinaryPath //
+    //--------------//
+    private boolean isBinaryPath ()
+    {
+        return pathString.endsWith(RunTableCodec.BINARY_EXTENSION);
+    }
+
+    //--------------//
+    // getExtension //
+    //--------------//
+    private static String getExtension (boolean binary)
+    {
+        return binary ? RunTableCodec.BINARY_EXTENSION : XML_EXTENSION;
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean binaryFormat = new Constant.Boolean(
+                true,
+                "Should we store run tables in binary format rather than XML?");
+
+        private final Constant.Boolean deflate = new Constant.Boolean(
+                false,
+                "Should we deflate binary run tables?");
+
+        private final Constant.Boolean mapTables = new Constant.Boolean(
+                true,
+                "Should we memory-map binary run tables rather than fully read them?");
+    }
 }
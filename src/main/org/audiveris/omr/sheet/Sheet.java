@@ -74,6 +74,7 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -1114,6 +1115,31 @@ public class Sheet
         return picture != null;
     }
 
+    //------------------//
+    // marshalStructure //
+    //------------------//
+    /**
+     * Marshal the sheet structure (content of sheet#n.xml) into memory.
+     * <p>
+     * This gives a snapshot of sheet structure, which can be written to disk later, while sheet
+     * processing goes on.
+     *
+     * @return the marshalled bytes
+     * @throws IOException        on IO error
+     * @throws JAXBException      on JAXB error
+     * @throws XMLStreamException on XML error
+     */
+    public byte[] marshalStructure ()
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshal(os);
+
+        return os.toByteArray();
+    }
+
     //-------//
     // print //
     //-------//
@@ -1229,16 +1255,7 @@ public class Sheet
             Files.createDirectories(sheetFolder);
 
             try (OutputStream os = Files.newOutputStream(structurePath, CREATE);) {
-                Marshaller m = getJaxbContext().createMarshaller();
-                XMLStreamWriter writer = new IndentingXMLStreamWriter(
-                        XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8"));
-
-                if (constants.useMarshalLogger.isSet()) {
-                    m.setListener(new Jaxb.MarshalLogger());
-                }
-
-                m.marshal(this, writer);
-                os.flush();
+                marshal(os);
             }
 
             stub.setModified(false);
@@ -1415,6 +1432,32 @@ public class Sheet
         lagManager = new LagManager(this);
     }
 
+    //---------//
+    // marshal //
+    //---------//
+    /**
+     * Marshal the sheet structure to the provided output stream.
+     *
+     * @param os the output stream
+     */
+    private void marshal (OutputStream os)
+            throws IOException,
+                   JAXBException,
+                   XMLStreamException
+    {
+        Marshaller m = getJaxbContext().createMarshaller();
+        XMLStreamWriter writer = new IndentingXMLStreamWriter(
+                XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8"));
+
+        if (constants.useMarshalLogger.isSet()) {
+            m.setListener(new Jaxb.MarshalLogger());
+        }
+
+        m.marshal(this, writer);
+        writer.flush();
+        os.flush();
+    }
+
     //-----------//
     // setBinary //
     //-----------//
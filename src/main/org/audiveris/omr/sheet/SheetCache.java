@@ -0,0 +1,383 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       S h e e t C a c h e                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import org.audiveris.omr.OMR;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.sheet.ui.StubsController;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class {@code SheetCache} keeps track of the sheets resident in memory, in least
+ * recently used order, and swaps out the least recently used ones when heap gets short.
+ * <p>
+ * Heap pressure is detected on the tenured heap pool(s), by means of a collection usage
+ * threshold: the pool tells whether the memory still used <b>after</b> the latest garbage
+ * collection exceeds {@code heapBudget} of the pool maximum size.
+ * No garbage collection is ever forced.
+ * <p>
+ * Eviction is never run in background, but only at safe points of sheet processing (see
+ * {@link #evict()}), and it swaps out at most one sheet at a time.
+ * A sheet is never swapped out while it is being processed, while it has a background write
+ * pending (see {@link SheetSaver}), while its book scores are being reduced, nor when it is the
+ * current sheet in GUI.
+ * If the JVM provides no suitable heap pool, sheets are simply kept resident.
+ * <p>
+ * The heap budget can be modified on the command line using:
+ * <br>{@code -option org.audiveris.omr.sheet.SheetCache.heapBudget=<ratio>}
+ *
+ * @author Hervé Bitteur
+ */
+public class SheetCache
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetCache.class);
+
+    /** Stubs with a resident sheet, from least to most recently used. */
+    private final Set<SheetStub> stubs = new LinkedHashSet<>();
+
+    /** Monitored heap pools. */
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+    /** Pin count, per book whose sheets must be kept resident. */
+    private final Map<Book, Integer> pinnedBooks = new HashMap<>();
+
+    /** Lock serializing evictions with book pinning. */
+    private final Lock evictLock = new ReentrantLock();
+
+    /**
+     * Creates the {@code SheetCache} instance.
+     */
+    private SheetCache ()
+    {
+        initialize();
+    }
+
+    //-------//
+    // evict //
+    //-------//
+    /**
+     * If heap was found short after the latest garbage collection, swap out the least
+     * recently used sheet that can be.
+     * <p>
+     * This method is meant to be called at a safe point of sheet processing, by a thread which
+     * holds no book lock.
+     * The candidate stub processing lock is acquired without waiting, and the candidate status
+     * is checked again under this lock, before the sheet is swapped.
+     */
+    public void evict ()
+    {
+        if (!isOverBudget() || !evictLock.tryLock()) {
+            return; // Not needed or already in progress
+        }
+
+        try {
+            for (SheetStub stub : getCandidates()) {
+                if (swapSafely(stub)) {
+                    return;
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class in application.
+     *
+     * @return the instance
+     */
+    public static SheetCache getInstance ()
+    {
+        return LazySingleton.INSTANCE;
+    }
+
+    //---------//
+    // pinBook //
+    //---------//
+    /**
+     * Keep all resident sheets of the provided book in memory, until {@link #unpinBook} is
+     * called.
+     * <p>
+     * This is meant for book-level processing which may modify any sheet of the book.
+     * If an eviction is in progress, this method waits for its completion.
+     *
+     * @param book the book to pin
+     */
+    public void pinBook (Book book)
+    {
+        evictLock.lock();
+
+        try {
+            synchronized (this) {
+                final Integer count = pinnedBooks.get(book);
+                pinnedBooks.put(book, (count == null) ? 1 : (count + 1));
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Forget the provided stub, whose sheet is no longer resident.
+     *
+     * @param stub the stub to forget
+     */
+    public synchronized void remove (SheetStub stub)
+    {
+        stubs.remove(stub);
+    }
+
+    //------------//
+    // removeBook //
+    //------------//
+    /**
+     * Forget all stubs of the provided book.
+     *
+     * @param book the book being closed
+     */
+    public synchronized void removeBook (Book book)
+    {
+        for (Iterator<SheetStub> it = stubs.iterator(); it.hasNext();) {
+            if (it.next().getBook() == book) {
+                it.remove();
+            }
+        }
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of resident sheets known.
+     *
+     * @return count of resident sheets
+     */
+    public synchronized int size ()
+    {
+        return stubs.size();
+    }
+
+    //-------//
+    // touch //
+    //-------//
+    /**
+     * Record the provided stub as the most recently used one.
+     *
+     * @param stub the stub whose sheet is resident
+     */
+    public synchronized void touch (SheetStub stub)
+    {
+        stubs.remove(stub);
+        stubs.add(stub);
+    }
+
+    //-----------//
+    // unpinBook //
+    //-----------//
+    /**
+     * Release one pin on the provided book.
+     *
+     * @param book the book to unpin
+     * @see #pinBook(Book)
+     */
+    public synchronized void unpinBook (Book book)
+    {
+        final Integer count = pinnedBooks.get(book);
+
+        if ((count == null) || (count <= 1)) {
+            pinnedBooks.remove(book);
+        } else {
+            pinnedBooks.put(book, count - 1);
+        }
+    }
+
+    //---------------//
+    // getCandidates //
+    //---------------//
+    /**
+     * Report the stubs whose sheet could be swapped out, from least to most recently
+     * used.
+     *
+     * @return the candidate stubs
+     */
+    private synchronized List<SheetStub> getCandidates ()
+    {
+        final List<SheetStub> candidates = new ArrayList<>();
+
+        for (SheetStub stub : stubs) {
+            if (!pinnedBooks.containsKey(stub.getBook())) {
+                candidates.add(stub);
+            }
+        }
+
+        return candidates;
+    }
+
+    //-------------//
+    // isEvictable //
+    //-------------//
+    /**
+     * Tell whether the sheet of provided stub can be swapped out.
+     *
+     * @param stub the stub to check
+     * @return true if so
+     */
+    private boolean isEvictable (SheetStub stub)
+    {
+        final SheetStub current = (OMR.gui != null) ? StubsController.getCurrentStub() : null;
+
+        return (stub != current) && (stub.getCurrentStep() == null) && stub.hasSheet()
+               && !stub.getBook().isClosing() && !SheetSaver.getInstance().isBusy(stub);
+    }
+
+    //------------//
+    // initialize //
+    //------------//
+    /**
+     * Set collection usage threshold on tenured heap pools.
+     * <p>
+     * No notification is listened to: the threshold status is simply polled by {@link #evict()}
+     * at safe points of sheet processing.
+     */
+    private void initialize ()
+    {
+        final double budget = constants.heapBudget.getValue();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // Only tenured pools support both kinds of threshold
+            if ((pool.getType() == MemoryType.HEAP) && pool.isValid()
+                        && pool.isUsageThresholdSupported()
+                        && pool.isCollectionUsageThresholdSupported()) {
+                final long max = pool.getUsage().getMax();
+
+                if (max > 0) {
+                    pool.setCollectionUsageThreshold((long) (budget * max));
+                    pools.add(pool);
+                }
+            }
+        }
+
+        if (pools.isEmpty()) {
+            logger.info("No heap pool to monitor, sheets will be kept resident");
+        }
+    }
+
+    //--------------//
+    // isOverBudget //
+    //--------------//
+    /**
+     * Tell whether memory used after the latest collection exceeds the budget.
+     *
+     * @return true if so
+     */
+    private boolean isOverBudget ()
+    {
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.isCollectionUsageThresholdExceeded()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //------------//
+    // swapSafely //
+    //------------//
+    /**
+     * Swap out the sheet of provided stub, provided that the stub is neither being
+     * processed nor waiting for a background write.
+     * <p>
+     * No book lock is held here, since storing the sheet may have to wait for the I/O thread,
+     * which needs the book lock.
+     * Holding the stub processing lock is enough to prevent any new snapshot of the sheet.
+     *
+     * @param stub the candidate stub
+     * @return true if sheet was swapped out
+     */
+    boolean swapSafely (SheetStub stub)
+    {
+        if (!isEvictable(stub) || !stub.getLock().tryLock()) {
+            return false;
+        }
+
+        try {
+            // Check again, now that stub is locked
+            if (!isEvictable(stub)) {
+                return false;
+            }
+
+            logger.debug("Heap short, swapping {} out", stub);
+            stub.swapSheet();
+
+            return true;
+        } finally {
+            stub.getLock().unlock();
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Ratio heapBudget = new Constant.Ratio(
+                0.6,
+                "Ratio of tenured heap, used after collection, beyond which sheets are swapped out");
+    }
+
+    //---------------//
+    // LazySingleton //
+    //---------------//
+    private static class LazySingleton
+    {
+
+        static final SheetCache INSTANCE = new SheetCache();
+    }
+}
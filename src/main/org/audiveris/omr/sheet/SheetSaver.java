@@ -0,0 +1,330 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       S h e e t S a v e r                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import static org.audiveris.omr.sheet.Sheet.INTERNALS_RADIX;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.ZipFileSystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Class {@code SheetSaver} stores sheets to disk in background (write-behind).
+ * <p>
+ * On the processing thread, a snapshot of the sheet is taken: the sheet structure is marshalled
+ * into memory and the modified picture tables (which are never modified once set) are recorded.
+ * Writing the snapshot into the book file is then left to the single I/O thread, so that
+ * processing can go on at once.
+ * <p>
+ * A snapshot not yet written is simply replaced by a newer snapshot of the same sheet.
+ * Writes are performed in submission order, and {@link #flush(SheetStub)} or
+ * {@link #flush(Book)} must be called before any other access to the book file.
+ *
+ * @author Hervé Bitteur
+ */
+public class SheetSaver
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetSaver.class);
+
+    /** Snapshots not yet written, per stub. */
+    private final Map<SheetStub, Snapshot> pendings = new HashMap<>();
+
+    /** Stub whose snapshot is being written, if any. */
+    private SheetStub writing;
+
+    /**
+     * Creates the {@code SheetSaver} instance.
+     */
+    private SheetSaver ()
+    {
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class in application.
+     *
+     * @return the instance
+     */
+    public static SheetSaver getInstance ()
+    {
+        return LazySingleton.INSTANCE;
+    }
+
+    //-------//
+    // flush //
+    //-------//
+    /**
+     * Wait until all snapshots of the provided book are written.
+     * <p>
+     * Since callers then access the book file, this method does not return before all writes
+     * are completed, even if interrupted. The interrupt status is restored on exit.
+     * <p>
+     * It must not be called while holding the book lock, which the I/O thread needs.
+     *
+     * @param book the book at hand
+     */
+    public synchronized void flush (Book book)
+    {
+        boolean interrupted = false;
+
+        while (isBusy(book)) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //-------//
+    // flush //
+    //-------//
+    /**
+     * Wait until all snapshots of the provided stub are written.
+     * <p>
+     * Since callers then access the book file, this method does not return before all writes
+     * are completed, even if interrupted. The interrupt status is restored on exit.
+     * <p>
+     * It must not be called while holding the book lock, which the I/O thread needs.
+     *
+     * @param stub the stub at hand
+     */
+    public synchronized void flush (SheetStub stub)
+    {
+        boolean interrupted = false;
+
+        while (isBusy(stub)) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //--------//
+    // isBusy //
+    //--------//
+    /**
+     * Tell whether the provided stub has a snapshot pending or being written.
+     *
+     * @param stub the stub at hand
+     * @return true if so
+     */
+    public synchronized boolean isBusy (SheetStub stub)
+    {
+        return pendings.containsKey(stub) || (writing == stub);
+    }
+
+    //------//
+    // save //
+    //------//
+    /**
+     * Take a snapshot of the provided stub sheet, if modified, and have it written in
+     * background.
+     * <p>
+     * This method must be called when the sheet is not being modified.
+     *
+     * @param stub the stub whose sheet is to be stored
+     */
+    public void save (final SheetStub stub)
+    {
+        if (!stub.isModified() || !stub.hasSheet()) {
+            return;
+        }
+
+        final Sheet sheet = stub.getSheet();
+        final Snapshot snapshot;
+
+        try {
+            snapshot = new Snapshot(
+                    sheet.getPicture().getModifiedTables(),
+                    sheet.marshalStructure());
+        } catch (Exception ex) {
+            logger.warn("Error in saving sheet structure " + ex, ex);
+
+            return;
+        }
+
+        // Sheet is now considered as stored, unless writing fails
+        stub.setModified(false);
+        stub.setUpgraded(false);
+
+        submit(stub, snapshot);
+    }
+
+    //--------//
+    // submit //
+    //--------//
+    /**
+     * Queue the provided snapshot, to be written on the I/O thread.
+     *
+     * @param stub     the stub at hand
+     * @param snapshot the snapshot of stub sheet
+     */
+    void submit (final SheetStub stub,
+                 Snapshot snapshot)
+    {
+        synchronized (this) {
+            if (pendings.put(stub, snapshot) != null) {
+                logger.debug("{} older snapshot replaced", stub);
+
+                return; // Already in queue
+            }
+        }
+
+        OmrExecutors.getIoExecutor().submit(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                write(stub);
+            }
+        });
+    }
+
+    //--------//
+    // isBusy //
+    //--------//
+    private boolean isBusy (Book book)
+    {
+        if ((writing != null) && (writing.getBook() == book)) {
+            return true;
+        }
+
+        for (SheetStub stub : pendings.keySet()) {
+            if (stub.getBook() == book) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the latest snapshot of provided stub into book file.
+     * This method is run on the I/O thread.
+     *
+     * @param stub the stub at hand
+     */
+    private void write (SheetStub stub)
+    {
+        final Snapshot snapshot;
+
+        synchronized (this) {
+            snapshot = pendings.remove(stub);
+            writing = stub;
+        }
+
+        final Book book = stub.getBook();
+        final Lock lock = book.getLock();
+        lock.lock();
+
+        try {
+            final Path bookPath = BookManager.getDefaultSavePath(book);
+            final Path root = ZipFileSystem.open(bookPath);
+            book.storeBookInfo(root); // Book info (book.xml)
+
+            final Path sheetFolder = root.resolve(INTERNALS_RADIX + stub.getNumber());
+            Files.createDirectories(sheetFolder);
+
+            // Picture tables
+            for (RunTableHolder holder : snapshot.tables) {
+                final Path tablePath = holder.store(sheetFolder);
+                logger.info("Stored {}", tablePath);
+            }
+
+            // Sheet structure (sheet#n.xml)
+            final Path structurePath = sheetFolder.resolve(
+                    Sheet.getSheetFileName(stub.getNumber()));
+            Files.deleteIfExists(structurePath);
+            Files.write(structurePath, snapshot.structure);
+            logger.info("Stored {}", structurePath);
+
+            root.getFileSystem().close();
+        } catch (Exception ex) {
+            logger.warn("Error in storing {} {}", stub, ex.toString(), ex);
+            stub.setModified(true); // To retry later
+        } finally {
+            lock.unlock();
+
+            synchronized (this) {
+                writing = null;
+                notifyAll();
+            }
+        }
+    }
+
+    //---------------//
+    // LazySingleton //
+    //---------------//
+    private static class LazySingleton
+    {
+
+        static final SheetSaver INSTANCE = new SheetSaver();
+    }
+
+    //----------//
+    // Snapshot //
+    //----------//
+    /**
+     * Sheet data to be written.
+     */
+    static class Snapshot
+    {
+
+        /** Picture tables to store. */
+        final List<RunTableHolder> tables;
+
+        /** Marshalled sheet structure. */
+        final byte[] structure;
+
+        Snapshot (List<RunTableHolder> tables,
+                  byte[] structure)
+        {
+            this.tables = tables;
+            this.structure = structure;
+        }
+    }
+}
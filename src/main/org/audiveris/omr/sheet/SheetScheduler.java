@@ -0,0 +1,309 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   S h e e t S c h e d u l e r                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import org.audiveris.omr.OMR;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.image.ImageLoading;
+import org.audiveris.omr.log.LogUtil;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.step.Step;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class {@code SheetScheduler} processes a collection of sheet stubs in parallel, with
+ * a bounded number of sheets in memory at any given time.
+ * <p>
+ * A small set of workers pull stubs from a shared queue, ordered by decreasing estimated cost
+ * (image pixel count), so that the largest sheets are started first and the smallest ones fill
+ * the remaining gaps at the end.
+ * As soon as a sheet has reached the target step, it is released, that is swapped out in batch
+ * mode, so that the overall memory footprint remains bounded by the number of concurrent sheets.
+ * <p>
+ * The maximum number of concurrent sheets is computed from the number of CPUs and the available
+ * heap, unless it is explicitly set via the {@code maxParallelSheets} constant, which can be
+ * defined on the command line using:
+ * <br>{@code -option org.audiveris.omr.sheet.SheetScheduler.maxParallelSheets=<n>}
+ *
+ * @author Hervé Bitteur
+ */
+public class SheetScheduler
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetScheduler.class);
+
+    /** The containing book. */
+    private final Book book;
+
+    /** The step to reach on each sheet. */
+    private final Step target;
+
+    /** Should sheets be reset and reprocessed?. */
+    private final boolean force;
+
+    /**
+     * Creates a new {@code SheetScheduler} object.
+     *
+     * @param book   the containing book
+     * @param target the step to reach on each sheet
+     * @param force  if true and step already reached, sheet is reset and processed until step
+     */
+    public SheetScheduler (Book book,
+                           Step target,
+                           boolean force)
+    {
+        this.book = book;
+        this.target = target;
+        this.force = force;
+    }
+
+    //---------//
+    // process //
+    //---------//
+    /**
+     * Reach target step on all provided stubs.
+     *
+     * @param stubs the stubs to process
+     * @return true if OK on all stubs
+     * @throws InterruptedException if interrupted while waiting for completion
+     */
+    public boolean process (List<SheetStub> stubs)
+            throws InterruptedException
+    {
+        final Map<SheetStub, Long> costs = estimateCosts(stubs);
+        final List<SheetStub> sorted = new ArrayList<>(stubs);
+        Collections.sort(sorted, new Comparator<SheetStub>()
+                 {
+                     @Override
+                     public int compare (SheetStub s1,
+                                         SheetStub s2)
+                     {
+                         // Largest first
+                         return Long.compare(costs.get(s2), costs.get(s1));
+                     }
+                 });
+
+        final int workerCount = Math.min(sorted.size(), getMaxParallelSheets(getMaxCost(costs)));
+        logger.info("Processing {} sheets, {} at a time", sorted.size(), workerCount);
+
+        final ConcurrentLinkedQueue<SheetStub> queue = new ConcurrentLinkedQueue<>(sorted);
+        final AtomicBoolean someFailure = new AtomicBoolean(false);
+        final List<Callable<Void>> workers = new ArrayList<>();
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    SheetStub stub;
+
+                    while ((stub = queue.poll()) != null) {
+                        if (!processStub(stub)) {
+                            someFailure.set(true);
+                        }
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        final List<Future<Void>> futures = OmrExecutors.getCachedLowExecutor().invokeAll(workers);
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof ProcessingCancellationException) {
+                    throw (ProcessingCancellationException) ex.getCause();
+                }
+
+                logger.warn("Future exception", ex);
+                someFailure.set(true);
+            }
+        }
+
+        return !someFailure.get();
+    }
+
+    //----------------------//
+    // getMaxParallelSheets //
+    //----------------------//
+    /**
+     * Report the maximum number of sheets to process concurrently.
+     *
+     * @param maxCost the estimated cost (pixel count) of the largest sheet, or 0 if unknown
+     * @return the maximum number of concurrent sheets, at least 1
+     */
+    public static int getMaxParallelSheets (long maxCost)
+    {
+        final int specified = constants.maxParallelSheets.getValue();
+
+        if (specified > 0) {
+            return specified;
+        }
+
+        // Limit by CPUs
+        final int byCpu = OmrExecutors.getNumberOfCpus();
+
+        // Limit by heap
+        final long maxHeap = Runtime.getRuntime().maxMemory();
+        final long perSheet = (maxCost > 0)
+                ? (long) (maxCost * constants.heapBytesPerPixel.getValue())
+                : (constants.defaultSheetHeap.getValue() * 1024L * 1024L);
+        final long byHeap = (maxHeap == Long.MAX_VALUE) ? byCpu : (maxHeap / perSheet);
+
+        return (int) Math.max(1, Math.min(byCpu, byHeap));
+    }
+
+    //---------------//
+    // estimateCosts //
+    //---------------//
+    /**
+     * Estimate the processing cost of each stub, based on its image pixel count.
+     * <p>
+     * Image dimensions are read from input file without decoding the images.
+     * If not available, a stub is given a zero cost.
+     *
+     * @param stubs the stubs to estimate
+     * @return the map of stub costs
+     */
+    private Map<SheetStub, Long> estimateCosts (List<SheetStub> stubs)
+    {
+        final Map<SheetStub, Long> costs = new HashMap<>();
+
+        for (SheetStub stub : stubs) {
+            costs.put(stub, 0L);
+        }
+
+        final ImageLoading.Loader loader = ImageLoading.getLoader(book.getInputPath());
+
+        if (loader != null) {
+            try {
+                for (SheetStub stub : stubs) {
+                    try {
+                        Dimension dim = loader.getImageDimension(stub.getNumber());
+                        costs.put(stub, (long) dim.width * dim.height);
+                    } catch (Exception ex) {
+                        logger.debug("No dimension for {} {}", stub, ex.toString());
+                    }
+                }
+            } finally {
+                loader.dispose();
+            }
+        }
+
+        return costs;
+    }
+
+    //------------//
+    // getMaxCost //
+    //------------//
+    private long getMaxCost (Map<SheetStub, Long> costs)
+    {
+        long max = 0;
+
+        for (Long cost : costs.values()) {
+            max = Math.max(max, cost);
+        }
+
+        return max;
+    }
+
+    //-------------//
+    // processStub //
+    //-------------//
+    /**
+     * Reach target step on provided stub and immediately release the sheet if in batch.
+     *
+     * @param stub the stub to process
+     * @return true if OK
+     */
+    private boolean processStub (SheetStub stub)
+    {
+        LogUtil.start(stub);
+
+        try {
+            boolean ok = stub.reachStep(target, force);
+
+            if (ok && (OMR.gui == null)) {
+                stub.releaseSheet(); // Save sheet & global book info to disk
+            }
+
+            return ok;
+        } catch (ProcessingCancellationException pce) {
+            throw pce;
+        } catch (Exception ex) {
+            // Exception (such as timeout) raised on stub
+            // Let processing continue for the other stubs
+            logger.warn("Error processing stub {} {}", stub, ex.toString(), ex);
+
+            return false;
+        } finally {
+            LogUtil.stopStub();
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxParallelSheets = new Constant.Integer(
+                "sheets",
+                0,
+                "Maximum number of sheets processed in parallel (0 for automatic)");
+
+        private final Constant.Double heapBytesPerPixel = new Constant.Double(
+                "bytes",
+                60.0,
+                "Estimated heap needed per image pixel, when processing a sheet");
+
+        private final Constant.Integer defaultSheetHeap = new Constant.Integer(
+                "MB",
+                500,
+                "Estimated heap needed per sheet, when image size is unknown");
+    }
+}
@@ -38,10 +38,10 @@ import org.audiveris.omr.sheet.ui.StubsController;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.step.Step;
 import org.audiveris.omr.step.StepException;
+import org.audiveris.omr.step.StepMetrics;
 import org.audiveris.omr.step.ui.StepMonitoring;
 import org.audiveris.omr.ui.Colors;
 import org.audiveris.omr.util.Jaxb;
-import org.audiveris.omr.util.Memory;
 import org.audiveris.omr.util.Navigable;
 import org.audiveris.omr.util.OmrExecutors;
 import org.audiveris.omr.util.StopWatch;
@@ -100,6 +100,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  * <li>{@link #hasSheet}</li>
  * <li>{@link #getSheet}</li>
  * <li>{@link #swapSheet}</li>
+ * <li>{@link #releaseSheet}</li>
  * <li>{@link #decideOnRemoval}</li>
  * <li>{@link #setModified}</li>
  * <li>{@link #isModified}</li>
@@ -604,6 +605,7 @@ public class SheetStub
                     } else {
                         // LOAD already performed: load from book file
                         StopWatch watch = new StopWatch("Load Sheet " + this);
+                        SheetSaver.getInstance().flush(this); // Pending writes if any
 
                         try {
                             Path sheetFile = null;
@@ -641,6 +643,10 @@ public class SheetStub
                             }
                         }
                     }
+
+                    if (sh != null) {
+                        SheetCache.getInstance().touch(this);
+                    }
                 }
             }
         }
@@ -861,6 +867,9 @@ public class SheetStub
             ctrl.markTab(this, ok ? Colors.SHEET_OK : Colors.SHEET_NOT_OK);
         }
 
+        // Safe point to make room if needed
+        SheetCache.getInstance().evict();
+
         return ok;
     }
 
@@ -898,6 +907,41 @@ public class SheetStub
         }
     }
 
+    //--------------//
+    // releaseSheet //
+    //--------------//
+    /**
+     * Tell that sheet material is no longer needed for processing.
+     * <p>
+     * In batch, sheet material is swapped out right away, so that the number of resident sheets
+     * remains bounded by the number of sheets processed concurrently.
+     * In interactive mode, sheet material is stored if modified, but it is left in memory until
+     * {@link SheetCache} decides to swap it out.
+     */
+    public void releaseSheet ()
+    {
+        if (OMR.gui == null) {
+            swapSheet();
+
+            return;
+        }
+
+        try {
+            if (isModified()) {
+                logger.info("{} storing", this);
+                storeSheet();
+            }
+
+            if (sheet != null) {
+                SheetCache.getInstance().touch(this);
+            }
+        } catch (Exception ex) {
+            logger.warn("Error releasing sheet", ex);
+        }
+
+        SheetCache.getInstance().evict();
+    }
+
     //---------------//
     // resetToBinary //
     //---------------//
@@ -924,6 +968,7 @@ public class SheetStub
 
             doReset();
             sheet = new Sheet(this, binaryTable);
+            SheetCache.getInstance().touch(this);
             logger.info("Sheet#{} reset to BINARY.", number);
         } catch (Throwable ex) {
             logger.warn("Could not reset to BINARY {}", ex.toString(), ex);
@@ -936,12 +981,22 @@ public class SheetStub
     //------------//
     /**
      * Store sheet material into book.
+     * <p>
+     * This method must not be called while holding the book lock: it first waits for the
+     * background writes of this sheet, and the I/O thread needs the book lock to perform them.
      *
      * @throws Exception if storing fails
      */
     public void storeSheet ()
             throws Exception
     {
+        if (((ReentrantLock) book.getLock()).isHeldByCurrentThread()) {
+            throw new IllegalStateException("storeSheet called while holding book lock");
+        }
+
+        // Let background writes complete first
+        SheetSaver.getInstance().flush(this);
+
         if (modified) {
             final Lock lock = book.getLock();
             lock.lock();
@@ -966,6 +1021,8 @@ public class SheetStub
     /**
      * Swap sheet material.
      * If modified and not discarded, sheet material will be stored before being disposed of.
+     * <p>
+     * Like {@link #storeSheet()}, this method must not be called while holding the book lock.
      */
     public void swapSheet ()
     {
@@ -978,7 +1035,7 @@ public class SheetStub
             if (sheet != null) {
                 logger.info("{} disposed", sheet);
                 sheet = null;
-                Memory.gc(); // Trigger a garbage collection...
+                SheetCache.getInstance().remove(this);
             }
 
             if (OMR.gui != null) {
@@ -1098,7 +1155,19 @@ public class SheetStub
                         StepMonitoring.notifyStep(SheetStub.this, step); // Start monitoring
                         setModified(true); // At beginning of processing
                         sheet.reset(step); // Reset sheet relevant data
-                        step.doit(sheet); // Standard processing on an existing sheet
+
+                        final StepMetrics.Measure measure = StepMetrics.start(
+                                SheetStub.this,
+                                step);
+
+                        try {
+                            step.doit(sheet); // Standard processing on an existing sheet
+                        } finally {
+                            if (measure != null) {
+                                measure.stop();
+                            }
+                        }
+
                         done(step); // Full completion
                     } finally {
                         LogUtil.stopStub();
@@ -1110,10 +1179,10 @@ public class SheetStub
 
             future.get(timeout, TimeUnit.SECONDS);
 
-            // At end of each step, save sheet to disk?
+            // At end of each step, save sheet to disk (in background)?
             if ((OMR.gui == null) && Main.getCli().isSave()) {
-                logger.debug("calling storeSheet");
-                storeSheet();
+                logger.debug("calling save");
+                SheetSaver.getInstance().save(this);
             }
         } catch (TimeoutException tex) {
             logger.warn("Timeout {} seconds for step {}", timeout, step, tex);
@@ -1139,6 +1208,7 @@ public class SheetStub
         pageRefs.clear();
         invalid = false;
         sheet = null;
+        SheetCache.getInstance().remove(this);
 
         if (assembly != null) {
             assembly.reset();
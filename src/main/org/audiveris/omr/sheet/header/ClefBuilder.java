@@ -244,6 +244,7 @@ public class ClefBuilder
             SimpleGraph<Glyph, GlyphLink> subGraph = GlyphCluster.getSubGraph(set, graph, false);
             ClefAdapter adapter = new ClefAdapter(subGraph, bestMap);
             new GlyphCluster(adapter, null).decompose();
+            adapter.evaluateCandidates();
 
             int trials = adapter.trials;
             logger.debug("Staff#{} clef parts:{} trials:{}", staff.getId(), set.size(), trials);
@@ -502,6 +503,7 @@ public class ClefBuilder
     /**
      * Handles the integration between glyph clustering class and clef environment.
      * <p>
+     * Glyphs are gathered during cluster decomposition and then evaluated as one batch.
      * For each clef kind, we keep the best result found if any.
      */
     private class ClefAdapter
@@ -511,6 +513,9 @@ public class ClefBuilder
         /** Best inter per clef kind. */
         private final Map<ClefKind, ClefInter> bestMap;
 
+        /** Glyphs waiting for evaluation. */
+        private final List<Glyph> candidates = new ArrayList<>();
+
         ClefAdapter (SimpleGraph<Glyph, GlyphLink> graph,
                      Map<ClefKind, ClefInter> bestMap)
         {
@@ -529,29 +534,47 @@ public class ClefBuilder
             }
 
             glyphCandidates.add(glyph);
+            candidates.add(glyph);
 
             logger.debug("ClefAdapter evaluateGlyph on {}", glyph);
+        }
 
-            Evaluation[] evals = classifier.evaluate(
-                    glyph,
+        /**
+         * Evaluate all gathered glyphs as one batch, and update the best clef map.
+         */
+        public void evaluateCandidates ()
+        {
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            final Evaluation[][] evalsArray = classifier.evaluate(
+                    candidates,
+                    null,
                     staff.getSpecificInterline(),
                     params.maxEvalRank,
                     Grades.clefMinGrade / Grades.intrinsicRatio,
                     null);
 
-            for (Evaluation eval : evals) {
-                final Shape shape = eval.shape;
+            for (int i = 0; i < evalsArray.length; i++) {
+                final Glyph glyph = candidates.get(i);
 
-                if (HEADER_CLEF_SHAPES.contains(shape)) {
-                    final double grade = Grades.intrinsicRatio * eval.grade;
-                    ClefKind kind = ClefInter.kindOf(glyph.getCenter(), shape, staff);
-                    ClefInter bestInter = bestMap.get(kind);
+                for (Evaluation eval : evalsArray[i]) {
+                    final Shape shape = eval.shape;
 
-                    if ((bestInter == null) || (bestInter.getGrade() < grade)) {
-                        bestMap.put(kind, ClefInter.create(glyph, shape, grade, staff));
+                    if (HEADER_CLEF_SHAPES.contains(shape)) {
+                        final double grade = Grades.intrinsicRatio * eval.grade;
+                        ClefKind kind = ClefInter.kindOf(glyph.getCenter(), shape, staff);
+                        ClefInter bestInter = bestMap.get(kind);
+
+                        if ((bestInter == null) || (bestInter.getGrade() < grade)) {
+                            bestMap.put(kind, ClefInter.create(glyph, shape, grade, staff));
+                        }
                     }
                 }
             }
+
+            candidates.clear();
         }
 
         @Override
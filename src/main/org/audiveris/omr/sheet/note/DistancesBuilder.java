@@ -31,7 +31,10 @@ import org.audiveris.omr.glyph.GlyphGroup;
 import org.audiveris.omr.image.ChamferDistance;
 import org.audiveris.omr.image.DistanceTable;
 import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.sheet.Picture;
+import org.audiveris.omr.sheet.Scale;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.sheet.Staff;
 import org.audiveris.omr.sheet.SystemInfo;
@@ -51,14 +54,22 @@ import static org.audiveris.omr.util.HorizontalSide.RIGHT;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.Iterator;
 import java.util.List;
 import java.util.SortedMap;
 
 /**
  * Class {@code DistancesBuilder} provides the distance table to be used for notes
  * retrieval.
+ * <p>
+ * The table can cover the whole sheet, or just the area of a given system (augmented by some
+ * margin), so that the table of a system can be released as soon as the system is processed.
+ * A table is always expressed in its own coordinates, see {@link #getOrigin()} to translate
+ * sheet coordinates.
  *
  * @author Hervé Bitteur
  */
@@ -75,6 +86,9 @@ public class DistancesBuilder
     /** Table of distances to fore. */
     private DistanceTable table;
 
+    /** Table bounds, in sheet coordinates. */
+    private Rectangle bounds;
+
     /**
      * Creates a new {@code DistancesBuilder} object.
      *
@@ -98,6 +112,7 @@ public class DistancesBuilder
         // Compute the distance-to-foreground transform image
         Picture picture = sheet.getPicture();
         ByteProcessor buffer = picture.getSource(Picture.SourceKey.BINARY);
+        bounds = new Rectangle(0, 0, buffer.getWidth(), buffer.getHeight());
         table = new ChamferDistance.Short().computeToFore(buffer);
 
         // "Erase" staff lines, ledgers, stems
@@ -122,12 +137,130 @@ public class DistancesBuilder
         return table;
     }
 
+    //----------------//
+    // buildDistances //
+    //----------------//
+    /**
+     * Build the table of distances, limited to the area of the provided system.
+     * <p>
+     * The table covers the system bounds, augmented by {@code systemMargin} on every side and
+     * limited to sheet image.
+     *
+     * @param system the system to process
+     * @return the table of distance values, whose origin is given by {@link #getOrigin()}
+     */
+    public DistanceTable buildDistances (SystemInfo system)
+    {
+        final Picture picture = sheet.getPicture();
+        final ByteProcessor source = picture.getSource(Picture.SourceKey.BINARY);
+        final int margin = sheet.getScale().toPixels(constants.systemMargin);
+        final Rectangle roi = system.getBounds();
+        roi.grow(margin, margin);
+        bounds = roi.intersection(new Rectangle(0, 0, source.getWidth(), source.getHeight()));
+
+        // Compute the distance-to-foreground transform image, on system area only
+        table = new ChamferDistance.Short().computeToFore(crop(source, bounds));
+
+        // "Erase" staff lines, ledgers, stems
+        paintLines();
+
+        return table;
+    }
+
+    //-----------//
+    // getOrigin //
+    //-----------//
+    /**
+     * Report the location, in sheet, of the origin of the table last built.
+     * <p>
+     * A sheet location (x,y) is found at (x - origin.x, y - origin.y) in table.
+     *
+     * @return table origin in sheet, (0,0) for a whole sheet table
+     */
+    public Point getOrigin ()
+    {
+        return bounds.getLocation();
+    }
+
+    //-------------//
+    // isPerSystem //
+    //--------------//
+    /**
+     * Tell whether the distance tables are to be built per system rather than for the whole
+     * sheet.
+     * <p>
+     * A whole sheet table is always built when templates are to be displayed.
+     *
+     * @return true for system tables
+     */
+    public static boolean isPerSystem ()
+    {
+        return constants.perSystem.isSet()
+                       && !((OMR.gui != null) && constants.displayTemplates.isSet());
+    }
+
+    //------//
+    // crop //
+    //------//
+    /**
+     * Copy the provided area of source image.
+     *
+     * @param source the source image
+     * @param roi    the area to copy, which must lie within source bounds
+     * @return the copy
+     */
+    private static ByteProcessor crop (ByteProcessor source,
+                                       Rectangle roi)
+    {
+        final ByteProcessor buffer = new ByteProcessor(roi.width, roi.height);
+        final byte[] src = (byte[]) source.getPixels();
+        final byte[] dst = (byte[]) buffer.getPixels();
+        final int srcWidth = source.getWidth();
+
+        for (int y = 0; y < roi.height; y++) {
+            System.arraycopy(src, ((roi.y + y) * srcWidth) + roi.x, dst, y * roi.width, roi.width);
+        }
+
+        return buffer;
+    }
+
     //------------//
     // paintGlyph //
     //------------//
     private void paintGlyph (Glyph glyph)
     {
-        glyph.getRunTable().render(table, ChamferDistance.VALUE_UNKNOWN, glyph.getTopLeft());
+        final Rectangle glyphBox = glyph.getBounds();
+
+        if (!bounds.intersects(glyphBox)) {
+            return;
+        }
+
+        final RunTable runTable = glyph.getRunTable();
+        final Point topLeft = glyph.getTopLeft();
+
+        if (bounds.contains(glyphBox)) {
+            topLeft.translate(-bounds.x, -bounds.y);
+            runTable.render(table, ChamferDistance.VALUE_UNKNOWN, topLeft);
+
+            return;
+        }
+
+        // Glyph partly out of table
+        final boolean horizontal = runTable.getOrientation() == Orientation.HORIZONTAL;
+
+        for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
+            for (Iterator<Run> it = runTable.iterator(iSeq); it.hasNext();) {
+                final Run run = it.next();
+
+                for (int c = run.getStart(); c <= run.getStop(); c++) {
+                    if (horizontal) {
+                        paintPixel(topLeft.x + c, topLeft.y + iSeq);
+                    } else {
+                        paintPixel(topLeft.x + iSeq, topLeft.y + c);
+                    }
+                }
+            }
+        }
     }
 
     //------------//
@@ -146,6 +279,11 @@ public class DistancesBuilder
                 for (LineInfo line : staff.getLines()) {
                     // Paint the line glyph
                     Glyph glyph = line.getGlyph();
+
+                    if (!bounds.intersects(glyph.getBounds())) {
+                        continue;
+                    }
+
                     paintGlyph(glyph);
 
                     // Also paint this line even at crossings with vertical objects
@@ -161,7 +299,7 @@ public class DistancesBuilder
                         int yMax = (int) Math.rint(yl + halfLine);
 
                         for (int y = yMin; y <= yMax; y++) {
-                            table.setValue(x, y, ChamferDistance.VALUE_UNKNOWN);
+                            paintPixel(x, y);
                         }
                     }
                 }
@@ -185,6 +323,23 @@ public class DistancesBuilder
         }
     }
 
+    //------------//
+    // paintPixel //
+    //------------//
+    /**
+     * Paint the provided sheet location, if within table, with the special value.
+     *
+     * @param x sheet abscissa
+     * @param y sheet ordinate
+     */
+    private void paintPixel (int x,
+                             int y)
+    {
+        if (bounds.contains(x, y)) {
+            table.setValue(x - bounds.x, y - bounds.y, ChamferDistance.VALUE_UNKNOWN);
+        }
+    }
+
     //-----------//
     // Constants //
     //-----------//
@@ -195,5 +350,13 @@ public class DistancesBuilder
         private final Constant.Boolean displayTemplates = new Constant.Boolean(
                 false,
                 "Should we display the templates tab?");
+
+        private final Constant.Boolean perSystem = new Constant.Boolean(
+                true,
+                "Should we build one distance table per system rather than per sheet?");
+
+        private final Scale.Fraction systemMargin = new Scale.Fraction(
+                3.0,
+                "Margin around system bounds for a system distance table");
     }
 }
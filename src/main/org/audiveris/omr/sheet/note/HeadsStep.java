@@ -31,6 +31,7 @@ import org.audiveris.omr.step.StepException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Point;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +39,9 @@ import java.util.Map;
  * Class {@code HeadsStep} implements <b>HEADS</b> step, which uses distance matching
  * technique to retrieve all possible interpretations of note heads (black and void) or
  * whole notes, but no rest notes.
+ * <p>
+ * The distance table is built either once for the whole sheet, or for each system in turn so
+ * that it can be released as soon as the system is processed.
  *
  * @author Hervé Bitteur
  */
@@ -63,7 +67,16 @@ public class HeadsStep
             throws StepException
     {
         final List<Glyph> spots = context.sheetSpots.get(system);
-        new NoteHeadsBuilder(system, context.distanceTable, spots).buildHeads();
+
+        if (context.distanceTable != null) {
+            new NoteHeadsBuilder(system, context.distanceTable, new Point(0, 0), spots)
+                    .buildHeads();
+        } else {
+            // Distance table limited to system area
+            final DistancesBuilder builder = new DistancesBuilder(system.getSheet());
+            final DistanceTable distances = builder.buildDistances(system);
+            new NoteHeadsBuilder(system, distances, builder.getOrigin(), spots).buildHeads();
+        }
     }
 
     //----------//
@@ -74,7 +87,9 @@ public class HeadsStep
             throws StepException
     {
         // Build proper distance table and make it available for system-level processing
-        DistanceTable distances = new DistancesBuilder(sheet).buildDistances();
+        // (unless tables are to be built per system)
+        DistanceTable distances = DistancesBuilder.isPerSystem() ? null
+                : new DistancesBuilder(sheet).buildDistances();
 
         // Retrieve spots for (black) notes
         Map<SystemInfo, List<Glyph>> sheetSpots = new HeadSpotsBuilder(sheet).getSpots();
@@ -92,7 +107,7 @@ public class HeadsStep
     {
 
         /**
-         * Table of distances.
+         * Table of distances for the whole sheet, null if built per system.
          */
         public final DistanceTable distanceTable;
 
@@ -32,6 +32,7 @@ import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.glyph.ShapeSet;
 import org.audiveris.omr.image.Anchored.Anchor;
 import static org.audiveris.omr.image.Anchored.Anchor.*;
+import org.audiveris.omr.image.CompiledTemplate;
 import org.audiveris.omr.image.DistanceTable;
 import org.audiveris.omr.image.PixelDistance;
 import org.audiveris.omr.image.ShapeDescriptor;
@@ -81,9 +82,12 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.audiveris.omr.sig.inter.AbstractNoteInter;
 
@@ -148,6 +152,9 @@ public class NoteHeadsBuilder
     /** The distance table to use. */
     private final DistanceTable distances;
 
+    /** Location in sheet of distance table origin. */
+    private final Point origin;
+
     /** The note-oriented spots for this system. */
     private final List<Glyph> systemSpots;
 
@@ -184,6 +191,9 @@ public class NoteHeadsBuilder
     /** All void note templates for this sheet. */
     private final EnumSet<Shape> sheetVoidTemplateNotes;
 
+    /** Templates compiled on distance table, for range lookup. */
+    private final Map<Template, CompiledTemplate> compiledTemplates = new HashMap<>();
+
     // Debug
     private final Perf seedsPerf = new Perf();
 
@@ -194,14 +204,17 @@ public class NoteHeadsBuilder
      *
      * @param system      the system to process
      * @param distances   the distance table
+     * @param origin      location in sheet of distance table origin
      * @param systemSpots spots detected for this system
      */
     public NoteHeadsBuilder (SystemInfo system,
                              DistanceTable distances,
+                             Point origin,
                              List<Glyph> systemSpots)
     {
         this.system = system;
         this.distances = distances;
+        this.origin = origin;
         this.systemSpots = systemSpots;
 
         sig = system.getSig();
@@ -1053,10 +1066,21 @@ public class NoteHeadsBuilder
         //------//
         // eval //
         //------//
+        /**
+         * Evaluate the provided shape at provided location.
+         *
+         * @param shape  the shape to evaluate
+         * @param x      location abscissa
+         * @param y      location ordinate
+         * @param anchor location WRT template
+         * @param dist   distance precomputed at location, or NaN
+         * @return the location with its distance, or null if location is not relevant
+         */
         private PixelDistance eval (Shape shape,
                                     int x,
                                     int y,
-                                    Anchor anchor)
+                                    Anchor anchor,
+                                    double dist)
         {
             final ShapeDescriptor desc = catalog.getDescriptor(shape);
             final Rectangle symBox = desc.getSymbolBoundsAt(x, y, anchor);
@@ -1084,7 +1108,9 @@ public class NoteHeadsBuilder
             }
 
             // Then try (all variants for) the shape and keep the best dist
-            double dist = desc.evaluate(x, y, anchor, distances);
+            if (Double.isNaN(dist)) {
+                dist = desc.evaluate(x - origin.x, y - origin.y, anchor, distances);
+            }
 
             if (useSeeds) {
                 seedsPerf.evals++;
@@ -1112,7 +1138,11 @@ public class NoteHeadsBuilder
                                        Anchor anchor)
         {
             final ShapeDescriptor desc = catalog.getDescriptor(Shape.NOTEHEAD_VOID);
-            final double holeWhiteRatio = desc.evaluateHole(x, y, anchor, distances);
+            final double holeWhiteRatio = desc.evaluateHole(
+                    x - origin.x,
+                    y - origin.y,
+                    anchor,
+                    distances);
 
             if (holeWhiteRatio >= constants.minHoleWhiteRatio.getValue()) {
                 return Shape.NOTEHEAD_VOID;
@@ -1247,9 +1277,25 @@ public class NoteHeadsBuilder
             }
             // Use the note spots to limit the abscissae to be checked for blacks
             boolean[] blackRelevants = getRelevantBlackAbscissae(scanLeft, scanRight);
+            // Theoretical ordinates, to split range into segments of constant ordinate
+            final int[] ordinates = new int[scanRight - scanLeft + 1];
+            for (int x = scanLeft; x <= scanRight; x++) {
+                ordinates[x - scanLeft] = getTheoreticalOrdinate(x);
+            }
+            RowScores scores = null;
             // Scan from left to right
             for (int x0 = scanLeft; x0 <= scanRight; x0++) {
-                final int y0 = getTheoreticalOrdinate(x0);
+                final int y0 = ordinates[x0 - scanLeft];
+
+                if ((scores == null) || (scores.y0 != y0)) {
+                    int xStop = x0;
+
+                    while ((xStop < scanRight) && (ordinates[xStop + 1 - scanLeft] == y0)) {
+                        xStop++;
+                    }
+
+                    scores = new RowScores(x0, xStop, y0);
+                }
 
                 // Shapes to try depend on whether location belongs to a black spot
                 EnumSet<Shape> shapeSet = blackRelevants[x0 - scanLeft] ? sheetTemplateNotes
@@ -1258,9 +1304,14 @@ public class NoteHeadsBuilder
                 for (Shape shape : shapeSet) {
                     PixelDistance bestLoc = null;
 
-                    for (int yOffset : yOffsets) {
-                        final int y = y0 + yOffset;
-                        PixelDistance loc = eval(shape, x0, y, MIDDLE_LEFT);
+                    for (int iy = 0; iy < yOffsets.length; iy++) {
+                        final int y = y0 + yOffsets[iy];
+                        PixelDistance loc = eval(
+                                shape,
+                                x0,
+                                y,
+                                MIDDLE_LEFT,
+                                scores.getDistance(shape, iy, x0));
 
                         if ((loc != null) && (loc.d <= params.maxDistanceLow)) {
                             if ((bestLoc == null) || (bestLoc.d > loc.d)) {
@@ -1356,7 +1407,7 @@ public class NoteHeadsBuilder
 
                             for (int xOffset : xOffsets) {
                                 final int x = x0 + xOffset;
-                                PixelDistance loc = eval(shape, x, y, anchor);
+                                PixelDistance loc = eval(shape, x, y, anchor, Double.NaN);
 
                                 if ((loc != null) && (loc.d <= params.maxDistanceLow)) {
                                     if ((bestLoc == null) || (bestLoc.d > loc.d)) {
@@ -1406,6 +1457,92 @@ public class NoteHeadsBuilder
 
             return inters;
         }
+
+        //-----------//
+        // RowScores //
+        //-----------//
+        /**
+         * Template distances for a segment of abscissae sharing the same theoretical
+         * ordinate, computed lazily one whole row at a time.
+         */
+        private class RowScores
+        {
+
+            /** First abscissa. */
+            final int xFrom;
+
+            /** Last abscissa. */
+            final int xTo;
+
+            /** Theoretical ordinate. */
+            final int y0;
+
+            /** Distances per shape, per ordinate offset index, per abscissa. */
+            final Map<Shape, double[][]> rows = new EnumMap<>(Shape.class);
+
+            RowScores (int xFrom,
+                       int xTo,
+                       int y0)
+            {
+                this.xFrom = xFrom;
+                this.xTo = xTo;
+                this.y0 = y0;
+            }
+
+            /**
+             * Report the distance for shape at location (x, y0 + yOffsets[iy]).
+             *
+             * @param shape the shape evaluated
+             * @param iy    index in yOffsets
+             * @param x     abscissa within segment
+             * @return the distance
+             */
+            double getDistance (Shape shape,
+                                int iy,
+                                int x)
+            {
+                double[][] shapeRows = rows.get(shape);
+
+                if (shapeRows == null) {
+                    rows.put(shape, shapeRows = new double[yOffsets.length][]);
+                }
+
+                double[] row = shapeRows[iy];
+
+                if (row == null) {
+                    row = shapeRows[iy] = new double[xTo - xFrom + 1];
+                    getCompiledTemplate(shape).evaluateRow(
+                            (y0 + yOffsets[iy]) - origin.y,
+                            xFrom - origin.x,
+                            xTo - origin.x,
+                            row);
+                }
+
+                return row[x - xFrom];
+            }
+        }
+    }
+
+    //---------------------//
+    // getCompiledTemplate //
+    //---------------------//
+    /**
+     * Report the template of provided shape in current catalog, compiled on distance table
+     * for MIDDLE_LEFT anchor.
+     *
+     * @param shape the template shape
+     * @return the compiled template
+     */
+    private CompiledTemplate getCompiledTemplate (Shape shape)
+    {
+        final Template template = catalog.getDescriptor(shape).getTemplate();
+        CompiledTemplate compiled = compiledTemplates.get(template);
+
+        if (compiled == null) {
+            compiledTemplates.put(template, compiled = template.compile(MIDDLE_LEFT, distances));
+        }
+
+        return compiled;
     }
 
     //------------------//
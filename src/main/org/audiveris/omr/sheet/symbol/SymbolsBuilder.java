@@ -95,6 +95,12 @@ public class SymbolsBuilder
     /** Scale-dependent global constants. */
     private final Parameters params;
 
+    /** Glyphs waiting for evaluation. */
+    private final List<Glyph> candidates = new ArrayList<>();
+
+    /** Closest staff of each candidate. */
+    private final List<Staff> candidateStaves = new ArrayList<>();
+
     /**
      * Creates a new SymbolsBuilder object.
      *
@@ -129,9 +135,11 @@ public class SymbolsBuilder
      *       + cluster.decompose()                      // Decompose cluster into all subsets
      *       + FOREACH subset process(subset):
      *          - build compound glyph                  // Build one compound glyph per subset
-     *          - evaluateGlyph(compound)               // Run shape classifier on compound
-     *          - FOREACH acceptable evaluation
-     *             + symbolFactory.create(eval, glyph)  // Create inter(s) related to evaluation
+     *          - addCandidate(compound)                // Register compound for evaluation
+     *    + evaluateCandidates():                       // By batches of candidates
+     *       + classifier.evaluate(candidates)          // Run shape classifier on the batch
+     *       + FOREACH candidate
+     *          - symbolFactory.create(eval, glyph)     // Create inter related to best evaluation
      * </pre>
      *
      * @param optionalsMap the optional (weak) glyphs per system
@@ -164,24 +172,26 @@ public class SymbolsBuilder
         }
     }
 
-    //---------------//
-    // evaluateGlyph //
-    //---------------//
+    //--------------//
+    // addCandidate //
+    //--------------//
     /**
-     * Evaluate a provided glyph and create all acceptable inter instances.
+     * Register a provided glyph for evaluation.
+     * <p>
+     * Candidates are evaluated by batches, whenever enough of them have been gathered.
      *
      * @param glyph the glyph to evaluate
      */
-    private void evaluateGlyph (Glyph glyph)
+    private void addCandidate (Glyph glyph)
     {
         if (glyph.getId() == 0) {
             glyph = sheet.getGlyphIndex().registerOriginal(glyph);
         }
 
-        logger.debug("evaluateGlyph on {}", glyph);
+        logger.debug("addCandidate {}", glyph);
 
         if (glyph.isVip()) {
-            logger.info("VIP evaluateGlyph on {}", glyph);
+            logger.info("VIP addCandidate {}", glyph);
         }
 
         final Point center = glyph.getCenter();
@@ -191,42 +201,53 @@ public class SymbolsBuilder
             return;
         }
 
+        candidates.add(glyph);
+        candidateStaves.add(closestStaff);
+
+        if (candidates.size() >= constants.maxBatchSize.getValue()) {
+            evaluateCandidates();
+        }
+    }
+
+    //--------------------//
+    // evaluateCandidates //
+    //--------------------//
+    /**
+     * Evaluate all pending candidates as one batch and create acceptable inter instances,
+     * in candidates order.
+     */
+    private void evaluateCandidates ()
+    {
+        if (candidates.isEmpty()) {
+            return;
+        }
+
         // TODO: checks should be run only AFTER both classifiers have been run
-        Evaluation[] evals = classifier.evaluate(
-                glyph,
+        final Evaluation[][] evalsArray = classifier.evaluate(
+                candidates,
                 system,
+                sheet.getInterline(),
                 2,
                 Grades.symbolMinGrade,
                 EnumSet.of(Classifier.Condition.CHECKED));
 
-        //        Evaluation[] evals2 = classifier2.evaluate(
-        //                glyph,
-        //                system,
-        //                2,
-        //                Grades.symbolMinGrade, // Not OK for deep classifier!
-        //                EnumSet.of(Classifier.Condition.CHECKED));
-        //
-        if (evals.length > 0) {
-            //            // Create one interpretation for each acceptable evaluation
-            //            for (Evaluation eval : evals) {
-            //                try {
-            //                    factory.create(eval, glyph, closestStaff);
-            //                } catch (Exception ex) {
-            //                    logger.warn("Error in glyph evaluation " + ex, ex);
-            //                }
-            //            }
-            //
-            Evaluation eval = evals[0];
-
-            ///if (evals2.length > 0 && eval.shape == evals2[0].shape) {
-            try {
-                factory.create(eval, glyph, closestStaff);
-            } catch (Exception ex) {
-                logger.warn("Error in glyph evaluation " + ex, ex);
-            }
+        for (int i = 0; i < evalsArray.length; i++) {
+            final Evaluation[] evals = evalsArray[i];
+
+            if (evals.length > 0) {
+                final Glyph glyph = candidates.get(i);
+                logger.debug("evaluated {} as {}", glyph, evals[0]);
 
-            ///}
+                try {
+                    factory.create(evals[0], glyph, candidateStaves.get(i));
+                } catch (Exception ex) {
+                    logger.warn("Error in glyph evaluation " + ex, ex);
+                }
+            }
         }
+
+        candidates.clear();
+        candidateStaves.clear();
     }
 
     //------------------//
@@ -340,10 +361,12 @@ public class SymbolsBuilder
                 final Glyph glyph = set.iterator().next();
 
                 if (classifier.isBigEnough(glyph, interline)) {
-                    evaluateGlyph(glyph);
+                    addCandidate(glyph);
                 }
             }
         }
+
+        evaluateCandidates();
     }
 
     //-------------------//
@@ -383,7 +406,7 @@ public class SymbolsBuilder
         public void evaluateGlyph (Glyph glyph,
                                    Set<Glyph> parts)
         {
-            SymbolsBuilder.this.evaluateGlyph(glyph);
+            addCandidate(glyph);
         }
 
         @Override
@@ -422,6 +445,11 @@ public class SymbolsBuilder
                 false,
                 "Should we print out the stop watch?");
 
+        private final Constant.Integer maxBatchSize = new Constant.Integer(
+                "Glyphs",
+                256,
+                "Maximum number of glyphs evaluated as one batch");
+
         private final Constant.Integer maxPartCount = new Constant.Integer(
                 "Glyphs",
                 7,
@@ -31,7 +31,7 @@ import org.audiveris.omr.image.AdaptiveDescriptor;
 import org.audiveris.omr.image.AdaptiveFilter.AdaptiveContext;
 import org.audiveris.omr.image.FilterDescriptor;
 import org.audiveris.omr.image.PixelFilter;
-import org.audiveris.omr.image.RandomFilter;
+import org.audiveris.omr.image.VerticalFilter;
 import org.audiveris.omr.sheet.Picture;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.ui.Board;
@@ -144,7 +144,7 @@ public class BinarizationBoard
                 PixelFilter filter = desc.getFilter(source);
 
                 if (filter == null) {
-                    filter = new RandomFilter(
+                    filter = new VerticalFilter(
                             source,
                             AdaptiveDescriptor.getDefaultMeanCoeff(),
                             AdaptiveDescriptor.getDefaultStdDevCoeff());
@@ -28,6 +28,7 @@ import org.audiveris.omr.lag.Lag;
 import org.audiveris.omr.log.LogUtil;
 import org.audiveris.omr.sheet.Book;
 import org.audiveris.omr.sheet.Sheet;
+import org.audiveris.omr.sheet.SheetCache;
 import org.audiveris.omr.sheet.SheetStub;
 import org.audiveris.omr.step.Step;
 import org.audiveris.omr.ui.Colors;
@@ -653,6 +654,10 @@ public class StubsController
             // This is the new current stub
             callAboutStub(stub);
 
+            if (stub.hasSheet()) {
+                SheetCache.getInstance().touch(stub);
+            }
+
             reDisplay(stub);
         }
     }
@@ -783,6 +788,8 @@ public class StubsController
                 stub.getLock().unlock();
                 LogUtil.stopStub();
             }
+
+            SheetCache.getInstance().evict(); // Room for the sheet just loaded
         } else {
             logger.debug("{} currently busy, checkStubStatus giving up.", stub);
         }
@@ -29,15 +29,15 @@ import org.audiveris.omr.sig.inter.AbstractInter;
 import org.audiveris.omr.sig.inter.HeadInter;
 import org.audiveris.omr.sig.inter.Inter;
 import org.audiveris.omr.sig.inter.Inters;
-import org.audiveris.omr.sig.inter.Inters.ClassPredicate;
-import org.audiveris.omr.sig.inter.Inters.ClassesPredicate;
 import org.audiveris.omr.sig.inter.StemInter;
 import org.audiveris.omr.sig.relation.Exclusion;
 import org.audiveris.omr.sig.relation.Exclusion.Cause;
 import org.audiveris.omr.sig.relation.Relation;
 import org.audiveris.omr.sig.relation.Support;
+import org.audiveris.omr.util.IndexedMaxHeap;
 import org.audiveris.omr.util.Navigable;
 import org.audiveris.omr.util.Predicate;
+import org.audiveris.omr.util.SpatialIndex;
 
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.Graphs;
@@ -55,7 +55,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -86,6 +88,21 @@ public class SIGraph
     /** Content for differed populating after unmarshalling. */
     private SigValue sigValue;
 
+    /** Spatial index on inters bounds, for lookups by location. */
+    private final SpatialIndex<Inter> spatialIndex = new SpatialIndex<>();
+
+    /** Exclusions being reduced, if any. */
+    private ExclusionQueue exclusionQueue;
+
+    /** Live sets of vertices, per queried set of shapes. Built on first query. */
+    private final Map<Set<Shape>, Set<Inter>> shapeQueries = new HashMap<>();
+
+    /** Live sets of vertices, per queried list of classes. Built on first query. */
+    private final Map<List<Class>, Set<Inter>> classQueries = new HashMap<>();
+
+    /** Lock on vertex mutations and on live sets, since queries may come from any thread. */
+    private final Object queriesLock = new Object();
+
     /**
      * Creates a new SIGraph object at system level.
      *
@@ -140,9 +157,18 @@ public class SIGraph
         }
 
         // Update sig
-        boolean added = super.addVertex(inter);
+        final boolean added;
+
+        synchronized (queriesLock) {
+            added = super.addVertex(inter);
+
+            if (added) {
+                indexVertex(inter);
+            }
+        }
 
         if (added) {
+            spatialIndex.insert(inter);
             inter.setSig(this);
 
             // Additional actions
@@ -177,6 +203,23 @@ public class SIGraph
         }
     }
 
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Signal that the bounds of the provided inter have changed.
+     *
+     * @param inter the modified inter
+     */
+    public void boundsChanged (Inter inter)
+    {
+        spatialIndex.invalidate(inter);
+
+        if (system != null) {
+            system.getSheet().getInterIndex().boundsChanged(inter);
+        }
+    }
+
     //------------------------//
     // computeContextualGrade //
     //------------------------//
@@ -208,19 +251,7 @@ public class SIGraph
      */
     public List<Inter> containedInters (Rectangle rect)
     {
-        List<Inter> found = new ArrayList<>();
-
-        for (Inter inter : vertexSet()) {
-            final Rectangle box = inter.getBounds();
-
-            if (box == null) {
-                logger.error("No bounds for {}", inter);
-            } else if (rect.contains(box)) {
-                found.add(inter);
-            }
-        }
-
-        return found;
+        return spatialIndex.getContained(rect);
     }
 
     //------------------//
@@ -237,16 +268,12 @@ public class SIGraph
     {
         List<Inter> found = new ArrayList<>();
 
-        for (Inter inter : vertexSet()) {
-            Rectangle bounds = inter.getBounds();
-
-            if ((bounds != null) && bounds.contains(point)) {
-                // More precise test if we know inter area
-                Area area = inter.getArea();
+        for (Inter inter : spatialIndex.getContaining(point)) {
+            // More precise test if we know inter area
+            Area area = inter.getArea();
 
-                if ((area == null) || area.contains(point)) {
-                    found.add(inter);
-                }
+            if ((area == null) || area.contains(point)) {
+                found.add(inter);
             }
         }
 
@@ -416,6 +443,51 @@ public class SIGraph
         return getRelations(inter, Exclusion.class);
     }
 
+    //--------------//
+    // shapeChanged //
+    //--------------//
+    /**
+     * Signal that the shape of the provided inter has changed.
+     *
+     * @param inter the modified inter
+     */
+    public void shapeChanged (Inter inter)
+    {
+        synchronized (queriesLock) {
+            if (containsVertex(inter)) {
+                // Impacted sets will be rebuilt on next query, thus keeping vertex order
+                final Iterator<Map.Entry<Set<Shape>, Set<Inter>>> it = shapeQueries.entrySet()
+                        .iterator();
+
+                while (it.hasNext()) {
+                    final Map.Entry<Set<Shape>, Set<Inter>> entry = it.next();
+
+                    if (entry.getValue().contains(inter)
+                                || entry.getKey().contains(inter.getShape())) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    //--------------//
+    // gradeChanged //
+    //--------------//
+    /**
+     * Signal that the grade (or contextual grade) of the provided inter has changed.
+     * <p>
+     * This is needed to keep the queue of exclusions being reduced, if any, up to date.
+     *
+     * @param inter the modified inter
+     */
+    public void gradeChanged (Inter inter)
+    {
+        if (exclusionQueue != null) {
+            exclusionQueue.update(inter);
+        }
+    }
+
     //------------------//
     // getOppositeInter //
     //------------------//
@@ -687,7 +759,19 @@ public class SIGraph
     public final void populateAllInters (Collection<? extends Inter> inters)
     {
         for (Inter inter : inters) {
-            super.addVertex(inter);
+            final boolean added;
+
+            synchronized (queriesLock) {
+                added = super.addVertex(inter);
+
+                if (added) {
+                    indexVertex(inter);
+                }
+            }
+
+            if (added) {
+                spatialIndex.insert(inter);
+            }
         }
     }
 
@@ -866,7 +950,11 @@ public class SIGraph
      */
     public List<Inter> inters (final Collection<Shape> shapes)
     {
-        return inters(new ShapesPredicate(shapes));
+        if (shapes.contains(null)) {
+            return inters(new ShapesPredicate(shapes));
+        }
+
+        return liveInters(shapeVertices(shapes));
     }
 
     //--------//
@@ -874,6 +962,10 @@ public class SIGraph
     //--------//
     /**
      * Select the inters that relate to the specified staff.
+     * <p>
+     * NOTA: Since the staff of many inters (chords, stems, ...) is derived from their
+     * relations, this method browses all vertices.
+     * When inters of a given class are sought, use {@link #inters(Staff, Class)} instead.
      *
      * @param staff the specified staff
      * @return the list of selected inters, perhaps empty but not null
@@ -908,7 +1000,7 @@ public class SIGraph
      */
     public List<Inter> inters (final Class classe)
     {
-        return inters(new ClassPredicate(classe));
+        return liveInters(classVertices(Collections.singletonList(classe)));
     }
 
     //--------//
@@ -922,7 +1014,11 @@ public class SIGraph
      */
     public List<Inter> inters (final Shape shape)
     {
-        return inters(new ShapePredicate(shape));
+        if (shape == null) {
+            return inters(new ShapePredicate(shape));
+        }
+
+        return liveInters(shapeVertices(EnumSet.of(shape)));
     }
 
     //--------//
@@ -936,7 +1032,7 @@ public class SIGraph
      */
     public List<Inter> inters (final Class[] classes)
     {
-        return inters(new ClassesPredicate(classes));
+        return classVertices(Arrays.asList(classes));
     }
 
     //--------//
@@ -952,7 +1048,13 @@ public class SIGraph
     public List<Inter> inters (final Staff staff,
                                final Class classe)
     {
-        return inters(new StaffClassPredicate(staff, classe));
+        if (classe == null) {
+            return inters(new StaffClassPredicate(staff, classe));
+        }
+
+        return Inters.inters(
+                classVertices(Collections.singletonList(classe)),
+                new StaffClassPredicate(staff, classe));
     }
 
     //-------------------//
@@ -968,12 +1070,8 @@ public class SIGraph
     {
         List<Inter> found = new ArrayList<>();
 
-        for (Inter inter : vertexSet()) {
-            if (inter.isRemoved()) {
-                continue;
-            }
-
-            if (box.intersects(inter.getBounds())) {
+        for (Inter inter : spatialIndex.getIntersected(box)) {
+            if (!inter.isRemoved()) {
                 found.add(inter);
             }
         }
@@ -1036,6 +1134,9 @@ public class SIGraph
      * <li>Recompute all impacted contextual grades values,</li>
      * <li>Iterate until no more exclusion is left.</li>
      * </ol>
+     * Exclusions are kept in a max-heap on their contribution, which is updated whenever the
+     * grade of an involved inter changes (see {@link #gradeChanged(Inter)}).
+     * Among exclusions of equal contribution, the first one in provided collection is chosen.
      *
      * @param exclusions the collection of exclusions to process
      * @return the set of vertices removed
@@ -1043,32 +1144,18 @@ public class SIGraph
     public Set<Inter> reduceExclusions (Collection<? extends Relation> exclusions)
     {
         final Set<Inter> removed = new LinkedHashSet<>();
-        Relation bestRel;
-
-        do {
-            // Choose exclusion with the highest source or target grade
-            double bestCP = 0;
-            bestRel = null;
-
-            for (Iterator<? extends Relation> it = exclusions.iterator(); it.hasNext();) {
-                Relation rel = it.next();
+        final Set<Relation> reduced = Collections.newSetFromMap(
+                new IdentityHashMap<Relation, Boolean>());
+        final ExclusionQueue outerQueue = exclusionQueue;
+        final ExclusionQueue queue = new ExclusionQueue(exclusions);
+        exclusionQueue = queue;
 
-                if (containsEdge(rel)) {
-                    final double cp = Math.max(
-                            getEdgeSource(rel).getBestGrade(),
-                            getEdgeTarget(rel).getBestGrade());
-
-                    if (bestCP < cp) {
-                        bestCP = cp;
-                        bestRel = rel;
-                    }
-                } else {
-                    it.remove();
-                }
-            }
+        try {
+            Relation bestRel;
 
-            // Remove the weaker branch of the selected exclusion
-            if (bestRel != null) {
+            // Choose exclusion with the highest source or target grade
+            while ((bestRel = queue.pollBest()) != null) {
+                // Remove the weaker branch of the selected exclusion
                 final Inter source = getEdgeSource(bestRel);
                 final double scp = source.getBestGrade();
                 final Inter target = getEdgeTarget(bestRel);
@@ -1104,9 +1191,20 @@ public class SIGraph
                     computeContextualGrade(inter);
                 }
 
-                exclusions.remove(bestRel);
+                reduced.add(bestRel);
             }
-        } while (bestRel != null);
+        } finally {
+            exclusionQueue = outerQueue;
+        }
+
+        // Purge the provided collection
+        for (Iterator<? extends Relation> it = exclusions.iterator(); it.hasNext();) {
+            Relation rel = it.next();
+
+            if (!containsEdge(rel) || reduced.contains(rel)) {
+                it.remove();
+            }
+        }
 
         return removed;
     }
@@ -1137,12 +1235,21 @@ public class SIGraph
 
         // Remove from inter index. TODO: is this a good idea?
         system.getSheet().getInterIndex().remove(inter);
+        spatialIndex.remove(inter);
 
         if (inter.isVip()) {
             logger.info("VIP removeVertex {}", inter);
         }
 
-        return super.removeVertex(inter);
+        synchronized (queriesLock) {
+            final boolean removed = super.removeVertex(inter);
+
+            if (removed) {
+                unindexVertex(inter);
+            }
+
+            return removed;
+        }
     }
 
     //--------------//
@@ -1328,6 +1435,242 @@ public class SIGraph
         return sb.toString();
     }
 
+    //---------------//
+    // classVertices //
+    //---------------//
+    /**
+     * Report a snapshot of the live set of vertices which are instances of any of the
+     * provided classes, the live set being built on first query.
+     *
+     * @param classes the provided classes
+     * @return a new list of the vertices, in sig order
+     */
+    private List<Inter> classVertices (List<Class> classes)
+    {
+        synchronized (queriesLock) {
+            Set<Inter> set = classQueries.get(classes);
+
+            if (set == null) {
+                set = new LinkedHashSet<>();
+
+                for (Inter inter : vertexSet()) {
+                    if (isInstance(inter, classes)) {
+                        set.add(inter);
+                    }
+                }
+
+                classQueries.put(new ArrayList<>(classes), set);
+            }
+
+            return new ArrayList<>(set);
+        }
+    }
+
+    //-------------//
+    // indexVertex //
+    //-------------//
+    /**
+     * Add a new vertex to the live sets it belongs to.
+     * <p>
+     * To be called while holding queriesLock.
+     *
+     * @param inter the added vertex
+     */
+    private void indexVertex (Inter inter)
+    {
+        for (Map.Entry<Set<Shape>, Set<Inter>> entry : shapeQueries.entrySet()) {
+            if (entry.getKey().contains(inter.getShape())) {
+                entry.getValue().add(inter);
+            }
+        }
+
+        for (Map.Entry<List<Class>, Set<Inter>> entry : classQueries.entrySet()) {
+            if (isInstance(inter, entry.getKey())) {
+                entry.getValue().add(inter);
+            }
+        }
+    }
+
+    //------------//
+    // isInstance //
+    //------------//
+    private static boolean isInstance (Inter inter,
+                                       List<Class> classes)
+    {
+        for (Class classe : classes) {
+            if (classe.isInstance(inter)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //------------//
+    // liveInters //
+    //------------//
+    /**
+     * Report the provided inters which are not removed.
+     *
+     * @param inters the provided inters
+     * @return list of live inters, perhaps empty but not null
+     */
+    private static List<Inter> liveInters (Collection<Inter> inters)
+    {
+        final List<Inter> list = new ArrayList<>(inters.size());
+
+        for (Inter inter : inters) {
+            if (!inter.isRemoved()) {
+                list.add(inter);
+            }
+        }
+
+        return list;
+    }
+
+    //---------------//
+    // shapeVertices //
+    //---------------//
+    /**
+     * Report a snapshot of the live set of vertices whose shape belongs to the provided
+     * shapes, the live set being built on first query.
+     *
+     * @param shapes the provided shapes (no null value)
+     * @return a new list of the vertices, in sig order
+     */
+    private List<Inter> shapeVertices (Collection<Shape> shapes)
+    {
+        final Set<Shape> key = EnumSet.noneOf(Shape.class);
+        key.addAll(shapes);
+
+        synchronized (queriesLock) {
+            Set<Inter> set = shapeQueries.get(key);
+
+            if (set == null) {
+                set = new LinkedHashSet<>();
+
+                for (Inter inter : vertexSet()) {
+                    if (key.contains(inter.getShape())) {
+                        set.add(inter);
+                    }
+                }
+
+                shapeQueries.put(key, set);
+            }
+
+            return new ArrayList<>(set);
+        }
+    }
+
+    //---------------//
+    // unindexVertex //
+    //---------------//
+    /**
+     * Remove a vertex from the live sets.
+     * <p>
+     * To be called while holding queriesLock.
+     *
+     * @param inter the removed vertex
+     */
+    private void unindexVertex (Inter inter)
+    {
+        for (Set<Inter> set : shapeQueries.values()) {
+            set.remove(inter);
+        }
+
+        for (Set<Inter> set : classQueries.values()) {
+            set.remove(inter);
+        }
+    }
+
+    //----------------//
+    // ExclusionQueue //
+    //----------------//
+    /**
+     * Max-heap of exclusions being reduced, on the highest contextual grade of their
+     * source or target inter.
+     */
+    private class ExclusionQueue
+    {
+
+        /** Exclusions still in competition. */
+        private final IndexedMaxHeap<Relation> heap = new IndexedMaxHeap<>();
+
+        /** Exclusions per involved inter. */
+        private final Map<Inter, List<Relation>> interRels = new HashMap<>();
+
+        ExclusionQueue (Collection<? extends Relation> exclusions)
+        {
+            for (Relation rel : exclusions) {
+                if (containsEdge(rel) && heap.add(rel, contributionOf(rel))) {
+                    relsOf(getEdgeSource(rel)).add(rel);
+                    relsOf(getEdgeTarget(rel)).add(rel);
+                }
+            }
+        }
+
+        /**
+         * Remove and report the remaining exclusion with the highest positive
+         * contribution.
+         *
+         * @return the best exclusion, or null if none
+         */
+        Relation pollBest ()
+        {
+            while (!heap.isEmpty()) {
+                final Relation rel = heap.peek();
+
+                if (!containsEdge(rel)) {
+                    heap.poll(); // No longer in sig
+                } else if (heap.getPriority(rel) > 0) {
+                    return heap.poll();
+                } else {
+                    return null;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Update the contribution of exclusions involving the provided inter.
+         *
+         * @param inter the inter whose grade has changed
+         */
+        void update (Inter inter)
+        {
+            final List<Relation> rels = interRels.get(inter);
+
+            if (rels != null) {
+                for (Relation rel : rels) {
+                    if (heap.contains(rel) && containsEdge(rel)) {
+                        heap.update(rel, contributionOf(rel));
+                    }
+                }
+            }
+        }
+
+        private double contributionOf (Relation rel)
+        {
+            final double cp = Math.max(
+                    getEdgeSource(rel).getBestGrade(),
+                    getEdgeTarget(rel).getBestGrade());
+
+            return (cp > 0) ? cp : 0; // Non-positive contributions are never chosen
+        }
+
+        private List<Relation> relsOf (Inter inter)
+        {
+            List<Relation> rels = interRels.get(inter);
+
+            if (rels == null) {
+                interRels.put(inter, rels = new ArrayList<>());
+            }
+
+            return rels;
+        }
+    }
+
     //----------//
     // Sequence //
     //----------//
@@ -998,6 +998,7 @@ public abstract class AbstractChordInter
     {
         beams = null;
         bounds = null;
+        boundsChanged();
         headLocation = null;
         tailLocation = null;
 
@@ -308,6 +308,7 @@ public abstract class AbstractInter
     public void decrease (double ratio)
     {
         grade *= (1 - ratio);
+        gradeChanged();
     }
 
     //--------//
@@ -462,6 +463,7 @@ public abstract class AbstractInter
     public void setBounds (Rectangle bounds)
     {
         this.bounds = bounds;
+        boundsChanged();
     }
 
     //-----------//
@@ -536,6 +538,7 @@ public abstract class AbstractInter
     public void setContextualGrade (double value)
     {
         ctxGrade = value;
+        gradeChanged();
     }
 
     //---------------//
@@ -601,6 +604,7 @@ public abstract class AbstractInter
     public void setGlyph (Glyph glyph)
     {
         this.glyph = glyph;
+        boundsChanged();
     }
 
     //----------//
@@ -619,6 +623,7 @@ public abstract class AbstractInter
     public void setGrade (double grade)
     {
         this.grade = grade;
+        gradeChanged();
     }
 
     //------------//
@@ -797,6 +802,7 @@ public abstract class AbstractInter
     {
         if (grade < Grades.intrinsicRatio) {
             grade += (ratio * (Grades.intrinsicRatio - grade));
+            gradeChanged();
         }
     }
 
@@ -1148,6 +1154,20 @@ public abstract class AbstractInter
         }
     }
 
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Signal that the bounds of this inter have (or may have) changed, so that the
+     * spatial indexes this inter is registered in get updated.
+     */
+    protected void boundsChanged ()
+    {
+        if (sig != null) {
+            sig.boundsChanged(this);
+        }
+    }
+
     //-----------//
     // internals //
     //-----------//
@@ -1188,6 +1208,19 @@ public abstract class AbstractInter
         return sb.toString();
     }
 
+    //--------------//
+    // gradeChanged //
+    //--------------//
+    /**
+     * Signal to the hosting sig that the grade of this inter has changed.
+     */
+    private void gradeChanged ()
+    {
+        if (sig != null) {
+            sig.gradeChanged(this);
+        }
+    }
+
     //------------//
     // getStaffId //
     //------------//
@@ -241,6 +241,10 @@ public abstract class AbstractTimeInter
 
         this.shape = shape;
         this.timeRational = timeRational;
+
+        if (sig != null) {
+            sig.shapeChanged(this);
+        }
     }
 
     //-----------//
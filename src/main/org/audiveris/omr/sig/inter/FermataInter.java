@@ -209,6 +209,7 @@ public class FermataInter
     public void invalidateCache ()
     {
         bounds = null;
+        boundsChanged();
     }
 
     //-----------------//
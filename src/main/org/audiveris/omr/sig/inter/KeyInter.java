@@ -273,6 +273,7 @@ public class KeyInter
     public void invalidateCache ()
     {
         bounds = null;
+        boundsChanged();
         fifths = 0;
     }
 
@@ -348,6 +348,7 @@ public class SentenceInter
     public void invalidateCache ()
     {
         bounds = null;
+        boundsChanged();
     }
 
     //--------------//
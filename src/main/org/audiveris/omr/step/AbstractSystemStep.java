@@ -190,7 +190,15 @@ public abstract class AbstractSystemStep<C>
                                     AbstractSystemStep.this,
                                     system.getId());
 
-                            doSystem(system, context);
+                            final StepMetrics.Measure measure = StepMetrics.start(system);
+
+                            try {
+                                doSystem(system, context);
+                            } finally {
+                                if (measure != null) {
+                                    measure.stop();
+                                }
+                            }
                         } catch (StepException ex) {
                             logger.warn(system.getLogPrefix() + ex, ex);
                         } finally {
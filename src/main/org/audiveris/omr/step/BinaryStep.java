@@ -94,14 +94,12 @@ public class BinaryStep
         logger.debug("{}", "Binarization");
 
         PixelFilter filter = desc.getFilter(initial);
-        watch.start("Binarize source");
-
-        ByteProcessor binary = filter.filteredImage();
-
-        watch.start("Create binary RunTable");
+        watch.start("Binarize source into binary RunTable");
 
+        // Binarized pixels are directly encoded into runs, without any binary image
+        // (which can later be rebuilt from the table, if so needed)
         RunTableFactory vertFactory = new RunTableFactory(Orientation.VERTICAL);
-        RunTable wholeVertTable = vertFactory.createTable(binary);
+        RunTable wholeVertTable = vertFactory.createTable(filter);
         picture.setTable(Picture.TableKey.BINARY, wholeVertTable, true);
 
         // To discard image
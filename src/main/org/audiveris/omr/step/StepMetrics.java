@@ -0,0 +1,745 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                      S t e p M e t r i c s                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.step;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.SheetStub;
+import org.audiveris.omr.sheet.SystemInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class {@code StepMetrics} records resource usage of every step, per sheet and, for
+ * {@link AbstractSystemStep} subclasses, per system.
+ * <p>
+ * For each measure, we record:
+ * <ul>
+ * <li>wall time,</li>
+ * <li>CPU time, of the processing thread(s),</li>
+ * <li>allocated bytes, of the processing thread(s), when the JVM supports it,</li>
+ * <li>peak heap usage since step began (this is a JVM-wide value, so it is significant only
+ * when sheets are not processed in parallel).</li>
+ * </ul>
+ * A sheet measure also includes CPU time and allocations of the system tasks run on other
+ * threads, so that sheet figures remain meaningful when systems are processed in parallel.
+ * <p>
+ * Records are kept until the containing book gets exported via {@link #export(Book, Path)},
+ * which writes both {@code <radix>-metrics.csv} and {@code <radix>-metrics.json} files, or until
+ * the book gets closed.
+ * In any case, only the {@code maxRecords} most recent records are kept, so that a long
+ * interactive session does not accumulate records endlessly.
+ * <p>
+ * The same data is available through a platform MBean named
+ * {@value #OBJECT_NAME}, for use by JConsole or any JMX client.
+ *
+ * @author Hervé Bitteur
+ */
+public class StepMetrics
+        implements StepMetricsMBean
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(StepMetrics.class);
+
+    /** Name of the registered MBean. */
+    public static final String OBJECT_NAME = "org.audiveris.omr:type=StepMetrics";
+
+    /** Suffix for metrics files. */
+    public static final String METRICS_SUFFIX = "-metrics";
+
+    /** Header line of CSV report. */
+    private static final String CSV_HEADER
+            = "book,sheet,step,system,wallMs,cpuMs,allocatedBytes,peakHeapBytes";
+
+    /** Value of system id for a whole sheet record. */
+    private static final int WHOLE_SHEET = 0;
+
+    /** The single instance. */
+    private static final StepMetrics INSTANCE = new StepMetrics();
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /** Records not yet exported. */
+    private final ConcurrentLinkedQueue<Record> records = new ConcurrentLinkedQueue<>();
+
+    /** Count of records, since queue size is not a constant-time operation. */
+    private final AtomicInteger recordCount = new AtomicInteger();
+
+    /** Totals per step, cumulated on sheet records. */
+    private final Map<Step, Totals> totals = new EnumMap<>(Step.class);
+
+    /** Sheet measures currently running. */
+    private final Map<SheetStub, Measure> sheetMeasures = new ConcurrentHashMap<>();
+
+    /** Count of sheet measures currently running. */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /** Heap memory pools. */
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+    static {
+        if (isEnabled()) {
+            INSTANCE.initialize();
+        }
+    }
+
+    /** Use {@link #getInstance()}. */
+    private StepMetrics ()
+    {
+    }
+
+    //-------//
+    // clear //
+    //-------//
+    @Override
+    public void clear ()
+    {
+        while (records.poll() != null) {
+            recordCount.decrementAndGet();
+        }
+
+        synchronized (totals) {
+            totals.clear();
+        }
+    }
+
+    //--------------//
+    // getCsvReport //
+    //--------------//
+    @Override
+    public String getCsvReport ()
+    {
+        return toCsv(new ArrayList<>(records));
+    }
+
+    //---------------//
+    // getJsonReport //
+    //---------------//
+    @Override
+    public String getJsonReport ()
+    {
+        return toJson(null, new ArrayList<>(records));
+    }
+
+    //----------------//
+    // getRecordCount //
+    //----------------//
+    @Override
+    public int getRecordCount ()
+    {
+        return recordCount.get();
+    }
+
+    //---------------//
+    // getStepTotals //
+    //---------------//
+    @Override
+    public String[] getStepTotals ()
+    {
+        final List<String> lines = new ArrayList<>();
+
+        synchronized (totals) {
+            for (Entry<Step, Totals> entry : totals.entrySet()) {
+                final Totals t = entry.getValue();
+                lines.add(
+                        String.format(
+                                Locale.US,
+                                "%s count:%d wallMs:%.3f cpuMs:%.3f allocatedBytes:%d",
+                                entry.getKey(),
+                                t.count,
+                                t.wallNanos / 1e6,
+                                t.cpuNanos / 1e6,
+                                t.allocatedBytes));
+            }
+        }
+
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    //--------//
+    // export //
+    //--------//
+    /**
+     * Write the records of the provided book into CSV and JSON files, then forget
+     * these records.
+     *
+     * @param book   the book at hand
+     * @param folder the target folder (typically the book folder)
+     */
+    public static void export (Book book,
+                               Path folder)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final List<Record> bookRecords = INSTANCE.removeRecords(book);
+
+        if (bookRecords.isEmpty() || !constants.exportReport.isSet()) {
+            return;
+        }
+
+        final String radix = book.getRadix();
+        final Path csvPath = folder.resolve(radix + METRICS_SUFFIX + ".csv");
+        final Path jsonPath = folder.resolve(radix + METRICS_SUFFIX + ".json");
+
+        try {
+            Files.createDirectories(folder);
+            write(csvPath, INSTANCE.toCsv(bookRecords));
+            write(jsonPath, INSTANCE.toJson(book, bookRecords));
+            logger.info("Step metrics written to {}", csvPath);
+        } catch (IOException ex) {
+            logger.warn("Error writing step metrics {}", ex.toString(), ex);
+        }
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class.
+     *
+     * @return the instance
+     */
+    public static StepMetrics getInstance ()
+    {
+        return INSTANCE;
+    }
+
+    //-----------//
+    // isEnabled //
+    //-----------//
+    /**
+     * Tell whether step metrics are being recorded.
+     *
+     * @return true if enabled
+     */
+    public static boolean isEnabled ()
+    {
+        return constants.enabled.isSet();
+    }
+
+    //------------//
+    // removeBook //
+    //------------//
+    /**
+     * Forget the records of the provided book, which is being closed.
+     *
+     * @param book the book at hand
+     */
+    public static void removeBook (Book book)
+    {
+        INSTANCE.removeRecords(book);
+    }
+
+    //-------//
+    // start //
+    //-------//
+    /**
+     * Start the measure of a step on a whole sheet, using current thread.
+     *
+     * @param stub the sheet stub at hand
+     * @param step the step being performed
+     * @return the running measure, or null if metrics are disabled
+     */
+    public static Measure start (SheetStub stub,
+                                 Step step)
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        if (INSTANCE.running.getAndIncrement() == 0) {
+            INSTANCE.resetPeaks();
+        }
+
+        final Measure measure = new Measure(stub, step, WHOLE_SHEET, null);
+        INSTANCE.sheetMeasures.put(stub, measure);
+
+        return measure;
+    }
+
+    //-------//
+    // start //
+    //-------//
+    /**
+     * Start the measure of current step on a system, using current thread.
+     *
+     * @param system the system at hand
+     * @return the running measure, or null if metrics are disabled or no step is running
+     */
+    public static Measure start (SystemInfo system)
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final SheetStub stub = system.getSheet().getStub();
+        final Measure parent = INSTANCE.sheetMeasures.get(stub);
+
+        if (parent == null) {
+            return null;
+        }
+
+        return new Measure(stub, parent.step, system.getId(), parent);
+    }
+
+    //-----------//
+    // getCpuTime //
+    //-----------//
+    /**
+     * Report CPU time consumed so far by current thread.
+     *
+     * @return CPU time in nanoseconds, or -1 if not available
+     */
+    private static long getCpuTime ()
+    {
+        if (threadBean.isCurrentThreadCpuTimeSupported()) {
+            return threadBean.getCurrentThreadCpuTime();
+        }
+
+        return -1;
+    }
+
+    //-------------------//
+    // getAllocatedBytes //
+    //-------------------//
+    /**
+     * Report bytes allocated so far by current thread.
+     *
+     * @return allocated bytes, or -1 if not available
+     */
+    private static long getAllocatedBytes ()
+    {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean
+                    = (com.sun.management.ThreadMXBean) threadBean;
+
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    //------------//
+    // jsonString //
+    //------------//
+    private static String jsonString (String str)
+    {
+        final StringBuilder sb = new StringBuilder("\"");
+
+        for (char c : str.toCharArray()) {
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+
+        return sb.append('"').toString();
+    }
+
+    //-------//
+    // write //
+    //-------//
+    private static void write (Path path,
+                               String content)
+            throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    //------------//
+    // accumulate //
+    //------------//
+    private void accumulate (Record record)
+    {
+        records.add(record);
+
+        // Discard oldest records beyond maximum count
+        if (recordCount.incrementAndGet() > constants.maxRecords.getValue()) {
+            if (records.poll() != null) {
+                recordCount.decrementAndGet();
+            }
+        }
+
+        if (record.system == WHOLE_SHEET) {
+            synchronized (totals) {
+                Totals t = totals.get(record.step);
+
+                if (t == null) {
+                    totals.put(record.step, t = new Totals());
+                }
+
+                t.count++;
+                t.wallNanos += record.wallNanos;
+                t.cpuNanos += Math.max(0, record.cpuNanos);
+                t.allocatedBytes += Math.max(0, record.allocatedBytes);
+            }
+        }
+    }
+
+    //-------------//
+    // getPeakHeap //
+    //-------------//
+    private long getPeakHeap ()
+    {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+
+        return peak;
+    }
+
+    //------------//
+    // initialize //
+    //------------//
+    private void initialize ()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ((pool.getType() == MemoryType.HEAP) && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+
+        try {
+            if (threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+                threadBean.setThreadCpuTimeEnabled(true);
+            }
+        } catch (UnsupportedOperationException | SecurityException ex) {
+            logger.info("Thread CPU time not available {}", ex.toString());
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException ex) {
+            logger.warn("Could not register {} {}", OBJECT_NAME, ex.toString());
+        }
+    }
+
+    //---------------//
+    // removeRecords //
+    //---------------//
+    /**
+     * Remove and report the records of the provided book.
+     * <p>
+     * A record concurrently discarded by the cap on record count is not reported, and the
+     * count is decremented only for the records actually removed here.
+     *
+     * @param book the book at hand
+     * @return the book records, perhaps empty
+     */
+    private List<Record> removeRecords (Book book)
+    {
+        final List<Record> bookRecords = new ArrayList<>();
+
+        for (Record record : records) {
+            if (record.book.equals(book.getRadix()) && records.remove(record)) {
+                bookRecords.add(record);
+                recordCount.decrementAndGet();
+            }
+        }
+
+        return bookRecords;
+    }
+
+    //------------//
+    // resetPeaks //
+    //------------//
+    private void resetPeaks ()
+    {
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    //-------//
+    // toCsv //
+    //-------//
+    private String toCsv (List<Record> list)
+    {
+        final StringBuilder sb = new StringBuilder(CSV_HEADER).append('\n');
+
+        for (Record r : list) {
+            sb.append(String.format(
+                    Locale.US,
+                    "%s,%d,%s,%s,%.3f,%s,%s,%d\n",
+                    csvString(r.book),
+                    r.sheet,
+                    r.step,
+                    (r.system == WHOLE_SHEET) ? "" : Integer.toString(r.system),
+                    r.wallNanos / 1e6,
+                    (r.cpuNanos < 0) ? "" : String.format(Locale.US, "%.3f", r.cpuNanos / 1e6),
+                    (r.allocatedBytes < 0) ? "" : Long.toString(r.allocatedBytes),
+                    r.peakHeap));
+        }
+
+        return sb.toString();
+    }
+
+    //-----------//
+    // csvString //
+    //-----------//
+    private static String csvString (String str)
+    {
+        if ((str.indexOf(',') == -1) && (str.indexOf('"') == -1)) {
+            return str;
+        }
+
+        return '"' + str.replace("\"", "\"\"") + '"';
+    }
+
+    //--------//
+    // toJson //
+    //--------//
+    private String toJson (Book book,
+                           List<Record> list)
+    {
+        final StringBuilder sb = new StringBuilder("{\n");
+
+        if (book != null) {
+            sb.append("  \"book\": ").append(jsonString(book.getRadix())).append(",\n");
+        }
+
+        sb.append("  \"records\": [");
+
+        for (int i = 0; i < list.size(); i++) {
+            final Record r = list.get(i);
+            sb.append((i == 0) ? "\n" : ",\n");
+            sb.append("    {\"book\": ").append(jsonString(r.book));
+            sb.append(", \"sheet\": ").append(r.sheet);
+            sb.append(", \"step\": ").append(jsonString(r.step.toString()));
+            sb.append(", \"system\": ")
+                    .append((r.system == WHOLE_SHEET) ? "null" : Integer.toString(r.system));
+            sb.append(String.format(Locale.US, ", \"wallMs\": %.3f", r.wallNanos / 1e6));
+            sb.append(", \"cpuMs\": ").append(
+                    (r.cpuNanos < 0) ? "null" : String.format(Locale.US, "%.3f", r.cpuNanos / 1e6));
+            sb.append(", \"allocatedBytes\": ")
+                    .append((r.allocatedBytes < 0) ? "null" : Long.toString(r.allocatedBytes));
+            sb.append(", \"peakHeapBytes\": ").append(r.peakHeap).append('}');
+        }
+
+        sb.append(list.isEmpty() ? "]\n" : "\n  ]\n");
+
+        return sb.append("}\n").toString();
+    }
+
+    //---------//
+    // Measure //
+    //---------//
+    /**
+     * A measure in progress, to be closed by {@link #stop()} on the same thread.
+     */
+    public static class Measure
+    {
+
+        private final SheetStub stub;
+
+        private final Step step;
+
+        private final int system;
+
+        /** Enclosing sheet measure, if any. */
+        private final Measure parent;
+
+        private final Thread thread = Thread.currentThread();
+
+        private final long startWall = System.nanoTime();
+
+        private final long startCpu = getCpuTime();
+
+        private final long startAllocated = getAllocatedBytes();
+
+        /** CPU time consumed by system tasks on other threads. */
+        private final AtomicLong otherCpu = new AtomicLong();
+
+        /** Bytes allocated by system tasks on other threads. */
+        private final AtomicLong otherAllocated = new AtomicLong();
+
+        private Measure (SheetStub stub,
+                         Step step,
+                         int system,
+                         Measure parent)
+        {
+            this.stub = stub;
+            this.step = step;
+            this.system = system;
+            this.parent = parent;
+        }
+
+        //------//
+        // stop //
+        //------//
+        /**
+         * Close this measure and record its figures.
+         */
+        public void stop ()
+        {
+            final long wall = System.nanoTime() - startWall;
+            final long cpu = (startCpu < 0) ? -1 : (getCpuTime() - startCpu);
+            final long allocated = (startAllocated < 0) ? -1
+                    : (getAllocatedBytes() - startAllocated);
+            final long peakHeap = INSTANCE.getPeakHeap();
+
+            if (parent != null) {
+                // System measure: report figures to sheet measure if run on another thread
+                if (parent.thread != thread) {
+                    parent.otherCpu.addAndGet(Math.max(0, cpu));
+                    parent.otherAllocated.addAndGet(Math.max(0, allocated));
+                }
+
+                INSTANCE.accumulate(
+                        new Record(stub, step, system, wall, cpu, allocated, peakHeap));
+            } else {
+                INSTANCE.sheetMeasures.remove(stub, this);
+                INSTANCE.running.decrementAndGet();
+                INSTANCE.accumulate(
+                        new Record(
+                                stub,
+                                step,
+                                WHOLE_SHEET,
+                                wall,
+                                (cpu < 0) ? -1 : (cpu + otherCpu.get()),
+                                (allocated < 0) ? -1 : (allocated + otherAllocated.get()),
+                                peakHeap));
+            }
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean enabled = new Constant.Boolean(
+                true,
+                "Should we record time and memory metrics of each step?");
+
+        private final Constant.Boolean exportReport = new Constant.Boolean(
+                true,
+                "Should we write step metrics next to the book in batch mode?");
+
+        private final Constant.Integer maxRecords = new Constant.Integer(
+                "records",
+                20000,
+                "Maximum number of step metrics records kept in memory");
+    }
+
+    //--------//
+    // Record //
+    //--------//
+    /**
+     * Figures of one step on one sheet or system.
+     */
+    private static class Record
+    {
+
+        /** Book radix. */
+        final String book;
+
+        final int sheet;
+
+        final Step step;
+
+        /** System id, or WHOLE_SHEET. */
+        final int system;
+
+        final long wallNanos;
+
+        final long cpuNanos;
+
+        final long allocatedBytes;
+
+        final long peakHeap;
+
+        Record (SheetStub stub,
+                Step step,
+                int system,
+                long wallNanos,
+                long cpuNanos,
+                long allocatedBytes,
+                long peakHeap)
+        {
+            this.book = stub.getBook().getRadix();
+            this.sheet = stub.getNumber();
+            this.step = step;
+            this.system = system;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.peakHeap = peakHeap;
+        }
+    }
+
+    //--------//
+    // Totals //
+    //--------//
+    private static class Totals
+    {
+
+        int count;
+
+        long wallNanos;
+
+        long cpuNanos;
+
+        long allocatedBytes;
+    }
+}
@@ -0,0 +1,66 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 S t e p M e t r i c s M B e a n                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.step;
+
+/**
+ * Interface {@code StepMetricsMBean} is the JMX management interface of
+ * {@link StepMetrics}.
+ *
+ * @author Hervé Bitteur
+ */
+public interface StepMetricsMBean
+{
+
+    /**
+     * Remove all pending records and reset the cumulated totals.
+     */
+    void clear ();
+
+    /**
+     * Report the pending records, formatted as CSV.
+     *
+     * @return CSV report, including the header line
+     */
+    String getCsvReport ();
+
+    /**
+     * Report the pending records, formatted as JSON.
+     *
+     * @return JSON report
+     */
+    String getJsonReport ();
+
+    /**
+     * Report the count of records not yet exported.
+     *
+     * @return the count of pending records
+     */
+    int getRecordCount ();
+
+    /**
+     * Report, for each step, the totals cumulated on all sheets since start or last
+     * {@link #clear()}.
+     *
+     * @return one line per step
+     */
+    String[] getStepTotals ();
+}
@@ -63,6 +63,7 @@ import java.awt.Stroke;
 import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -72,6 +73,11 @@ import java.util.List;
  * Tesseract is used in MULTI_BLOCK layout mode, meaning that the sheet main contain several blocks
  * of text.
  * <p>
+ * OCR can also be run system per system (see {@link #scanSystem}), on the system bounds slightly
+ * enlarged vertically, so that a text line located at the border between two systems is seen
+ * entirely by each system scan.
+ * Each word is later kept only by the system whose area contains it.
+ * <p>
  * The raw OCR output will later be processed at system level by dedicated TextBuilder instances.
  *
  * @author Hervé Bitteur
@@ -89,6 +95,9 @@ public class SheetScanner
     /** Buffer used by OCR. */
     private ByteProcessor buffer;
 
+    /** Clean image of whole sheet. */
+    private BufferedImage image;
+
     /**
      * Creates a new {@code TextPageScanner} object.
      *
@@ -99,6 +108,17 @@ public class SheetScanner
         this.sheet = sheet;
     }
 
+    //------------//
+    // cleanSheet //
+    //------------//
+    /**
+     * Build the clean image of whole sheet, prior to any {@link #scanSystem} call.
+     */
+    public void cleanSheet ()
+    {
+        image = getCleanImage(); // This also sets buffer member
+    }
+
     //-----------//
     // getBuffer //
     //-----------//
@@ -149,6 +169,54 @@ public class SheetScanner
         }
     }
 
+    //------------//
+    // scanSystem //
+    //------------//
+    /**
+     * Run OCR on the clean image of the provided system, slightly enlarged vertically.
+     * <p>
+     * This method can be called concurrently for different systems, once {@link #cleanSheet} has
+     * been called.
+     *
+     * @param system the system to process
+     * @return the list of OCR'ed lines found, in sheet coordinates
+     */
+    public List<TextLine> scanSystem (SystemInfo system)
+    {
+        final Rectangle box = system.getBounds();
+        box.grow(0, sheet.getScale().toPixels(constants.systemVerticalOverlap));
+
+        final Rectangle roi = box.intersection(
+                new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+
+        if (roi.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Param<String> textParam = sheet.getStub().getOcrLanguages();
+        final String language = textParam.getValue();
+        logger.debug("scanSystem lan:{} on {} roi:{}", language, system, roi);
+
+        final List<TextLine> lines = OcrUtil.scan(
+                image.getSubimage(roi.x, roi.y, roi.width, roi.height),
+                constants.whiteMarginAdded.getValue(),
+                OCR.LayoutMode.MULTI_BLOCK,
+                language,
+                sheet.getScale().getInterline(),
+                sheet.getId() + "-S" + system.getId());
+
+        if (lines == null) {
+            return Collections.emptyList();
+        }
+
+        // Translate to sheet coordinates
+        for (TextLine line : lines) {
+            line.translate(roi.x, roi.y);
+        }
+
+        return lines;
+    }
+
     //---------------//
     // getCleanImage //
     //---------------//
@@ -217,6 +285,10 @@ public class SheetScanner
                 "pixels",
                 10,
                 "Margin of white pixels added around sheet image");
+
+        private final Scale.Fraction systemVerticalOverlap = new Scale.Fraction(
+                2.0,
+                "Vertical margin added above and below system bounds for system OCR");
     }
 
     //--------------//
@@ -23,6 +23,8 @@ package org.audiveris.omr.text;
 
 import ij.process.ByteProcessor;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.sheet.SystemInfo;
 import org.audiveris.omr.step.AbstractSystemStep;
@@ -36,6 +38,9 @@ import java.util.List;
 
 /**
  * Class {@code TextsStep} discovers text items in a system area.
+ * <p>
+ * By default, OCR is run system per system, so that systems can be processed in parallel.
+ * Otherwise, OCR is run once on the whole sheet in step prolog.
  *
  * @author Hervé Bitteur
  */
@@ -43,6 +48,8 @@ public class TextsStep
         extends AbstractSystemStep<TextsStep.Context>
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(TextsStep.class);
 
     /**
@@ -60,8 +67,12 @@ public class TextsStep
                           Context context)
             throws StepException
     {
+        // OCR at system level?
+        final List<TextLine> lines = (context.scanner != null)
+                ? context.scanner.scanSystem(system) : context.textLines;
+
         // Process texts at system level
-        new TextBuilder(system).retrieveSystemLines(context.buffer, context.textLines);
+        new TextBuilder(system).retrieveSystemLines(context.buffer, lines);
     }
 
     //----------//
@@ -72,18 +83,24 @@ public class TextsStep
             throws StepException
     {
         List<TextLine> lines = new ArrayList<>();
-
-        // Launch OCR on the whole sheet
         SheetScanner scanner = new SheetScanner(sheet);
 
         if (OcrUtil.getOcr().isAvailable()) {
+            if (constants.ocrPerSystem.isSet()) {
+                // Just prepare the clean image, OCR will be launched system per system
+                scanner.cleanSheet();
+
+                return new Context(scanner.getBuffer(), null, scanner);
+            }
+
+            // Launch OCR on the whole sheet
             lines.addAll(scanner.scanSheet());
         } else {
             logger.warn("TEXTS step: {}", OCR.NO_OCR);
         }
 
         // Make all this available for system-level processing
-        return new Context(scanner.getBuffer(), lines);
+        return new Context(scanner.getBuffer(), lines, null);
     }
 
     //---------//
@@ -98,20 +115,38 @@ public class TextsStep
         /** The sheet buffer handed to OCR. */
         public final ByteProcessor buffer;
 
-        /** The raw text lines OCR'ed. */
+        /** The raw text lines OCR'ed on whole sheet, if any. */
         public final List<TextLine> textLines;
 
+        /** The scanner for OCR system per system, if any. */
+        public final SheetScanner scanner;
+
         /**
          * Create a Context object.
          *
          * @param buffer
          * @param textLines
+         * @param scanner
          */
         Context (ByteProcessor buffer,
-                 List<TextLine> textLines)
+                 List<TextLine> textLines,
+                 SheetScanner scanner)
         {
             this.buffer = buffer;
             this.textLines = textLines;
+            this.scanner = scanner;
         }
     }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean ocrPerSystem = new Constant.Boolean(
+                true,
+                "Should we run OCR system per system rather than on whole sheet?");
+    }
 }
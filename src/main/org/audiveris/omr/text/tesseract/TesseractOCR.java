@@ -82,6 +82,9 @@ public class TesseractOCR
     /** To assign a serial number to each image processing order. */
     private final AtomicInteger serial = new AtomicInteger(0);
 
+    /** Pool of initialized engines, allocated on demand. */
+    private TesseractPool pool;
+
     /**
      * Creates the TesseractOCR singleton.
      */
@@ -96,19 +99,21 @@ public class TesseractOCR
     public Set<String> getLanguages ()
     {
         if (isAvailable()) {
-            final Path ocrFolder = getOcrFolder();
             TreeSet<String> set = new TreeSet<>();
 
             try {
-                TessBaseAPI api = new TessBaseAPI();
+                final TesseractPool thePool = getPool();
+                final TessBaseAPI api = thePool.borrow("eng");
 
-                if (api.Init(ocrFolder.toString(), "eng") == 0) {
+                if (api != null) {
                     StringGenericVector languages = new StringGenericVector();
                     api.GetAvailableLanguagesAsVector(languages);
 
                     while (!languages.empty()) {
                         set.add(languages.pop_back().string().getString());
                     }
+
+                    thePool.release("eng", api);
                 } else {
                     logger.warn("Error in loading Tesseract languages");
                 }
@@ -142,6 +147,23 @@ public class TesseractOCR
         return OCR_FOLDER;
     }
 
+    //---------//
+    // getPool //
+    //---------//
+    /**
+     * Report the pool of Tesseract engines.
+     *
+     * @return the engine pool, allocated if needed
+     */
+    public synchronized TesseractPool getPool ()
+    {
+        if (pool == null) {
+            pool = new TesseractPool(getOcrFolder());
+        }
+
+        return pool;
+    }
+
     //----------//
     // identify //
     //----------//
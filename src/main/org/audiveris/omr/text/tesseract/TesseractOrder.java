@@ -29,21 +29,18 @@ import org.audiveris.omr.text.TextLine;
 import org.audiveris.omr.text.TextWord;
 
 import org.bytedeco.javacpp.*;
-import static org.bytedeco.javacpp.lept.*;
 import static org.bytedeco.javacpp.tesseract.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -51,13 +48,14 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriter;
 import javax.imageio.spi.IIORegistry;
-import javax.imageio.stream.ImageOutputStream;
 
 /**
  * Class {@code TesseractOrder} carries a processing order submitted to Tesseract OCR
  * program.
+ * <p>
+ * The image is handed to Tesseract as a raw buffer of 8-bit gray pixels, and processed by an
+ * engine borrowed from {@link TesseractPool}.
  *
  * @author Hervé Bitteur
  */
@@ -95,11 +93,17 @@ public class TesseractOrder
     /** Desired handling of layout. */
     private final int segMode;
 
-    /** The dedicated API. */
+    /** The API borrowed for processing. */
     private TessBaseAPI api;
 
-    /** The image being processed. */
-    private final PIX image;
+    /** Image width. */
+    private final int width;
+
+    /** Image height. */
+    private final int height;
+
+    /** Image gray pixels, row by row, one byte per pixel. */
+    private final byte[] pixels;
 
     //----------------//
     // TesseractOrder //
@@ -114,8 +118,7 @@ public class TesseractOrder
      * @param segMode       The desired page segmentation mode
      * @param bufferedImage The image to process
      * @throws UnsatisfiedLinkError When bridge to C++ could not be loaded
-     * @throws IOException          When temporary Tiff buffer failed
-     * @throws RuntimeException     When PIX image failed
+     * @throws IOException          When disk copy of image failed
      */
     public TesseractOrder (String label,
                            int serial,
@@ -132,14 +135,13 @@ public class TesseractOrder
         this.lang = lang;
         this.segMode = segMode;
 
-        // Build a PIX from the image provided
-        ByteBuffer buf = toTiffBuffer(bufferedImage);
-        buf.position(0);
-        image = pixReadMemTiff(buf, buf.capacity(), 0);
+        width = bufferedImage.getWidth();
+        height = bufferedImage.getHeight();
+        pixels = toGrayPixels(bufferedImage);
 
-        if (image == null) {
-            logger.warn("Invalid image {}", label);
-            throw new RuntimeException("Invalid image");
+        // Should we keep a local copy of this image on disk?
+        if (keepImage) {
+            writeTiff(bufferedImage);
         }
     }
 
@@ -147,7 +149,7 @@ public class TesseractOrder
     // process //
     //---------//
     /**
-     * Actually allocate a Tesseract API and recognize the image.
+     * Actually borrow a Tesseract API and recognize the image.
      *
      * @return the sequence of lines found
      */
@@ -158,34 +160,49 @@ public class TesseractOrder
         }
 
         try {
-            final Path ocrFolder = TesseractOCR.getInstance().getOcrFolder();
-            api = new TessBaseAPI();
+            final TesseractPool pool = TesseractOCR.getInstance().getPool();
+            api = pool.borrow(lang);
 
-            // Init API with proper language
-            if (api.Init(ocrFolder.toString(), lang) != 0) {
-                logger.warn("Could not initialize Tesseract with lang {}", lang);
-
-                return finish(null);
+            if (api == null) {
+                return null;
             }
 
-            // Set API image
-            api.SetImage(image);
+            boolean reusable = false;
+
+            try {
+                // Set API image
+                api.SetImage(pixels, width, height, 1, width);
 
-            // Perform layout analysis according to segmentation mode
-            api.SetPageSegMode(segMode);
-            api.AnalyseLayout();
+                // Perform layout analysis according to segmentation mode
+                api.SetPageSegMode(segMode);
+                api.AnalyseLayout();
 
-            // Perform image recognition
-            final int result = api.Recognize(null);
+                // Perform image recognition
+                final int result = api.Recognize(null);
+                reusable = true;
 
-            if (result != 0) {
-                logger.warn("Error in Tesseract recognize, exit code: {}", result);
+                if (result != 0) {
+                    logger.warn("Error in Tesseract recognize, exit code: {}", result);
 
-                return finish(null);
+                    return null;
+                }
+
+                // Extract lines
+                return getLines();
+            } finally {
+                if (reusable) {
+                    pool.release(lang, api);
+                } else {
+                    pool.discard(api);
+                }
+
+                api = null;
             }
+        } catch (InterruptedException ex) {
+            logger.warn("Interrupted while waiting for Tesseract engine");
+            Thread.currentThread().interrupt();
 
-            // Extract lines
-            return finish(getLines());
+            return null;
         } catch (UnsatisfiedLinkError ex) {
             if (!userWarned) {
                 logger.warn("Could not link Tesseract engine", ex);
@@ -197,28 +214,6 @@ public class TesseractOrder
         }
     }
 
-    //--------//
-    // finish //
-    //--------//
-    /**
-     * Convenient way to cleanup Tesseract resources while ending the current processing
-     *
-     * @param lines the lines found, if any
-     * @return the lines found, if nay
-     */
-    private List<TextLine> finish (List<TextLine> lines)
-    {
-        if (image != null) {
-            pixDestroy(image);
-        }
-
-        if (api != null) {
-            api.End();
-        }
-
-        return lines;
-    }
-
     private Line2D getBaseline (ResultIterator rit,
                                 int level)
     {
@@ -393,52 +388,60 @@ public class TesseractOrder
     }
 
     //--------------//
-    // toTiffBuffer //
+    // toGrayPixels //
     //--------------//
     /**
-     * Convert the given image into a TIFF-formatted ByteBuffer for passing it directly
+     * Convert the given image into a buffer of 8-bit gray pixels, for passing it directly
      * to Tesseract.
-     * <p>
-     * A copy of the tiff buffer can be saved on disk, if so desired.
      *
      * @param image the input image
-     * @return a buffer in TIFF format
+     * @return the pixel values, row by row
      */
-    private ByteBuffer toTiffBuffer (BufferedImage image)
-            throws IOException
+    private static byte[] toGrayPixels (BufferedImage image)
     {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BufferedImage gray = image;
 
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
-            ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
-            writer.setOutput(ios);
-            writer.write(image);
-        } catch (IOException ex) {
-            logger.warn("Could not write image", ex);
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            gray = new BufferedImage(
+                    image.getWidth(),
+                    image.getHeight(),
+                    BufferedImage.TYPE_BYTE_GRAY);
+
+            Graphics2D g = gray.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
         }
 
-        ByteBuffer buf = ByteBuffer.allocate(baos.size());
-        byte[] bytes = baos.toByteArray();
-        buf.put(bytes);
+        final byte[] bytes = new byte[image.getWidth() * image.getHeight()];
+        gray.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), bytes);
 
-        // Should we keep a local copy of this buffer on disk?
-        if (keepImage) {
-            String name = String.format("%03d-", serial) + ((label != null) ? label : "");
-            Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".tif");
+        return bytes;
+    }
 
-            // Make sure the TEMP directory exists
-            if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
-                Files.createDirectories(WellKnowns.TEMP_FOLDER);
-            }
+    //-----------//
+    // writeTiff //
+    //-----------//
+    /**
+     * Save a TIFF copy of the image sent to Tesseract.
+     *
+     * @param image the input image
+     */
+    private void writeTiff (BufferedImage image)
+            throws IOException
+    {
+        String name = String.format("%03d-", serial) + ((label != null) ? label : "");
+        Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".tif");
 
-            try (FileOutputStream fos = new FileOutputStream(path.toFile())) {
-                fos.write(bytes);
-            } catch (IOException ex) {
-                logger.warn("Could not write to {}", path, ex);
-            }
+        // Make sure the TEMP directory exists
+        if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
+            Files.createDirectories(WellKnowns.TEMP_FOLDER);
         }
 
-        return buf;
+        try {
+            ImageIO.write(image, "tiff", path.toFile());
+        } catch (IOException ex) {
+            logger.warn("Could not write to {}", path, ex);
+        }
     }
 
     /**
@@ -0,0 +1,207 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    T e s s e r a c t P o o l                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.text.tesseract;
+
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.bytedeco.javacpp.tesseract.TessBaseAPI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Class {@code TesseractPool} keeps Tesseract engines already initialized, per language
+ * specification, so that language data is loaded only once per engine.
+ * <p>
+ * An engine is borrowed for one OCR order and then released.
+ * The total number of engines is bounded by the number of CPUs.
+ * When this bound is reached, an idle engine of another language is ended to make room, otherwise
+ * the caller waits for an engine to be released.
+ *
+ * @author Hervé Bitteur
+ */
+public class TesseractPool
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(TesseractPool.class);
+
+    /** Folder of Tesseract data. */
+    private final Path ocrFolder;
+
+    /** Maximum number of engines. */
+    private final int maxEngines = OmrExecutors.getNumberOfCpus();
+
+    /** Idle engines, per language specification. */
+    private final Map<String, Deque<TessBaseAPI>> idles = new HashMap<>();
+
+    /** Number of engines, either idle or borrowed or being initialized. */
+    private int engineCount;
+
+    /**
+     * Creates a new {@code TesseractPool} object.
+     *
+     * @param ocrFolder the folder of Tesseract data
+     */
+    public TesseractPool (Path ocrFolder)
+    {
+        this.ocrFolder = ocrFolder;
+    }
+
+    //--------//
+    // borrow //
+    //--------//
+    /**
+     * Borrow an engine initialized for the provided language specification.
+     *
+     * @param lang the language specification
+     * @return the engine, or null if engine could not be initialized
+     * @throws InterruptedException if interrupted while waiting for an engine
+     */
+    public TessBaseAPI borrow (String lang)
+            throws InterruptedException
+    {
+        synchronized (this) {
+            while (true) {
+                final Deque<TessBaseAPI> deque = idles.get(lang);
+
+                if ((deque != null) && !deque.isEmpty()) {
+                    return deque.pop();
+                }
+
+                if ((engineCount < maxEngines) || endIdle()) {
+                    engineCount++;
+
+                    break;
+                }
+
+                wait();
+            }
+        }
+
+        // Initialization is long, hence performed outside lock
+        TessBaseAPI api = null;
+
+        try {
+            api = new TessBaseAPI();
+
+            if (api.Init(ocrFolder.toString(), lang) == 0) {
+                logger.debug("Tesseract engine initialized for {}", lang);
+
+                return api;
+            }
+
+            logger.warn("Could not initialize Tesseract with lang {}", lang);
+            discard(api);
+
+            return null;
+        } catch (Throwable ex) {
+            discard(api);
+            throw ex;
+        }
+    }
+
+    //---------//
+    // discard //
+    //---------//
+    /**
+     * Dispose of a borrowed engine, no longer usable.
+     *
+     * @param api the engine to end, perhaps null
+     */
+    public void discard (TessBaseAPI api)
+    {
+        try {
+            if (api != null) {
+                api.End();
+            }
+        } finally {
+            synchronized (this) {
+                engineCount--;
+                notifyAll();
+            }
+        }
+    }
+
+    //---------//
+    // release //
+    //---------//
+    /**
+     * Give back a borrowed engine, for use by another order on the same language.
+     *
+     * @param lang the language specification the engine was borrowed for
+     * @param api  the engine
+     */
+    public void release (String lang,
+                         TessBaseAPI api)
+    {
+        api.Clear(); // Free image and recognition results
+
+        synchronized (this) {
+            Deque<TessBaseAPI> deque = idles.get(lang);
+
+            if (deque == null) {
+                deque = new ArrayDeque<>();
+                idles.put(lang, deque);
+            }
+
+            deque.push(api);
+            notifyAll();
+        }
+    }
+
+    //---------//
+    // endIdle //
+    //---------//
+    /**
+     * End one idle engine, to make room for an engine on another language.
+     *
+     * @return true if an idle engine was found
+     */
+    private boolean endIdle ()
+    {
+        for (Iterator<Deque<TessBaseAPI>> it = idles.values().iterator(); it.hasNext();) {
+            final Deque<TessBaseAPI> deque = it.next();
+
+            if (!deque.isEmpty()) {
+                deque.pop().End();
+                engineCount--;
+
+                if (deque.isEmpty()) {
+                    it.remove();
+                }
+
+                return true;
+            }
+
+            it.remove();
+        }
+
+        return false;
+    }
+}
@@ -52,6 +52,9 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 /**
  * Class {@code BasicIndex}
+ * <p>
+ * Lookups by location are performed via a {@link SpatialIndex} on entities bounds, unless the
+ * subclass opts out (see {@link #createSpatialIndex()}).
  *
  * @param <E> precise type for indexed entities
  * @author HervÃ© Bitteur
@@ -88,6 +91,9 @@ public class BasicIndex<E extends Entity>
     /** (debug) for easy inspection via browser. */
     private Collection<E> values;
 
+    /** Spatial index on entities bounds, if any. */
+    private final SpatialIndex<E> spatialIndex;
+
     /**
      * Creates a new {@code BasicIndex} object.
      *
@@ -105,6 +111,23 @@ public class BasicIndex<E extends Entity>
     protected BasicIndex ()
     {
         values = entities.values(); // Useful for debugging only
+        spatialIndex = createSpatialIndex();
+    }
+
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Signal that the bounds of an indexed entity have changed, so that it can be
+     * re-located by the spatial index.
+     *
+     * @param entity the modified entity
+     */
+    public void boundsChanged (E entity)
+    {
+        if (spatialIndex != null) {
+            spatialIndex.invalidate(entity);
+        }
     }
 
     //----------------------//
@@ -113,7 +136,11 @@ public class BasicIndex<E extends Entity>
     @Override
     public List<E> getContainedEntities (Rectangle rectangle)
     {
-        return Entities.containedEntities(iterator(), rectangle);
+        if (spatialIndex == null) {
+            return Entities.containedEntities(iterator(), rectangle);
+        }
+
+        return sortedById(spatialIndex.getContained(rectangle));
     }
 
     //-----------------------//
@@ -122,7 +149,19 @@ public class BasicIndex<E extends Entity>
     @Override
     public List<E> getContainingEntities (Point point)
     {
-        return Entities.containingEntities(iterator(), point);
+        if (spatialIndex == null) {
+            return Entities.containingEntities(iterator(), point);
+        }
+
+        final List<E> found = new ArrayList<>();
+
+        for (E entity : spatialIndex.getContaining(point)) {
+            if (entity.contains(point)) {
+                found.add(entity);
+            }
+        }
+
+        return sortedById(found);
     }
 
     //-------------//
@@ -232,6 +271,34 @@ public class BasicIndex<E extends Entity>
         this.lastId.set(lastId);
     }
 
+    //------------------------//
+    // getIntersectedEntities //
+    //------------------------//
+    /**
+     * Report the entities whose bounds intersect the provided rectangle.
+     *
+     * @param rectangle the intersecting rectangle
+     * @return the intersected entities, sorted by ID, perhaps empty but not null
+     */
+    public List<E> getIntersectedEntities (Rectangle rectangle)
+    {
+        if (spatialIndex == null) {
+            final List<E> found = new ArrayList<>();
+
+            for (E entity : entities.values()) {
+                final Rectangle bounds = entity.getBounds();
+
+                if ((bounds != null) && rectangle.intersects(bounds)) {
+                    found.add(entity);
+                }
+            }
+
+            return found;
+        }
+
+        return sortedById(spatialIndex.getIntersected(rectangle));
+    }
+
     //---------//
     // getName //
     //---------//
@@ -260,6 +327,10 @@ public class BasicIndex<E extends Entity>
 
         entities.put(id, entity);
 
+        if (spatialIndex != null) {
+            spatialIndex.insert(entity);
+        }
+
         if (isVipId(id)) {
             entity.setVip(true);
             logger.info("VIP insert {}", entity);
@@ -300,6 +371,10 @@ public class BasicIndex<E extends Entity>
 
         entities.put(id, entity);
 
+        if (spatialIndex != null) {
+            spatialIndex.insert(entity);
+        }
+
         if (isVipId(id)) {
             entity.setVip(true);
             logger.info("VIP registered {}", entity);
@@ -314,7 +389,11 @@ public class BasicIndex<E extends Entity>
     @Override
     public void remove (E entity)
     {
-        entities.remove(entity.getId());
+        final E removed = entities.remove(entity.getId());
+
+        if ((removed != null) && (spatialIndex != null)) {
+            spatialIndex.remove(removed);
+        }
     }
 
     //-------//
@@ -325,6 +404,10 @@ public class BasicIndex<E extends Entity>
     {
         lastId.set(0);
         entities.clear();
+
+        if (spatialIndex != null) {
+            spatialIndex.clear();
+        }
     }
 
     //-----------//
@@ -354,6 +437,23 @@ public class BasicIndex<E extends Entity>
         return sb.toString();
     }
 
+    //--------------------//
+    // createSpatialIndex //
+    //--------------------//
+    /**
+     * Create the spatial index to be used for lookups by location.
+     * <p>
+     * A subclass whose entities bounds may change without being signalled via
+     * {@link #boundsChanged(Entity)} should return null, to keep the plain browsing of all
+     * entities.
+     *
+     * @return the spatial index, or null
+     */
+    protected SpatialIndex<E> createSpatialIndex ()
+    {
+        return new SpatialIndex<>();
+    }
+
     //------------//
     // generateId //
     //------------//
@@ -406,6 +506,22 @@ public class BasicIndex<E extends Entity>
                                  Object parent)
     {
         values = entities.values();
+
+        if (spatialIndex != null) {
+            for (E entity : entities.values()) {
+                spatialIndex.insert(entity);
+            }
+        }
+    }
+
+    //------------//
+    // sortedById //
+    //------------//
+    private List<E> sortedById (List<E> list)
+    {
+        Collections.sort(list, Entities.byId);
+
+        return list;
     }
 
     //------------------//
@@ -0,0 +1,350 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   I n d e x e d M a x H e a p                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class {@code IndexedMaxHeap} is a binary max-heap of elements, indexed by element so
+ * that the priority of any element can be increased or decreased in logarithmic time.
+ * <p>
+ * Elements of equal priority are ordered by their insertion rank: the earliest inserted comes
+ * first.
+ * Elements are indexed by identity.
+ * <p>
+ * Priority values must not be NaN.
+ * This class is not thread-safe.
+ *
+ * @param <E> type of elements
+ * @author Hervé Bitteur
+ */
+public class IndexedMaxHeap<E>
+{
+
+    /** Heap array of nodes. */
+    private final List<Node<E>> heap = new ArrayList<>();
+
+    /** Node per element. */
+    private final Map<E, Node<E>> nodes = new IdentityHashMap<>();
+
+    /** Insertion rank generator. */
+    private long rank;
+
+    /**
+     * Creates a new {@code IndexedMaxHeap} object.
+     */
+    public IndexedMaxHeap ()
+    {
+    }
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Insert an element, unless it is already there.
+     *
+     * @param element  the element to insert
+     * @param priority the element priority
+     * @return true if inserted, false if element was already present
+     */
+    public boolean add (E element,
+                        double priority)
+    {
+        if (nodes.containsKey(element)) {
+            return false;
+        }
+
+        final Node<E> node = new Node<>(element, priority, rank++);
+        node.pos = heap.size();
+        heap.add(node);
+        nodes.put(element, node);
+        siftUp(node.pos);
+
+        return true;
+    }
+
+    //----------//
+    // contains //
+    //----------//
+    /**
+     * Tell whether the provided element is in heap.
+     *
+     * @param element the element to check
+     * @return true if present
+     */
+    public boolean contains (E element)
+    {
+        return nodes.containsKey(element);
+    }
+
+    //-------------//
+    // getPriority //
+    //-------------//
+    /**
+     * Report the current priority of an element.
+     *
+     * @param element the element in heap
+     * @return the element priority
+     * @throws IllegalArgumentException if element is not in heap
+     */
+    public double getPriority (E element)
+    {
+        return nodeOf(element).priority;
+    }
+
+    //---------//
+    // isEmpty //
+    //---------//
+    /**
+     * Tell whether the heap is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty ()
+    {
+        return heap.isEmpty();
+    }
+
+    //------//
+    // peek //
+    //------//
+    /**
+     * Report the element of highest priority, without removing it.
+     *
+     * @return the top element, or null if heap is empty
+     */
+    public E peek ()
+    {
+        return heap.isEmpty() ? null : heap.get(0).element;
+    }
+
+    //------//
+    // poll //
+    //------//
+    /**
+     * Remove and report the element of highest priority.
+     *
+     * @return the top element, or null if heap is empty
+     */
+    public E poll ()
+    {
+        if (heap.isEmpty()) {
+            return null;
+        }
+
+        final E top = heap.get(0).element;
+        remove(top);
+
+        return top;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove an element.
+     *
+     * @param element the element to remove
+     * @return true if removed, false if element was not present
+     */
+    public boolean remove (E element)
+    {
+        final Node<E> node = nodes.remove(element);
+
+        if (node == null) {
+            return false;
+        }
+
+        final int last = heap.size() - 1;
+
+        if (node.pos != last) {
+            final Node<E> moved = heap.get(last);
+            heap.set(node.pos, moved);
+            moved.pos = node.pos;
+            heap.remove(last);
+
+            if (!siftUp(moved.pos)) {
+                siftDown(moved.pos);
+            }
+        } else {
+            heap.remove(last);
+        }
+
+        return true;
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of elements in heap.
+     *
+     * @return count of elements
+     */
+    public int size ()
+    {
+        return heap.size();
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Modify the priority of an element already in heap.
+     *
+     * @param element  the element to update
+     * @param priority the new priority
+     * @throws IllegalArgumentException if element is not in heap
+     */
+    public void update (E element,
+                        double priority)
+    {
+        final Node<E> node = nodeOf(element);
+        final double old = node.priority;
+        node.priority = priority;
+
+        if (priority > old) {
+            siftUp(node.pos);
+        } else if (priority < old) {
+            siftDown(node.pos);
+        }
+    }
+
+    //--------//
+    // nodeOf //
+    //--------//
+    private Node<E> nodeOf (E element)
+    {
+        final Node<E> node = nodes.get(element);
+
+        if (node == null) {
+            throw new IllegalArgumentException("Element not in heap " + element);
+        }
+
+        return node;
+    }
+
+    //----------//
+    // siftDown //
+    //----------//
+    private void siftDown (int pos)
+    {
+        final int size = heap.size();
+        final Node<E> node = heap.get(pos);
+
+        while (true) {
+            final int left = (2 * pos) + 1;
+
+            if (left >= size) {
+                break;
+            }
+
+            final int right = left + 1;
+            final int child = ((right < size) && heap.get(right).isAbove(heap.get(left))) ? right
+                    : left;
+            final Node<E> childNode = heap.get(child);
+
+            if (!childNode.isAbove(node)) {
+                break;
+            }
+
+            heap.set(pos, childNode);
+            childNode.pos = pos;
+            pos = child;
+        }
+
+        heap.set(pos, node);
+        node.pos = pos;
+    }
+
+    //--------//
+    // siftUp //
+    //--------//
+    /**
+     * Move the node at provided position up, as needed.
+     *
+     * @param pos initial node position
+     * @return true if node has moved
+     */
+    private boolean siftUp (int pos)
+    {
+        final int start = pos;
+        final Node<E> node = heap.get(pos);
+
+        while (pos > 0) {
+            final int parent = (pos - 1) / 2;
+            final Node<E> parentNode = heap.get(parent);
+
+            if (!node.isAbove(parentNode)) {
+                break;
+            }
+
+            heap.set(pos, parentNode);
+            parentNode.pos = pos;
+            pos = parent;
+        }
+
+        heap.set(pos, node);
+        node.pos = pos;
+
+        return pos != start;
+    }
+
+    //------//
+    // Node //
+    //------//
+    private static class Node<E>
+    {
+
+        final E element;
+
+        final long rank;
+
+        double priority;
+
+        int pos;
+
+        Node (E element,
+              double priority,
+              long rank)
+        {
+            this.element = element;
+            this.priority = priority;
+            this.rank = rank;
+        }
+
+        /**
+         * Tell whether this node must be placed above that node.
+         */
+        boolean isAbove (Node<E> that)
+        {
+            if (priority != that.priority) {
+                return priority > that.priority;
+            }
+
+            return rank < that.rank;
+        }
+    }
+}
@@ -68,8 +68,10 @@ public class OmrExecutors
 
     private static final Pool cachedLows = new CachedLows();
 
+    private static final Pool ios = new Ios();
+
     /** To handle all the pools as a whole. */
-    private static final Collection<Pool> allPools = Arrays.asList(cachedLows, lows, highs);
+    private static final Collection<Pool> allPools = Arrays.asList(cachedLows, lows, highs, ios);
 
     /** To prevent parallel creation of pools when closing. */
     private static volatile boolean creationAllowed = true;
@@ -116,6 +118,20 @@ public class OmrExecutors
         return highs.getPool();
     }
 
+    //---------------//
+    // getIoExecutor //
+    //---------------//
+    /**
+     * Return the (single) pool of one I/O thread, so that tasks are run one after the other
+     * in submission order.
+     *
+     * @return the I/O pool, allocated if needed
+     */
+    public static ExecutorService getIoExecutor ()
+    {
+        return ios.getPool();
+    }
+
     //----------------//
     // getLowExecutor //
     //----------------//
@@ -436,6 +452,28 @@ public class OmrExecutors
         }
     }
 
+    //-----//
+    // Ios //
+    //-----//
+    /** Single-thread pool for I/O. */
+    private static class Ios
+            extends Pool
+    {
+
+        @Override
+        public String getName ()
+        {
+            return "io";
+        }
+
+        @Override
+        protected ExecutorService createPool ()
+        {
+            return Executors.newSingleThreadExecutor(
+                    new Factory(getName(), Thread.NORM_PRIORITY, 0));
+        }
+    }
+
     //------//
     // Lows //
     //------//
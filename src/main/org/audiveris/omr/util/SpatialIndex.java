@@ -0,0 +1,495 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     S p a t i a l I n d e x                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class {@code SpatialIndex} is a bucketed grid on entities bounds, meant to speed up
+ * the lookup of entities by location.
+ * <p>
+ * The plane is divided into square cells, and each entity is referenced by all the cells its
+ * bounds overlap.
+ * A lookup thus browses only the entities referenced by the cells that overlap the lookup area,
+ * and checks them against their <b>current</b> bounds.
+ * <p>
+ * Entity bounds are not read when the entity is inserted, but only at the next lookup, since
+ * many entities (sections, ensembles, ...) are still being built when they get registered.
+ * For the same reason, an entity whose bounds change later on must be signalled via
+ * {@link #invalidate(Entity)}, so that it gets re-located at the next lookup.
+ * <p>
+ * Entities are reported in their insertion order.
+ * <p>
+ * All methods are thread-safe.
+ *
+ * @param <E> precise entity type
+ * @author Hervé Bitteur
+ */
+public class SpatialIndex<E extends Entity>
+{
+
+    private static final Constants constants = new Constants();
+
+    /** To sort entries by insertion order. */
+    private static final Comparator<Entry<?>> bySeq = new Comparator<Entry<?>>()
+    {
+        @Override
+        public int compare (Entry<?> e1,
+                            Entry<?> e2)
+        {
+            return Long.compare(e1.seq, e2.seq);
+        }
+    };
+
+    /** Side of a square cell. */
+    private final int cellSize;
+
+    /** All entries, per entity. */
+    private final Map<E, Entry<E>> entries = new IdentityHashMap<>();
+
+    /** Entries referenced, per cell key. */
+    private final Map<Long, List<Entry<E>>> cells = new HashMap<>();
+
+    /** Entries not (yet) located in cells. */
+    private final Set<Entry<E>> pendings = new HashSet<>();
+
+    /** Sequence for insertion order. */
+    private long seq;
+
+    /**
+     * Creates a new {@code SpatialIndex} object, with default cell size.
+     */
+    public SpatialIndex ()
+    {
+        this(constants.cellSize.getValue());
+    }
+
+    /**
+     * Creates a new {@code SpatialIndex} object.
+     *
+     * @param cellSize side of a square cell, in pixels
+     */
+    public SpatialIndex (int cellSize)
+    {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Illegal cell size " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Remove all entities.
+     */
+    public synchronized void clear ()
+    {
+        entries.clear();
+        cells.clear();
+        pendings.clear();
+    }
+
+    //--------------//
+    // getContained //
+    //--------------//
+    /**
+     * Report the entities whose bounds are contained in the provided rectangle.
+     *
+     * @param rect the containing rectangle
+     * @return the contained entities, perhaps empty but not null
+     */
+    public synchronized List<E> getContained (Rectangle rect)
+    {
+        final List<Entry<E>> found = new ArrayList<>();
+
+        for (Entry<E> entry : lookup(rect)) {
+            final Rectangle bounds = entry.entity.getBounds();
+
+            if ((bounds != null) && rect.contains(bounds)) {
+                found.add(entry);
+            }
+        }
+
+        return entities(found);
+    }
+
+    //---------------//
+    // getContaining //
+    //---------------//
+    /**
+     * Report the entities whose bounds contain the provided point.
+     * <p>
+     * The caller may have to perform a more precise check, on entity actual shape.
+     *
+     * @param point the provided point
+     * @return the containing entities, perhaps empty but not null
+     */
+    public synchronized List<E> getContaining (Point point)
+    {
+        final List<Entry<E>> found = new ArrayList<>();
+
+        for (Entry<E> entry : lookup(new Rectangle(point.x, point.y, 1, 1))) {
+            final Rectangle bounds = entry.entity.getBounds();
+
+            if ((bounds != null) && bounds.contains(point)) {
+                found.add(entry);
+            }
+        }
+
+        return entities(found);
+    }
+
+    //----------------//
+    // getIntersected //
+    //----------------//
+    /**
+     * Report the entities whose bounds intersect the provided rectangle.
+     *
+     * @param rect the intersecting rectangle
+     * @return the intersected entities, perhaps empty but not null
+     */
+    public synchronized List<E> getIntersected (Rectangle rect)
+    {
+        final List<Entry<E>> found = new ArrayList<>();
+
+        for (Entry<E> entry : lookup(rect)) {
+            final Rectangle bounds = entry.entity.getBounds();
+
+            if ((bounds != null) && rect.intersects(bounds)) {
+                found.add(entry);
+            }
+        }
+
+        return entities(found);
+    }
+
+    //--------//
+    // insert //
+    //--------//
+    /**
+     * Insert an entity, unless it is already there.
+     *
+     * @param entity the entity to insert
+     */
+    public synchronized void insert (E entity)
+    {
+        if (!entries.containsKey(entity)) {
+            final Entry<E> entry = new Entry<>(entity, seq++);
+            entries.put(entity, entry);
+            pendings.add(entry);
+        }
+    }
+
+    //------------//
+    // invalidate //
+    //------------//
+    /**
+     * Signal that the bounds of the provided entity have changed.
+     *
+     * @param entity the modified entity
+     */
+    public synchronized void invalidate (E entity)
+    {
+        final Entry<E> entry = entries.get(entity);
+
+        if ((entry != null) && (entry.box != null)) {
+            unlocate(entry);
+            pendings.add(entry);
+        }
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove an entity.
+     *
+     * @param entity the entity to remove
+     */
+    public synchronized void remove (E entity)
+    {
+        final Entry<E> entry = entries.remove(entity);
+
+        if (entry != null) {
+            if (entry.box != null) {
+                unlocate(entry);
+            } else {
+                pendings.remove(entry);
+            }
+        }
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of entities in index.
+     *
+     * @return count of entities
+     */
+    public synchronized int size ()
+    {
+        return entries.size();
+    }
+
+    //----------//
+    // entities //
+    //----------//
+    private List<E> entities (List<Entry<E>> found)
+    {
+        if (found.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Collections.sort(found, bySeq);
+
+        final List<E> list = new ArrayList<>(found.size());
+
+        for (Entry<E> entry : found) {
+            list.add(entry.entity);
+        }
+
+        return list;
+    }
+
+    //-----//
+    // key //
+    //-----//
+    private static long key (int cx,
+                             int cy)
+    {
+        return (((long) cx) << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    //--------//
+    // locate //
+    //--------//
+    /**
+     * Locate pending entries according to their current bounds.
+     * Entries with no bounds are kept pending.
+     */
+    private void locate ()
+    {
+        for (Iterator<Entry<E>> it = pendings.iterator(); it.hasNext();) {
+            final Entry<E> entry = it.next();
+            final Rectangle bounds = entry.entity.getBounds();
+
+            if (bounds != null) {
+                it.remove();
+                entry.box = toCells(bounds);
+
+                for (int cy = entry.box.y; cy < (entry.box.y + entry.box.height); cy++) {
+                    for (int cx = entry.box.x; cx < (entry.box.x + entry.box.width); cx++) {
+                        final Long key = key(cx, cy);
+                        List<Entry<E>> list = cells.get(key);
+
+                        if (list == null) {
+                            cells.put(key, list = new ArrayList<>());
+                        }
+
+                        list.add(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    //--------//
+    // lookup //
+    //--------//
+    /**
+     * Report the located entries whose cells overlap the provided rectangle,
+     * each entry being reported only once.
+     *
+     * @param rect the lookup rectangle
+     * @return the candidate entries
+     */
+    private List<Entry<E>> lookup (Rectangle rect)
+    {
+        locate();
+
+        final List<Entry<E>> found = new ArrayList<>();
+        final Rectangle area = toCells(rect);
+
+        if (((long) area.width * area.height) <= cells.size()) {
+            for (int cy = area.y; cy < (area.y + area.height); cy++) {
+                for (int cx = area.x; cx < (area.x + area.width); cx++) {
+                    collect(cx, cy, cells.get(key(cx, cy)), area, found);
+                }
+            }
+        } else {
+            // Area larger than populated cells, browse these cells instead
+            for (Map.Entry<Long, List<Entry<E>>> mapEntry : cells.entrySet()) {
+                final long key = mapEntry.getKey();
+                final int cx = (int) (key >> 32);
+                final int cy = (int) key;
+
+                if (area.contains(cx, cy)) {
+                    collect(cx, cy, mapEntry.getValue(), area, found);
+                }
+            }
+        }
+
+        return found;
+    }
+
+    //---------//
+    // collect //
+    //---------//
+    /**
+     * Collect the entries of a cell, each entry being reported only from the first cell
+     * it shares with lookup area.
+     *
+     * @param cx    cell abscissa
+     * @param cy    cell ordinate
+     * @param list  the cell entries, perhaps null
+     * @param area  the lookup area (in cell units)
+     * @param found (output) the collected entries
+     */
+    private static <E> void collect (int cx,
+                                     int cy,
+                                     List<Entry<E>> list,
+                                     Rectangle area,
+                                     List<Entry<E>> found)
+    {
+        if (list != null) {
+            for (Entry<E> entry : list) {
+                if ((cx == Math.max(area.x, entry.box.x)) && (cy == Math.max(area.y, entry.box.y))) {
+                    found.add(entry);
+                }
+            }
+        }
+    }
+
+    //---------//
+    // toCells //
+    //---------//
+    /**
+     * Report the rectangle of cells overlapped by the provided rectangle.
+     *
+     * @param rect the provided rectangle (in pixels)
+     * @return the rectangle of cells (in cell units)
+     */
+    private Rectangle toCells (Rectangle rect)
+    {
+        final int cx0 = toCell(rect.x);
+        final int cy0 = toCell(rect.y);
+        final int cx1 = toCell(((long) rect.x + Math.max(1, rect.width)) - 1);
+        final int cy1 = toCell(((long) rect.y + Math.max(1, rect.height)) - 1);
+
+        return new Rectangle(cx0, cy0, cx1 - cx0 + 1, cy1 - cy0 + 1);
+    }
+
+    //--------//
+    // toCell //
+    //--------//
+    /**
+     * Report the cell index of a pixel coordinate.
+     *
+     * @param coord the pixel coordinate
+     * @return the cell index (rounded towards negative infinity)
+     */
+    private int toCell (long coord)
+    {
+        final long cell = coord / cellSize;
+
+        return (int) (((coord < 0) && ((cell * cellSize) != coord)) ? (cell - 1) : cell);
+    }
+
+    //----------//
+    // unlocate //
+    //----------//
+    private void unlocate (Entry<E> entry)
+    {
+        for (int cy = entry.box.y; cy < (entry.box.y + entry.box.height); cy++) {
+            for (int cx = entry.box.x; cx < (entry.box.x + entry.box.width); cx++) {
+                final Long key = key(cx, cy);
+                final List<Entry<E>> list = cells.get(key);
+
+                if (list != null) {
+                    list.remove(entry);
+
+                    if (list.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+
+        entry.box = null;
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer cellSize = new Constant.Integer(
+                "pixels",
+                64,
+                "Side of a spatial index cell");
+    }
+
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * Entity as referenced in index.
+     */
+    private static class Entry<E>
+    {
+
+        /** The entity. */
+        final E entity;
+
+        /** Insertion order. */
+        final long seq;
+
+        /** Cells overlapped, or null if not located. */
+        Rectangle box;
+
+        Entry (E entity,
+               long seq)
+        {
+            this.entity = entity;
+            this.seq = seq;
+        }
+    }
+}
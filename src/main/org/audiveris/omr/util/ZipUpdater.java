@@ -0,0 +1,685 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       Z i p U p d a t e r                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Class {@code ZipUpdater} updates a zip file in place, by appending new or replaced
+ * entries and then a new central directory.
+ * <p>
+ * Unlike a zip file system, which rewrites the whole file as soon as one entry is modified, the
+ * data of all other entries is left untouched.
+ * The original central directory is not overwritten either, so that the file remains a valid zip
+ * until the new central directory is completely written.
+ * If commit fails, the file is truncated back to its original size.
+ * <p>
+ * The data of a replaced or removed entry, as well as any former central directory, is not
+ * reclaimed, see {@link #getWasteRatio()} to decide when the file should be rewritten as a whole.
+ * <p>
+ * The CRC-32 and size recorded in the central directory for each entry are used as content
+ * hash: an entry put with the same content as the existing one is not rewritten.
+ * <p>
+ * Zip64 files are not supported.
+ * An instance is meant for one update: the entries are put or removed, then {@link #commit()}
+ * is called, and finally {@link #close()}.
+ *
+ * @author Hervé Bitteur
+ */
+public class ZipUpdater
+        implements Closeable
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(ZipUpdater.class);
+
+    private static final int LOC_SIG = 0x04034b50;
+
+    private static final int CEN_SIG = 0x02014b50;
+
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int LOC_HDR = 30;
+
+    private static final int CEN_HDR = 46;
+
+    private static final int END_HDR = 22;
+
+    private static final int ZIP64_LOCATOR_HDR = 20;
+
+    /** Flag bit for sizes in data descriptor. */
+    private static final int DESCRIPTOR_FLAG = 0x0008;
+
+    /** Flag bit for UTF-8 names. */
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final int VERSION = 20;
+
+    /** MS-DOS directory attribute. */
+    private static final int DIR_ATTRIBUTE = 0x10;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+
+    private static final int MAX_16 = 0xFFFF;
+
+    /** Path to zip file. */
+    private final Path path;
+
+    /** Channel on zip file. */
+    private final FileChannel channel;
+
+    /** Live entries, in central directory order. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /** Offset of the original central directory. */
+    private final long cenOffset;
+
+    /** Bytes of entries data not used by any original entry. */
+    private final long waste;
+
+    /** Has any entry been put or removed?. */
+    private boolean modified;
+
+    /**
+     * Open a zip file for update.
+     *
+     * @param path the zip file
+     * @throws IOException if file cannot be read, or is not a supported zip file
+     */
+    public ZipUpdater (Path path)
+            throws IOException
+    {
+        this(path, FileChannel.open(path, READ, WRITE));
+    }
+
+    /**
+     * Open a zip file for update, through the provided channel.
+     *
+     * @param path    the zip file
+     * @param channel channel open for read and write on zip file
+     * @throws IOException if file cannot be read, or is not a supported zip file
+     */
+    ZipUpdater (Path path,
+                FileChannel channel)
+            throws IOException
+    {
+        this.path = path;
+        this.channel = channel;
+
+        try {
+            cenOffset = readCentralDirectory();
+
+            long used = 0;
+
+            for (Entry entry : entries.values()) {
+                used += entry.span;
+            }
+
+            waste = Math.max(0, cenOffset - used);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    //-------//
+    // close //
+    //-------//
+    @Override
+    public void close ()
+            throws IOException
+    {
+        channel.close();
+    }
+
+    //--------//
+    // commit //
+    //--------//
+    /**
+     * Append the new entries and the updated central directory.
+     * <p>
+     * Entries data is forced to disk before the new central directory is written.
+     * If anything fails, the file is truncated back to its original content.
+     *
+     * @throws IOException if writing fails
+     */
+    public void commit ()
+            throws IOException
+    {
+        if (!modified) {
+            return;
+        }
+
+        // Check everything fits with no zip64 extension
+        final long start = channel.size();
+        long end = start;
+
+        for (Entry entry : entries.values()) {
+            if (entry.record == null) {
+                end += (LOC_HDR + entry.nameBytes.length + entry.data.length);
+            }
+        }
+
+        final long newCenOffset = end;
+
+        for (Entry entry : entries.values()) {
+            end += (entry.record != null) ? entry.record.length
+                    : (CEN_HDR + entry.nameBytes.length);
+        }
+
+        if ((end > MAX_32) || (entries.size() >= MAX_16)) {
+            throw new IOException("Zip64 needed for " + path);
+        }
+
+        try {
+            append(start, newCenOffset);
+        } catch (IOException | RuntimeException ex) {
+            rollback(start);
+            throw ex;
+        }
+
+        modified = false;
+    }
+
+    //----------//
+    // contains //
+    //----------//
+    /**
+     * Tell whether the zip file contains an entry with the provided name.
+     *
+     * @param name entry name
+     * @return true if found
+     */
+    public boolean contains (String name)
+    {
+        return entries.containsKey(name);
+    }
+
+    //---------------//
+    // getWasteRatio //
+    //---------------//
+    /**
+     * Report the ratio of entries data, in the original file, not used by any entry.
+     *
+     * @return the waste ratio in [0..1]
+     */
+    public double getWasteRatio ()
+    {
+        return (cenOffset == 0) ? 0 : ((double) waste / cenOffset);
+    }
+
+    //-----//
+    // put //
+    //-----//
+    /**
+     * Put an entry with the provided content, unless the same content is already there.
+     * <p>
+     * Missing parent directory entries are added as well.
+     *
+     * @param name    entry name, using '/' as separator
+     * @param content entry content
+     * @return true if entry is written, false if content is unchanged
+     * @throws IOException if compression fails
+     */
+    public boolean put (String name,
+                        byte[] content)
+            throws IOException
+    {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(content);
+
+        final long crc = crc32.getValue();
+        final Entry old = entries.get(name);
+
+        if ((old != null) && (old.crc == crc) && (old.size == content.length)) {
+            return false;
+        }
+
+        addParents(name);
+        entries.remove(name);
+        entries.put(name, new Entry(name, DEFLATED, crc, content.length, deflate(content)));
+        modified = true;
+
+        return true;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove the entry with the provided name.
+     *
+     * @param name entry name
+     * @return true if entry was found
+     */
+    public boolean remove (String name)
+    {
+        if (entries.remove(name) != null) {
+            modified = true;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    //------------//
+    // addParents //
+    //------------//
+    private void addParents (String name)
+    {
+        int i = name.indexOf('/');
+
+        while ((i >= 0) && (i < (name.length() - 1))) {
+            final String dir = name.substring(0, i + 1);
+
+            if (!entries.containsKey(dir)) {
+                entries.put(dir, new Entry(dir, STORED, 0, 0, new byte[0]));
+            }
+
+            i = name.indexOf('/', i + 1);
+        }
+    }
+
+    //----------//
+    // allocate //
+    //----------//
+    private static ByteBuffer allocate (int size)
+    {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //--------//
+    // append //
+    //--------//
+    /**
+     * Append new entries, then the central directory and end record, beyond the
+     * original end of file.
+     *
+     * @param start        current end of file
+     * @param newCenOffset offset of the new central directory
+     * @throws IOException if writing fails
+     */
+    private void append (long start,
+                         long newCenOffset)
+            throws IOException
+    {
+        final int[] dos = dosDateTime();
+        long pos = start;
+
+        for (Entry entry : entries.values()) {
+            if (entry.record == null) {
+                entry.locOffset = pos;
+                pos = write(localHeader(entry, dos), pos);
+                pos = write(ByteBuffer.wrap(entry.data), pos);
+            }
+        }
+
+        channel.force(false);
+
+        // Central directory
+        for (Entry entry : entries.values()) {
+            final byte[] record = (entry.record != null) ? entry.record
+                    : centralRecord(entry, dos);
+            pos = write(ByteBuffer.wrap(record), pos);
+        }
+
+        final ByteBuffer buf = allocate(END_HDR);
+        buf.putInt(END_SIG);
+        buf.putShort((short) 0); // This disk
+        buf.putShort((short) 0); // Disk of central directory
+        buf.putShort((short) entries.size());
+        buf.putShort((short) entries.size());
+        buf.putInt((int) (pos - newCenOffset));
+        buf.putInt((int) newCenOffset);
+        buf.putShort((short) 0); // No comment
+        buf.flip();
+        write(buf, pos);
+
+        channel.force(true);
+
+        for (Entry entry : entries.values()) {
+            if (entry.record == null) {
+                entry.record = centralRecord(entry, dos);
+                entry.data = null;
+            }
+        }
+    }
+
+    //---------------//
+    // centralRecord //
+    //---------------//
+    private static byte[] centralRecord (Entry entry,
+                                         int[] dos)
+    {
+        final ByteBuffer buf = allocate(CEN_HDR + entry.nameBytes.length);
+        buf.putInt(CEN_SIG);
+        buf.putShort((short) VERSION); // Made by
+        buf.putShort((short) VERSION); // Needed
+        buf.putShort((short) UTF8_FLAG);
+        buf.putShort((short) entry.method);
+        buf.putShort((short) dos[1]);
+        buf.putShort((short) dos[0]);
+        buf.putInt((int) entry.crc);
+        buf.putInt(entry.data.length);
+        buf.putInt((int) entry.size);
+        buf.putShort((short) entry.nameBytes.length);
+        buf.putShort((short) 0); // Extra
+        buf.putShort((short) 0); // Comment
+        buf.putShort((short) 0); // Disk
+        buf.putShort((short) 0); // Internal attributes
+        buf.putInt(entry.name.endsWith("/") ? DIR_ATTRIBUTE : 0);
+        buf.putInt((int) entry.locOffset);
+        buf.put(entry.nameBytes);
+
+        return buf.array();
+    }
+
+    //---------//
+    // deflate //
+    //---------//
+    private static byte[] deflate (byte[] content)
+            throws IOException
+    {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+            try (DeflaterOutputStream dos = new DeflaterOutputStream(bos, deflater)) {
+                dos.write(content);
+            }
+
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    //-------------//
+    // dosDateTime //
+    //-------------//
+    /**
+     * Current date and time, in MS-DOS format.
+     *
+     * @return date and time
+     */
+    private static int[] dosDateTime ()
+    {
+        final Calendar cal = Calendar.getInstance();
+        final int date = ((cal.get(Calendar.YEAR) - 1980) << 9)
+                         | ((cal.get(Calendar.MONTH) + 1) << 5)
+                         | cal.get(Calendar.DAY_OF_MONTH);
+        final int time = (cal.get(Calendar.HOUR_OF_DAY) << 11) | (cal.get(Calendar.MINUTE) << 5)
+                         | (cal.get(Calendar.SECOND) >> 1);
+
+        return new int[]{date, time};
+    }
+
+    //-------------//
+    // localHeader //
+    //-------------//
+    private static ByteBuffer localHeader (Entry entry,
+                                           int[] dos)
+    {
+        final ByteBuffer buf = allocate(LOC_HDR + entry.nameBytes.length);
+        buf.putInt(LOC_SIG);
+        buf.putShort((short) VERSION);
+        buf.putShort((short) UTF8_FLAG);
+        buf.putShort((short) entry.method);
+        buf.putShort((short) dos[1]);
+        buf.putShort((short) dos[0]);
+        buf.putInt((int) entry.crc);
+        buf.putInt(entry.data.length);
+        buf.putInt((int) entry.size);
+        buf.putShort((short) entry.nameBytes.length);
+        buf.putShort((short) 0); // Extra
+        buf.put(entry.nameBytes);
+        buf.flip();
+
+        return buf;
+    }
+
+    //------//
+    // read //
+    //------//
+    private ByteBuffer read (long pos,
+                             int length)
+            throws IOException
+    {
+        final ByteBuffer buf = allocate(length);
+
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("Truncated zip file " + path);
+            }
+        }
+
+        buf.flip();
+
+        return buf;
+    }
+
+    //----------------------//
+    // readCentralDirectory //
+    //----------------------//
+    /**
+     * Read the central directory records.
+     *
+     * @return the central directory offset
+     * @throws IOException if not a supported zip file
+     */
+    private long readCentralDirectory ()
+            throws IOException
+    {
+        // Look for end record, backwards since it may be followed by a comment
+        final long fileSize = channel.size();
+        final int tailSize = (int) Math.min(fileSize, END_HDR + MAX_16);
+        final ByteBuffer tail = read(fileSize - tailSize, tailSize);
+        int end = -1;
+
+        for (int i = tailSize - END_HDR; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG) {
+                end = i;
+
+                break;
+            }
+        }
+
+        if (end < 0) {
+            throw new IOException("No zip end record in " + path);
+        }
+
+        final int count = tail.getShort(end + 10) & MAX_16;
+        final long cenSize = tail.getInt(end + 12) & MAX_32;
+        final long offset = tail.getInt(end + 16) & MAX_32;
+
+        if (((end >= ZIP64_LOCATOR_HDR) && (tail.getInt(end - ZIP64_LOCATOR_HDR)
+                                                    == ZIP64_LOCATOR_SIG))
+                    || (count == MAX_16)
+                    || (offset == MAX_32)) {
+            throw new IOException("Zip64 not supported for " + path);
+        }
+
+        if ((tail.getShort(end + 4) != 0) || (tail.getShort(end + 6) != 0)) {
+            throw new IOException("Multi-disk zip not supported for " + path);
+        }
+
+        final ByteBuffer cen = read(offset, (int) cenSize);
+        int pos = 0;
+
+        for (int k = 0; k < count; k++) {
+            if (cen.getInt(pos) != CEN_SIG) {
+                throw new IOException("Invalid central directory in " + path);
+            }
+
+            final int flags = cen.getShort(pos + 8) & MAX_16;
+            final long crc = cen.getInt(pos + 16) & MAX_32;
+            final long compSize = cen.getInt(pos + 20) & MAX_32;
+            final long size = cen.getInt(pos + 24) & MAX_32;
+            final int nameLength = cen.getShort(pos + 28) & MAX_16;
+            final int extraLength = cen.getShort(pos + 30) & MAX_16;
+            final int commentLength = cen.getShort(pos + 32) & MAX_16;
+            final long locOffset = cen.getInt(pos + 42) & MAX_32;
+            final byte[] record = new byte[CEN_HDR + nameLength + extraLength + commentLength];
+            cen.position(pos);
+            cen.get(record);
+
+            final String name = new String(record, CEN_HDR, nameLength, StandardCharsets.UTF_8);
+
+            // Room used in entries data
+            final ByteBuffer loc = read(locOffset, LOC_HDR);
+
+            if (loc.getInt(0) != LOC_SIG) {
+                throw new IOException("Invalid local header for " + name + " in " + path);
+            }
+
+            final long span = LOC_HDR + (loc.getShort(26) & MAX_16) + (loc.getShort(28) & MAX_16)
+                              + compSize + (((flags & DESCRIPTOR_FLAG) != 0) ? 16 : 0);
+
+            entries.put(name, new Entry(name, record, crc, size, span));
+            pos += record.length;
+        }
+
+        return offset;
+    }
+
+    //----------//
+    // rollback //
+    //----------//
+    /**
+     * Cut off whatever was appended, to get back to the original file.
+     *
+     * @param start the original end of file
+     */
+    private void rollback (long start)
+    {
+        try {
+            channel.truncate(start);
+            channel.force(true);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Could not truncate {} back to {} bytes {}", path, start, ex.toString());
+        }
+    }
+
+    //-------//
+    // write //
+    //-------//
+    private long write (ByteBuffer buf,
+                        long pos)
+            throws IOException
+    {
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+
+        return pos;
+    }
+
+    //-------//
+    // Entry //
+    //-------//
+    private static class Entry
+    {
+
+        final String name;
+
+        final byte[] nameBytes;
+
+        /** Compression method. */
+        final int method;
+
+        /** CRC-32 of uncompressed content. */
+        final long crc;
+
+        /** Uncompressed size. */
+        final long size;
+
+        /** Room used in entries data, for an original entry. */
+        final long span;
+
+        /** Central directory record, null for an entry not yet written. */
+        byte[] record;
+
+        /** Compressed content, for an entry not yet written. */
+        byte[] data;
+
+        /** Offset of local header. */
+        long locOffset;
+
+        /** Original entry. */
+        Entry (String name,
+               byte[] record,
+               long crc,
+               long size,
+               long span)
+        {
+            this.name = name;
+            this.record = record;
+            this.crc = crc;
+            this.size = size;
+            this.span = span;
+            nameBytes = null;
+            method = -1;
+        }
+
+        /** New entry. */
+        Entry (String name,
+               int method,
+               long crc,
+               long size,
+               byte[] data)
+        {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            span = 0;
+        }
+    }
+}
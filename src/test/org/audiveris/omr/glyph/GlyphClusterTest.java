@@ -0,0 +1,133 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 G l y p h C l u s t e r T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.glyph;
+
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+
+import org.jgrapht.graph.SimpleGraph;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class {@code GlyphClusterTest} checks that each connected subset of a cluster is
+ * evaluated exactly once.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphClusterTest
+{
+
+    @Test
+    public void testChain ()
+    {
+        final List<Glyph> glyphs = createGlyphs(4);
+        final SimpleGraph<Glyph, GlyphLink> graph = createGraph(glyphs);
+
+        for (int i = 1; i < glyphs.size(); i++) {
+            graph.addEdge(glyphs.get(i - 1), glyphs.get(i), new GlyphLink.Nearby(1));
+        }
+
+        assertEquals(10, decompose(graph)); // 4 + 3 + 2 + 1
+    }
+
+    @Test
+    public void testClique ()
+    {
+        final List<Glyph> glyphs = createGlyphs(5);
+        final SimpleGraph<Glyph, GlyphLink> graph = createGraph(glyphs);
+
+        for (int i = 0; i < glyphs.size(); i++) {
+            for (int j = i + 1; j < glyphs.size(); j++) {
+                graph.addEdge(glyphs.get(i), glyphs.get(j), new GlyphLink.Nearby(1));
+            }
+        }
+
+        assertEquals(31, decompose(graph)); // All non-empty subsets
+    }
+
+    @Test
+    public void testCycle ()
+    {
+        final List<Glyph> glyphs = createGlyphs(4);
+        final SimpleGraph<Glyph, GlyphLink> graph = createGraph(glyphs);
+
+        for (int i = 0; i < glyphs.size(); i++) {
+            graph.addEdge(glyphs.get(i), glyphs.get((i + 1) % 4), new GlyphLink.Nearby(1));
+        }
+
+        assertEquals(13, decompose(graph)); // 4 + 4 + 4 + 1
+    }
+
+    /** Square glyphs, 2 pixels wide, laid out on a row. */
+    private static List<Glyph> createGlyphs (int count)
+    {
+        final List<Glyph> glyphs = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final RunTable table = new RunTable(Orientation.VERTICAL, 2, 2);
+            table.addRun(0, 0, 2);
+            table.addRun(1, 0, 2);
+            glyphs.add(new Glyph(3 * i, 0, table));
+        }
+
+        return glyphs;
+    }
+
+    private static SimpleGraph<Glyph, GlyphLink> createGraph (List<Glyph> glyphs)
+    {
+        final SimpleGraph<Glyph, GlyphLink> graph = new SimpleGraph<>(GlyphLink.class);
+
+        for (Glyph glyph : glyphs) {
+            graph.addVertex(glyph);
+        }
+
+        return graph;
+    }
+
+    /** Decompose the cluster and report the number of evaluations, all distinct. */
+    private static int decompose (SimpleGraph<Glyph, GlyphLink> graph)
+    {
+        final List<Set<Glyph>> evaluated = new ArrayList<>();
+
+        new GlyphCluster(new GlyphCluster.AbstractAdapter(graph)
+        {
+            @Override
+            public void evaluateGlyph (Glyph glyph,
+                                       Set<Glyph> parts)
+            {
+                assertEquals(4 * parts.size(), glyph.getWeight());
+                evaluated.add(parts);
+            }
+        }, null).decompose();
+
+        assertEquals(evaluated.size(), new HashSet<>(evaluated).size());
+
+        return evaluated.size();
+    }
+}
@@ -0,0 +1,111 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               A d a p t i v e F i l t e r T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.image.AdaptiveFilter.AdaptiveContext;
+import org.audiveris.omr.math.Population;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class {@code AdaptiveFilterTest} checks band-based binarization against the
+ * pixel-based one.
+ *
+ * @author Hervé Bitteur
+ */
+public class AdaptiveFilterTest
+{
+
+    private static final double MEAN_COEFF = 0.7;
+
+    private static final double STD_DEV_COEFF = 0.9;
+
+    @Test
+    public void testFilteredImage ()
+    {
+        ByteProcessor source = createImage(150, 1100);
+        ByteProcessor result = new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF).filteredImage();
+
+        // Pixel-based reference, tile moving only to the right
+        VerticalFilter filter = new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF);
+
+        for (int x = 0; x < source.getWidth(); x++) {
+            for (int y = 0; y < source.getHeight(); y++) {
+                int expected = filter.isFore(x, y) ? PixelSource.FOREGROUND
+                        : PixelSource.BACKGROUND;
+                assertEquals("x:" + x + " y:" + y, expected, result.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testGetContext ()
+    {
+        ByteProcessor source = createImage(60, 50);
+        AdaptiveFilter filter = new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF);
+        int half = filter.HALF_WINDOW_SIZE;
+        int[][] points = new int[][]{{0, 0}, {30, 25}, {59, 49}, {5, 40}};
+
+        for (int[] p : points) {
+            // Brute force reference
+            Population pop = new Population();
+
+            for (int ix = Math.max(0, p[0] - half); ix <= Math.min(59, p[0] + half); ix++) {
+                for (int iy = Math.max(0, p[1] - half); iy <= Math.min(49, p[1] + half); iy++) {
+                    pop.includeValue(source.get(ix, iy));
+                }
+            }
+
+            AdaptiveContext ctx = (AdaptiveContext) filter.getContext(p[0], p[1]);
+            assertEquals(pop.getMeanValue(), ctx.mean, 1e-9);
+            assertEquals(pop.getStandardDeviation(), ctx.standardDeviation, 1e-9);
+        }
+
+        assertNull(filter.getContext(-1, 0));
+    }
+
+    //-------------//
+    // createImage //
+    //-------------//
+    private ByteProcessor createImage (int width,
+                                       int height)
+    {
+        ByteProcessor image = new ByteProcessor(width, height);
+        Random random = new Random(123);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Some dark strokes on a noisy light background
+                boolean dark = ((x / 7) % 3 == 0) && ((y / 11) % 2 == 0);
+                int value = dark ? random.nextInt(80) : (150 + random.nextInt(106));
+                image.set(x, y, value);
+            }
+        }
+
+        return image;
+    }
+}
@@ -25,8 +25,11 @@ import ij.process.ByteProcessor;
 
 import org.audiveris.omr.math.TableUtil;
 
+import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.util.Random;
+
 /**
  *
  * @author Hervé Bitteur
@@ -63,6 +66,76 @@ public class ChamferDistanceTest
         TableUtil.dump("Distances to back:", toBack);
     }
 
+    /**
+     * Check that parallel processing gives the same table as sequential processing.
+     */
+    @Test
+    public void testParallel ()
+    {
+        final int[][][] masks = new int[][][]{
+            ChamferDistance.chessboard,
+            ChamferDistance.chamfer3,
+            ChamferDistance.chamfer5,
+            ChamferDistance.chamfer7};
+
+        for (int[][] mask : masks) {
+            for (boolean isShort : new boolean[]{true, false}) {
+                // Dense and sparse targets
+                checkParallel(createChamfer(mask, isShort), 0.2);
+                checkParallel(createChamfer(mask, isShort), 0.0005);
+            }
+        }
+    }
+
+    private void checkParallel (ChamferDistance.Abstract chamfer,
+                                double targetRatio)
+    {
+        final int width = 311;
+        final int height = 157;
+        final Random random = new Random(2018);
+        final boolean[][] input = new boolean[width][height];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                input[x][y] = random.nextDouble() < targetRatio;
+            }
+        }
+
+        final DistanceTable expected = chamfer.compute(input); // Small table: sequential
+        final DistanceTable actual = chamfer.compute(new boolean[width][height]);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                actual.setValue(x, y, input[x][y] ? ChamferDistance.VALUE_TARGET
+                        : ChamferDistance.VALUE_UNKNOWN);
+            }
+        }
+
+        chamfer.processParallel(actual, 4);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals("x:" + x + " y:" + y, expected.getValue(x, y), actual.getValue(x, y));
+            }
+        }
+    }
+
+    private ChamferDistance.Abstract createChamfer (int[][] mask,
+                                                    final boolean isShort)
+    {
+        return new ChamferDistance.Abstract(mask)
+        {
+            @Override
+            protected DistanceTable allocateOutput (int width,
+                                                    int height,
+                                                    int normalizer)
+            {
+                return isShort ? new DistanceTable.Short(width, height, normalizer)
+                        : new DistanceTable.Integer(width, height, normalizer);
+            }
+        };
+    }
+
     private ByteProcessor createImage ()
     {
         String[] rows = new String[]{
@@ -0,0 +1,129 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                             C o m p i l e d T e m p l a t e T e s t                            //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code CompiledTemplateTest} checks that a compiled template gives the same
+ * results as the plain template.
+ *
+ * @author Hervé Bitteur
+ */
+public class CompiledTemplateTest
+{
+
+    private final Random random = new Random(456);
+
+    @Test
+    public void testEvaluateRow ()
+    {
+        Template template = createTemplate();
+        DistanceTable distances = createDistances(40, 30);
+        checkRows(template, distances);
+    }
+
+    @Test
+    public void testEvaluateRowOnView ()
+    {
+        Template template = createTemplate();
+        DistanceTable distances = createDistances(50, 40);
+        DistanceTable view = (DistanceTable) distances.getView(new Rectangle(5, 4, 40, 30));
+        checkRows(template, view);
+    }
+
+    //-----------//
+    // checkRows //
+    //-----------//
+    private void checkRows (Template template,
+                            DistanceTable distances)
+    {
+        CompiledTemplate compiled = template.compile(Anchor.MIDDLE_LEFT, distances);
+        int xFrom = -3;
+        int xTo = distances.getWidth() + 2;
+        double[] out = new double[xTo - xFrom + 1];
+
+        for (int y = -4; y < (distances.getHeight() + 4); y++) {
+            compiled.evaluateRow(y, xFrom, xTo, out);
+
+            for (int x = xFrom; x <= xTo; x++) {
+                double expected = template.evaluate(x, y, Anchor.MIDDLE_LEFT, distances);
+                assertEquals("x:" + x + " y:" + y, expected, out[x - xFrom], 0);
+            }
+        }
+    }
+
+    //-----------------//
+    // createDistances //
+    //-----------------//
+    private DistanceTable createDistances (int width,
+                                           int height)
+    {
+        DistanceTable table = new DistanceTable.Short(width, height, 3);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Some foreground, some background, some unknown
+                table.setValue(x, y, random.nextInt(5) - 1);
+            }
+        }
+
+        return table;
+    }
+
+    //----------------//
+    // createTemplate //
+    //----------------//
+    private Template createTemplate ()
+    {
+        final int width = 7;
+        final int height = 5;
+        List<PixelDistance> keyPoints = new ArrayList<>();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                keyPoints.add(new PixelDistance(x, y, random.nextInt(3) - 1));
+            }
+        }
+
+        Template template = new Template(
+                Shape.NOTEHEAD_BLACK,
+                20,
+                null,
+                width,
+                height,
+                keyPoints,
+                new Rectangle(0, 0, width, height));
+        template.addAnchor(Anchor.MIDDLE_LEFT, 0, height / 2);
+
+        return template;
+    }
+}
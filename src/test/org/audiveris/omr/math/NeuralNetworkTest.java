@@ -0,0 +1,193 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                N e u r a l N e t w o r k T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.math;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Class {@code NeuralNetworkTest} checks batch and single runs of NeuralNetwork.
+ *
+ * @author Hervé Bitteur
+ */
+@SuppressWarnings("deprecation")
+public class NeuralNetworkTest
+{
+
+    private static final double eps = 1e-12;
+
+    private static final int INPUT_SIZE = 13;
+
+    private static final int HIDDEN_SIZE = 37;
+
+    private static final int OUTPUT_SIZE = 9;
+
+    private NeuralNetwork network;
+
+    private final Random random = new Random(123);
+
+    @Before
+    public void setUp ()
+    {
+        network = new NeuralNetwork(
+                INPUT_SIZE,
+                HIDDEN_SIZE,
+                OUTPUT_SIZE,
+                1.0,
+                labels("in", INPUT_SIZE),
+                labels("out", OUTPUT_SIZE));
+    }
+
+    @Test
+    public void testBatchVersusSingle ()
+    {
+        // 71 vectors: several sample blocks, groups of 4 plus a remainder
+        final int count = 71;
+        final double[] inputs = randomVector(count * INPUT_SIZE);
+        final double[] outputs = network.run(inputs, count, null);
+        assertEquals(count * OUTPUT_SIZE, outputs.length);
+
+        for (int k = 0; k < count; k++) {
+            final double[] ins = new double[INPUT_SIZE];
+            System.arraycopy(inputs, k * INPUT_SIZE, ins, 0, INPUT_SIZE);
+
+            final double[] outs = network.run(ins, null, null);
+
+            for (int o = 0; o < OUTPUT_SIZE; o++) {
+                assertEquals(outs[o], outputs[(k * OUTPUT_SIZE) + o], eps);
+            }
+        }
+    }
+
+    @Test
+    public void testHiddens ()
+    {
+        final double[] ins = randomVector(INPUT_SIZE);
+        final double[] hiddens = new double[HIDDEN_SIZE];
+        network.run(ins, hiddens, new double[OUTPUT_SIZE]);
+
+        for (double hidden : hiddens) {
+            assertTrue((hidden > 0) && (hidden < 1));
+        }
+    }
+
+    @Test
+    public void testBackupRestore ()
+    {
+        final double[] ins = randomVector(INPUT_SIZE);
+        final double[] before = network.run(ins, null, null);
+        final NeuralNetwork.Backup backup = network.backup();
+
+        network.train(
+                new double[][]{ins},
+                new double[][]{randomVector(OUTPUT_SIZE)},
+                null,
+                1);
+        assertFalse(before[0] == network.run(ins, null, null)[0]);
+
+        network.restore(backup);
+        assertArrayEquals(before, network.run(ins, null, null), eps);
+    }
+
+    @Test
+    public void testMiniBatchTraining ()
+    {
+        final int count = 200;
+        final double[][] inputs = new double[count][];
+        final double[][] desiredOutputs = new double[count][];
+
+        for (int k = 0; k < count; k++) {
+            inputs[k] = randomVector(INPUT_SIZE);
+            desiredOutputs[k] = new double[OUTPUT_SIZE];
+            desiredOutputs[k][(inputs[k][0] > 0.5) ? 0 : 1] = 1;
+        }
+
+        final double before = meanSquaredError(inputs, desiredOutputs);
+        network.setEpochs(50);
+        network.setMiniBatchSize(16);
+        network.train(inputs, desiredOutputs, null, 1);
+
+        final double after = meanSquaredError(inputs, desiredOutputs);
+        assertTrue("mse before:" + before + " after:" + after, after < (before / 2));
+    }
+
+    @Test
+    public void testMarshalling ()
+            throws Exception
+    {
+        final double[] inputs = randomVector(5 * INPUT_SIZE);
+        final double[] outputs = network.run(inputs, 5, null);
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        network.marshal(os);
+
+        final NeuralNetwork copy = NeuralNetwork.unmarshal(
+                new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(HIDDEN_SIZE, copy.getHiddenSize());
+        assertArrayEquals(outputs, copy.run(inputs, 5, null), eps);
+    }
+
+    private static String[] labels (String prefix,
+                                    int size)
+    {
+        final String[] labels = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            labels[i] = prefix + i;
+        }
+
+        return labels;
+    }
+
+    private double meanSquaredError (double[][] inputs,
+                                     double[][] desiredOutputs)
+    {
+        double mse = 0;
+
+        for (int k = 0; k < inputs.length; k++) {
+            final double[] outs = network.run(inputs[k], null, null);
+
+            for (int o = 0; o < OUTPUT_SIZE; o++) {
+                final double dif = desiredOutputs[k][o] - outs[o];
+                mse += (dif * dif);
+            }
+        }
+
+        return mse / inputs.length;
+    }
+
+    private double[] randomVector (int size)
+    {
+        final double[] vector = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            vector[i] = random.nextDouble();
+        }
+
+        return vector;
+    }
+}
@@ -0,0 +1,95 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               C e n t r a l M o m e n t s T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moments;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Class {@code CentralMomentsTest} checks that geometric moments combined from disjoint
+ * parts are equal to the moments computed on all points.
+ *
+ * @author Hervé Bitteur
+ */
+public class CentralMomentsTest
+{
+
+    private final Random random = new Random(2018);
+
+    @Test
+    public void testUnion ()
+    {
+        for (int n = 0; n < 100; n++) {
+            final Set<Long> used = new HashSet<>();
+            final List<CentralMoments> parts = new ArrayList<>();
+            final List<int[]> points = new ArrayList<>();
+
+            for (int p = 2 + random.nextInt(4); p > 0; p--) {
+                final int count = 1 + random.nextInt(200);
+                final int x0 = random.nextInt(3000);
+                final int y0 = random.nextInt(3000);
+                final int[] xx = new int[count];
+                final int[] yy = new int[count];
+
+                for (int i = 0; i < count;) {
+                    final int x = x0 + random.nextInt(50);
+                    final int y = y0 + random.nextInt(50);
+
+                    if (used.add((x * 10000L) + y)) { // Parts must be disjoint
+                        xx[i] = x;
+                        yy[i] = y;
+                        points.add(new int[]{x, y});
+                        i++;
+                    }
+                }
+
+                parts.add(new CentralMoments(xx, yy, count));
+            }
+
+            final int[] xx = new int[points.size()];
+            final int[] yy = new int[points.size()];
+
+            for (int i = 0; i < xx.length; i++) {
+                xx[i] = points.get(i)[0];
+                yy[i] = points.get(i)[1];
+            }
+
+            final double[] expected = new GeometricMoments(xx, yy, xx.length, 20).getValues();
+            final double[] actual = new GeometricMoments(CentralMoments.union(parts), 20)
+                    .getValues();
+
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(
+                        GeometricMoments.getLabel(k),
+                        expected[k],
+                        actual[k],
+                        1e-8 * Math.max(1, Math.abs(expected[k])));
+            }
+        }
+    }
+}
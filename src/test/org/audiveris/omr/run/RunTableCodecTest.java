@@ -0,0 +1,179 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                R u n T a b l e C o d e c T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import static org.audiveris.omr.run.Orientation.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Class {@code RunTableCodecTest} tests the binary format of RunTable.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunTableCodecTest
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Dimension dim = new Dimension(10, 5);
+
+    //~ Methods ------------------------------------------------------------------------------------
+    @Test
+    public void testRoundTrip ()
+            throws IOException
+    {
+        RunTable table = createHorizontalInstance();
+        assertEquals(table, roundTrip(table, false));
+    }
+
+    @Test
+    public void testRoundTripDeflated ()
+            throws IOException
+    {
+        RunTable table = createHorizontalInstance();
+        assertEquals(table, roundTrip(table, true));
+    }
+
+    @Test
+    public void testLargeLengths ()
+            throws IOException
+    {
+        RunTable table = new RunTable(VERTICAL, 3, 40000);
+        table.addRun(0, new Run(0, 300));
+        table.addRun(0, new Run(20000, 19000));
+        table.addRun(2, new Run(129, 1));
+
+        RunTable newTable = roundTrip(table, false);
+        assertEquals(table, newTable);
+        assertTrue(newTable.isSequenceEmpty(1));
+    }
+
+    @Test
+    public void testMap ()
+            throws IOException
+    {
+        RunTable table = createHorizontalInstance();
+        Path path = Files.createTempFile("table-", RunTableCodec.BINARY_EXTENSION);
+
+        try {
+            RunTableCodec.write(table, path, false);
+
+            RunTable mapped = RunTableCodec.map(path);
+            assertEquals(table, mapped);
+            assertTrue(mapped.isSequenceEmpty(2));
+            assertEquals(0, mapped.get(1, 0));
+
+            // Modification of a mapped table
+            mapped.addRun(2, new Run(3, 4));
+            table.addRun(2, new Run(3, 4));
+            assertEquals(table, mapped);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testOverwrite ()
+            throws IOException
+    {
+        RunTable large = new RunTable(VERTICAL, 3, 40000);
+        large.addRun(0, new Run(0, 300));
+        large.addRun(0, new Run(20000, 19000));
+        large.addRun(2, new Run(129, 1));
+
+        RunTable table = createHorizontalInstance();
+        Path path = Files.createTempFile("table-", RunTableCodec.BINARY_EXTENSION);
+
+        try {
+            RunTableCodec.write(large, path, false);
+            RunTableCodec.write(table, path, false);
+
+            // No stale bytes left from the larger table
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            RunTableCodec.write(table, os, false);
+            assertEquals(os.size(), Files.size(path));
+            assertEquals(table, RunTableCodec.map(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testIsBinary ()
+            throws IOException
+    {
+        InputStream is = new BufferedInputStream(
+                new ByteArrayInputStream("<?xml version=\"1.0\"?>".getBytes("UTF-8")));
+        assertFalse(RunTableCodec.isBinary(is));
+        assertEquals('<', is.read());
+    }
+
+    //-----------//
+    // roundTrip //
+    //-----------//
+    private RunTable roundTrip (RunTable table,
+                                boolean deflated)
+            throws IOException
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        RunTableCodec.write(table, os, deflated);
+
+        InputStream is = new BufferedInputStream(new ByteArrayInputStream(os.toByteArray()));
+        assertTrue(RunTableCodec.isBinary(is));
+
+        return RunTableCodec.read(is);
+    }
+
+    //--------------------------//
+    // createHorizontalInstance //
+    //--------------------------//
+    private RunTable createHorizontalInstance ()
+    {
+        RunTable instance = new RunTable(HORIZONTAL, dim.width, dim.height);
+
+        instance.addRun(0, new Run(1, 2));
+        instance.addRun(0, new Run(5, 3));
+
+        instance.addRun(1, new Run(0, 1));
+        instance.addRun(1, new Run(4, 2));
+
+        // Leave sequence empty at index 2
+        //
+        instance.addRun(3, new Run(0, 2));
+        instance.addRun(3, new Run(4, 1));
+        instance.addRun(3, new Run(8, 2));
+
+        instance.addRun(4, new Run(2, 2));
+        instance.addRun(4, new Run(6, 4));
+
+        return instance;
+    }
+}
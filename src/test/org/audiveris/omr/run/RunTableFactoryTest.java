@@ -0,0 +1,199 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              R u n T a b l e F a c t o r y T e s t                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.image.GlobalFilter;
+import org.audiveris.omr.image.PixelFilter;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code RunTableFactoryTest} checks that runs retrieved directly from the source
+ * array or from a pixel filter are identical to runs retrieved through pixel accessor.
+ * It also checks the union of tables built at run level against the union built from a buffer.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunTableFactoryTest
+{
+
+    private static final int WIDTH = 203;
+
+    private static final int HEIGHT = 157;
+
+    /** Arbitrary filter, to check filtered runs as well. */
+    private static final RunTableFactory.Filter FILTER = new RunTableFactory.Filter()
+    {
+        @Override
+        public boolean check (int x,
+                              int y,
+                              int length)
+        {
+            return (((7 * x) + (3 * y) + length) % 4) != 0;
+        }
+    };
+
+    @Test
+    public void testHorizontal ()
+    {
+        checkTables(Orientation.HORIZONTAL, null, null);
+    }
+
+    @Test
+    public void testHorizontalFiltered ()
+    {
+        checkTables(Orientation.HORIZONTAL, FILTER, new Rectangle(5, 7, 180, 120));
+    }
+
+    @Test
+    public void testVertical ()
+    {
+        checkTables(Orientation.VERTICAL, null, null);
+    }
+
+    @Test
+    public void testVerticalFiltered ()
+    {
+        checkTables(Orientation.VERTICAL, FILTER, new Rectangle(5, 7, 180, 120));
+    }
+
+    @Test
+    public void testHorizontalFromFilter ()
+    {
+        checkFilterTables(Orientation.HORIZONTAL, FILTER);
+    }
+
+    @Test
+    public void testVerticalFromFilter ()
+    {
+        checkFilterTables(Orientation.VERTICAL, null);
+        checkFilterTables(Orientation.VERTICAL, FILTER);
+    }
+
+    @Test
+    public void testUnion ()
+    {
+        final Random random = new Random(2018);
+
+        for (int n = 0; n < 200; n++) {
+            final int width = 1 + random.nextInt(40);
+            final int height = 1 + random.nextInt(40);
+            final ByteProcessor buffer = new ByteProcessor(width, height);
+            buffer.invert(); // All white
+            final List<RunTable> parts = new ArrayList<>();
+            final List<Point> offsets = new ArrayList<>();
+
+            for (int p = 1 + random.nextInt(4); p > 0; p--) {
+                final int w = 1 + random.nextInt(width);
+                final int h = 1 + random.nextInt(height);
+                final Point offset = new Point(
+                        random.nextInt((width - w) + 1),
+                        random.nextInt((height - h) + 1));
+                final ByteProcessor buf = new ByteProcessor(w, h);
+
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        buf.set(x, y, (random.nextInt(3) == 0) ? 0 : 255);
+                    }
+                }
+
+                final Orientation ori = random.nextBoolean() ? Orientation.VERTICAL
+                        : Orientation.HORIZONTAL;
+                final RunTable part = new RunTableFactory(ori).createTable(buf);
+                part.write(buffer, offset.x, offset.y);
+                parts.add(part);
+                offsets.add(offset);
+            }
+
+            for (Orientation orientation : Orientation.values()) {
+                for (RunTableFactory.Filter filter : new RunTableFactory.Filter[]{null, FILTER}) {
+                    final RunTableFactory factory = new RunTableFactory(orientation, filter);
+                    final RunTable expected = factory.createTable(buffer);
+                    final RunTable actual = factory.createUnion(width, height, parts, offsets);
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    private void checkFilterTables (Orientation orientation,
+                                    RunTableFactory.Filter filter)
+    {
+        // Gray source, with a height of more than one chunk of rows
+        final ByteProcessor gray = new ByteProcessor(WIDTH, HEIGHT);
+        final Random random = new Random(2018);
+
+        for (int i = 0; i < (WIDTH * HEIGHT); i++) {
+            gray.set(i, random.nextInt(256));
+        }
+
+        final PixelFilter pixelFilter = new GlobalFilter(gray, 100);
+        final RunTableFactory factory = new RunTableFactory(orientation, filter);
+        final RunTable expected = factory.createTable(pixelFilter.filteredImage());
+        final RunTable actual = factory.createTable(pixelFilter);
+
+        assertTrue(expected.getTotalRunCount() > 0);
+        assertEquals(expected, actual);
+    }
+
+    private void checkTables (Orientation orientation,
+                              RunTableFactory.Filter filter,
+                              Rectangle roi)
+    {
+        final ByteProcessor raw = createSource(new ByteProcessor(WIDTH, HEIGHT));
+
+        // A subclass prevents direct access to source array
+        final ByteProcessor accessed = createSource(new ByteProcessor(WIDTH, HEIGHT)
+        {
+        });
+
+        final RunTableFactory factory = new RunTableFactory(orientation, filter);
+        final Rectangle area = (roi != null) ? roi : new Rectangle(0, 0, WIDTH, HEIGHT);
+        final RunTable expected = factory.createTable(accessed, area);
+        final RunTable actual = factory.createTable(raw, area);
+
+        assertTrue(expected.getTotalRunCount() > 0);
+        assertEquals(expected.getTotalRunCount(), actual.getTotalRunCount());
+        assertEquals(expected, actual);
+    }
+
+    private ByteProcessor createSource (ByteProcessor buf)
+    {
+        final Random random = new Random(2018);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                buf.set(x, y, (random.nextInt(3) == 0) ? 0 : 255);
+            }
+        }
+
+        return buf;
+    }
+}
@@ -0,0 +1,166 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   S h e e t C a c h e T e s t                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import org.audiveris.omr.util.OmrExecutors;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code SheetCacheTest} checks that a sheet with a pending background write is
+ * never swapped out in a way that could block the I/O thread.
+ *
+ * @author Hervé Bitteur
+ */
+public class SheetCacheTest
+{
+
+    @Test
+    public void testEvictPendingSnapshot ()
+            throws Exception
+    {
+        final Path folder = Files.createTempDirectory("cache-");
+        final Book book = new Book()
+        {
+            @Override
+            public Path getBookPath ()
+            {
+                return folder.resolve("missing.omr"); // Write will fail once book is locked
+            }
+        };
+        final ResidentStub stub = new ResidentStub(book);
+        final SheetCache cache = SheetCache.getInstance();
+        final SheetSaver saver = SheetSaver.getInstance();
+        final ExecutorService evictor = Executors.newSingleThreadExecutor();
+
+        // Block the I/O thread, so that the snapshot remains pending
+        final CountDownLatch gate = new CountDownLatch(1);
+        OmrExecutors.getIoExecutor().submit(new Callable<Void>()
+        {
+            @Override
+            public Void call ()
+                    throws Exception
+            {
+                gate.await();
+
+                return null;
+            }
+        });
+
+        try {
+            saver.submit(
+                    stub,
+                    new SheetSaver.Snapshot(Collections.<RunTableHolder>emptyList(), new byte[0]));
+            assertTrue(saver.isBusy(stub));
+
+            // Not evictable while snapshot is pending, and eviction returns at once
+            assertFalse(swap(evictor, cache, stub).get(5, TimeUnit.SECONDS));
+            assertTrue(stub.hasSheet());
+
+            // Let the I/O thread write the snapshot (here unsuccessfully)
+            gate.countDown();
+            saver.flush(stub);
+            assertFalse(saver.isBusy(stub));
+
+            // Now the sheet can be swapped out
+            assertTrue(swap(evictor, cache, stub).get(5, TimeUnit.SECONDS));
+            assertFalse(stub.hasSheet());
+        } finally {
+            gate.countDown();
+            evictor.shutdownNow();
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    private static Future<Boolean> swap (ExecutorService evictor,
+                                         final SheetCache cache,
+                                         final SheetStub stub)
+    {
+        return evictor.submit(new Callable<Boolean>()
+        {
+            @Override
+            public Boolean call ()
+            {
+                return cache.swapSafely(stub);
+            }
+        });
+    }
+
+    //--------------//
+    // ResidentStub //
+    //--------------//
+    /**
+     * A stub which pretends to have a modified sheet in memory.
+     */
+    private static class ResidentStub
+            extends SheetStub
+    {
+
+        private volatile boolean resident = true;
+
+        ResidentStub (Book book)
+        {
+            super(book, 1);
+        }
+
+        @Override
+        public boolean hasSheet ()
+        {
+            return resident;
+        }
+
+        @Override
+        public boolean isModified ()
+        {
+            return true;
+        }
+
+        @Override
+        public void setModified (boolean modified)
+        {
+            // Failed background write is not to be retried here
+        }
+
+        @Override
+        public void swapSheet ()
+        {
+            try {
+                storeSheet(); // Waits for background writes, stores nothing since no sheet
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+
+            resident = false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               I n d e x e d M a x H e a p T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code IndexedMaxHeapTest} checks IndexedMaxHeap against a plain scan of all
+ * elements.
+ *
+ * @author Hervé Bitteur
+ */
+public class IndexedMaxHeapTest
+{
+
+    private final Random random = new Random(2018);
+
+    @Test
+    public void testEmpty ()
+    {
+        final IndexedMaxHeap<String> heap = new IndexedMaxHeap<>();
+        assertTrue(heap.isEmpty());
+        assertNull(heap.peek());
+        assertNull(heap.poll());
+        assertFalse(heap.remove("a"));
+    }
+
+    @Test
+    public void testTies ()
+    {
+        final IndexedMaxHeap<String> heap = new IndexedMaxHeap<>();
+        heap.add("a", 1);
+        heap.add("b", 2);
+        heap.add("c", 2);
+        heap.add("d", 1);
+        assertFalse(heap.add("b", 5));
+
+        heap.update("d", 2);
+        assertEquals("b", heap.poll());
+        assertEquals("c", heap.poll());
+        assertEquals("d", heap.poll());
+        assertEquals("a", heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateAbsent ()
+    {
+        new IndexedMaxHeap<String>().update("a", 1);
+    }
+
+    @Test
+    public void testRandom ()
+    {
+        final IndexedMaxHeap<Item> heap = new IndexedMaxHeap<>();
+        final List<Item> items = new ArrayList<>(); // In insertion order
+
+        for (int i = 0; i < 300; i++) {
+            final Item item = new Item(random.nextInt(50));
+            items.add(item);
+            heap.add(item, item.priority);
+        }
+
+        while (!items.isEmpty()) {
+            assertEquals(items.size(), heap.size());
+            assertSame(best(items), heap.peek());
+
+            switch (random.nextInt(3)) {
+            case 0: {
+                assertSame(best(items), heap.poll());
+                items.remove(best(items));
+
+                break;
+            }
+
+            case 1: {
+                final Item item = items.get(random.nextInt(items.size()));
+                item.priority = random.nextInt(50);
+                heap.update(item, item.priority);
+
+                break;
+            }
+
+            default: {
+                final Item item = items.remove(random.nextInt(items.size()));
+                assertTrue(heap.remove(item));
+                assertFalse(heap.contains(item));
+            }
+            }
+        }
+
+        assertTrue(heap.isEmpty());
+    }
+
+    /** First item of highest priority. */
+    private Item best (List<Item> items)
+    {
+        Item best = null;
+
+        for (Item item : items) {
+            if ((best == null) || (item.priority > best.priority)) {
+                best = item;
+            }
+        }
+
+        return best;
+    }
+
+    //------//
+    // Item //
+    //------//
+    private static class Item
+    {
+
+        double priority;
+
+        Item (double priority)
+        {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 S p a t i a l I n d e x T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code SpatialIndexTest} checks SpatialIndex lookups against a plain browsing
+ * of all entities.
+ *
+ * @author Hervé Bitteur
+ */
+public class SpatialIndexTest
+{
+
+    private static final int COUNT = 500;
+
+    private final Random random = new Random(2018);
+
+    @Test
+    public void testEmpty ()
+    {
+        final SpatialIndex<Box> index = new SpatialIndex<>(16);
+        assertTrue(index.getContained(new Rectangle(0, 0, 100, 100)).isEmpty());
+        assertTrue(index.getContaining(new Point(5, 5)).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testLateBounds ()
+    {
+        final SpatialIndex<Box> index = new SpatialIndex<>(16);
+        final Box box = new Box(null);
+        index.insert(box);
+        assertTrue(index.getIntersected(new Rectangle(0, 0, 100, 100)).isEmpty());
+
+        // Bounds defined after insertion
+        box.bounds = new Rectangle(10, 10, 5, 5);
+        assertEquals(1, index.getContaining(new Point(12, 12)).size());
+    }
+
+    @Test
+    public void testLookups ()
+    {
+        final SpatialIndex<Box> index = new SpatialIndex<>(16);
+        final List<Box> boxes = new ArrayList<>();
+
+        for (int i = 0; i < COUNT; i++) {
+            final Box box = new Box(randomRectangle());
+            boxes.add(box);
+            index.insert(box);
+        }
+
+        checkLookups(index, boxes);
+
+        // Move some boxes
+        for (int i = 0; i < COUNT; i += 3) {
+            final Box box = boxes.get(i);
+            box.bounds = randomRectangle();
+            index.invalidate(box);
+        }
+
+        // Remove some boxes
+        for (int i = COUNT - 1; i >= 0; i -= 7) {
+            index.remove(boxes.remove(i));
+        }
+
+        assertEquals(boxes.size(), index.size());
+        checkLookups(index, boxes);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.getIntersected(new Rectangle(-1000, -1000, 3000, 3000)).isEmpty());
+    }
+
+    private void checkLookups (SpatialIndex<Box> index,
+                               List<Box> boxes)
+    {
+        for (int i = 0; i < 200; i++) {
+            final Rectangle rect = randomRectangle();
+            rect.grow(random.nextInt(100), random.nextInt(100));
+
+            final List<Box> contained = new ArrayList<>();
+            final List<Box> intersected = new ArrayList<>();
+
+            for (Box box : boxes) {
+                if (rect.contains(box.bounds)) {
+                    contained.add(box);
+                }
+
+                if (rect.intersects(box.bounds)) {
+                    intersected.add(box);
+                }
+            }
+
+            assertEquals(contained, index.getContained(rect));
+            assertEquals(intersected, index.getIntersected(rect));
+
+            final Point point = new Point(rect.x, rect.y);
+            final List<Box> containing = new ArrayList<>();
+
+            for (Box box : boxes) {
+                if (box.bounds.contains(point)) {
+                    containing.add(box);
+                }
+            }
+
+            assertEquals(containing, index.getContaining(point));
+        }
+
+        // Huge area
+        assertEquals(boxes, index.getIntersected(new Rectangle(-1000, -1000, 1000000, 1000000)));
+    }
+
+    private Rectangle randomRectangle ()
+    {
+        return new Rectangle(
+                random.nextInt(600) - 100,
+                random.nextInt(600) - 100,
+                1 + random.nextInt(60),
+                1 + random.nextInt(60));
+    }
+
+    //-----//
+    // Box //
+    //-----//
+    private static class Box
+            extends AbstractEntity
+    {
+
+        Rectangle bounds;
+
+        Box (Rectangle bounds)
+        {
+            this.bounds = bounds;
+        }
+
+        @Override
+        public boolean contains (Point point)
+        {
+            return (bounds != null) && bounds.contains(point);
+        }
+
+        @Override
+        public Rectangle getBounds ()
+        {
+            return (bounds != null) ? new Rectangle(bounds) : null;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   Z i p U p d a t e r T e s t                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Class {@code ZipUpdaterTest} checks in place updates of a zip file.
+ *
+ * @author Hervé Bitteur
+ */
+public class ZipUpdaterTest
+{
+
+    private final Random random = new Random(2018);
+
+    private Path path;
+
+    private byte[] table;
+
+    @Before
+    public void setUp ()
+            throws IOException
+    {
+        path = Files.createTempFile("updater-", ".zip");
+        table = new byte[20000];
+        random.nextBytes(table);
+
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+            zos.putNextEntry(new ZipEntry("book.xml"));
+            zos.write(bytes("<book/>"));
+            zos.putNextEntry(new ZipEntry("sheet#1/"));
+            zos.putNextEntry(new ZipEntry("sheet#1/sheet#1.xml"));
+            zos.write(bytes("<sheet number='1'/>"));
+            zos.putNextEntry(new ZipEntry("sheet#1/BINARY.bin"));
+            zos.write(table);
+            zos.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown ()
+            throws IOException
+    {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testInterruptedCommit ()
+            throws IOException
+    {
+        final long size = Files.size(path);
+
+        // Commit fails, then file is truncated back to its original size
+        commitFailing(true);
+        assertEquals(size, Files.size(path));
+        checkOriginal();
+
+        // Commit fails, and file cannot even be truncated, as in a crash
+        commitFailing(false);
+        assertTrue(Files.size(path) > size);
+        checkOriginal();
+    }
+
+    @Test
+    public void testUnchanged ()
+            throws IOException
+    {
+        final long size = Files.size(path);
+
+        try (ZipUpdater updater = new ZipUpdater(path)) {
+            assertFalse(updater.put("book.xml", bytes("<book/>")));
+            assertFalse(updater.put("sheet#1/BINARY.bin", table));
+            updater.commit();
+        }
+
+        assertEquals(size, Files.size(path));
+    }
+
+    @Test
+    public void testUpdate ()
+            throws IOException
+    {
+        try (ZipUpdater updater = new ZipUpdater(path)) {
+            assertEquals(0, updater.getWasteRatio(), 0.01);
+            assertTrue(updater.put("sheet#1/sheet#1.xml", bytes("<sheet number='1' new=''/>")));
+            assertTrue(updater.put("sheet#2/sheet#2.xml", bytes("<sheet number='2'/>")));
+            assertTrue(updater.remove("sheet#1/BINARY.bin"));
+            assertFalse(updater.remove("sheet#1/BINARY.xml"));
+            updater.commit();
+        }
+
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            assertEquals(5, zip.size());
+            assertEquals("<book/>", read(zip, "book.xml"));
+            assertEquals("<sheet number='1' new=''/>", read(zip, "sheet#1/sheet#1.xml"));
+            assertEquals("<sheet number='2'/>", read(zip, "sheet#2/sheet#2.xml"));
+            assertTrue(zip.getEntry("sheet#2/").isDirectory());
+            assertNull(zip.getEntry("sheet#1/BINARY.bin"));
+        }
+
+        // Second update, on top of the first one
+        try (ZipUpdater updater = new ZipUpdater(path)) {
+            assertTrue(updater.getWasteRatio() > 0.5); // Former BINARY.bin
+            assertTrue(updater.contains("sheet#2/"));
+            assertTrue(updater.put("sheet#1/BINARY.bin", table));
+            updater.commit();
+        }
+
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            assertEquals(6, zip.size());
+            assertEquals("<sheet number='2'/>", read(zip, "sheet#2/sheet#2.xml"));
+            assertArrayEquals(table, readBytes(zip, "sheet#1/BINARY.bin"));
+        }
+    }
+
+    private static byte[] bytes (String str)
+    {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void checkOriginal ()
+            throws IOException
+    {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            assertEquals(4, zip.size());
+            assertEquals("<book/>", read(zip, "book.xml"));
+            assertEquals("<sheet number='1'/>", read(zip, "sheet#1/sheet#1.xml"));
+            assertArrayEquals(table, readBytes(zip, "sheet#1/BINARY.bin"));
+        }
+    }
+
+    /**
+     * Try to commit new entries through a channel that fails after 1000 bytes written.
+     *
+     * @param truncatable true if channel can still be truncated after failure
+     */
+    private void commitFailing (boolean truncatable)
+            throws IOException
+    {
+        final FailingChannel channel = new FailingChannel(
+                FileChannel.open(path, READ, WRITE),
+                1000,
+                truncatable);
+
+        try (ZipUpdater updater = new ZipUpdater(path, channel)) {
+            final byte[] other = new byte[5000];
+            random.nextBytes(other);
+            assertTrue(updater.put("book.xml", bytes("<book new=''/>")));
+            assertTrue(updater.put("sheet#1/BINARY.bin", other));
+            updater.commit();
+            fail("Commit should have failed");
+        } catch (IOException expected) {
+            assertTrue(channel.failed);
+        }
+    }
+
+    private static String read (ZipFile zip,
+                                String name)
+            throws IOException
+    {
+        return new String(readBytes(zip, name), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes (ZipFile zip,
+                                     String name)
+            throws IOException
+    {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        try (InputStream is = zip.getInputStream(zip.getEntry(name));
+                OutputStream os = bos) {
+            final byte[] buffer = new byte[4096];
+
+            for (int n; (n = is.read(buffer)) > 0;) {
+                os.write(buffer, 0, n);
+            }
+        }
+
+        return bos.toByteArray();
+    }
+
+    //----------------//
+    // FailingChannel //
+    //----------------//
+    /**
+     * A channel which throws an IOException once its budget of written bytes is
+     * exhausted, after writing what the budget allows.
+     */
+    private static class FailingChannel
+            extends FileChannel
+    {
+
+        private final FileChannel channel;
+
+        private final boolean truncatable;
+
+        private long budget;
+
+        boolean failed;
+
+        FailingChannel (FileChannel channel,
+                        long budget,
+                        boolean truncatable)
+        {
+            this.channel = channel;
+            this.budget = budget;
+            this.truncatable = truncatable;
+        }
+
+        @Override
+        public void force (boolean metaData)
+                throws IOException
+        {
+            channel.force(metaData);
+        }
+
+        @Override
+        public FileLock lock (long position,
+                              long size,
+                              boolean shared)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map (MapMode mode,
+                                     long position,
+                                     long size)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position ()
+                throws IOException
+        {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position (long newPosition)
+                throws IOException
+        {
+            channel.position(newPosition);
+
+            return this;
+        }
+
+        @Override
+        public int read (ByteBuffer dst)
+                throws IOException
+        {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read (ByteBuffer[] dsts,
+                          int offset,
+                          int length)
+                throws IOException
+        {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read (ByteBuffer dst,
+                         long position)
+                throws IOException
+        {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long size ()
+                throws IOException
+        {
+            return channel.size();
+        }
+
+        @Override
+        public long transferFrom (ReadableByteChannel src,
+                                  long position,
+                                  long count)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo (long position,
+                                long count,
+                                WritableByteChannel target)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate (long size)
+                throws IOException
+        {
+            if (!truncatable) {
+                throw new IOException("Truncate refused");
+            }
+
+            channel.truncate(size);
+
+            return this;
+        }
+
+        @Override
+        public FileLock tryLock (long position,
+                                 long size,
+                                 boolean shared)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write (ByteBuffer src)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write (ByteBuffer[] srcs,
+                           int offset,
+                           int length)
+                throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write (ByteBuffer src,
+                          long position)
+                throws IOException
+        {
+            if (budget <= 0) {
+                failed = true;
+                throw new IOException("No space left");
+            }
+
+            final ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + (int) Math.min(budget, slice.remaining()));
+
+            final int n = channel.write(slice, position);
+            src.position(src.position() + n);
+            budget -= n;
+
+            return n;
+        }
+
+        @Override
+        protected void implCloseChannel ()
+                throws IOException
+        {
+            channel.close();
+        }
+    }
+}